@@ -9,6 +9,7 @@ import org.apache.catalina.Context;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.Server;
 import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.connector.Connector;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.webresources.DirResourceSet;
 import org.apache.catalina.webresources.StandardRoot;
@@ -70,6 +71,7 @@ public class SummerApplication {
         Tomcat tomcat = new Tomcat();
         tomcat.setPort(port);
         tomcat.getConnector().setThrowOnFailure(true);
+        configureExecutor(tomcat.getConnector(), propertyResolver);
         //添加一个默认的webapp，挂载到"/"
         Context context = tomcat.addWebapp("", new File(webDir).getAbsolutePath());
 
@@ -82,6 +84,25 @@ public class SummerApplication {
         return tomcat.getServer();
     }
 
+    /**
+     * 开启summer.server.virtual-threads后，每个请求在一个新的虚拟线程中执行，
+     * 阻塞的JDBC调用不再占用平台线程，并发数不再受线程池大小限制。
+     * 事务状态保存在ThreadLocal中，一个请求始终在同一个虚拟线程中执行，不受影响。
+     * 使用Tomcat自带的虚拟线程支持（useVirtualThreads），执行器由Tomcat创建，stop()时一起关闭。
+     *
+     * @param connector        tomcat连接器
+     * @param propertyResolver 属性解析器
+     */
+    static void configureExecutor(Connector connector, PropertyResolver propertyResolver) {
+        boolean virtualThreads = propertyResolver.getProperty("${summer.server.virtual-threads:false}", boolean.class);
+        if (virtualThreads) {
+            log.info("use virtual threads to process requests");
+            if (!connector.setProperty("useVirtualThreads", "true")) {
+                throw new IllegalStateException("Virtual threads are not supported by protocol: " + connector.getProtocolHandlerClassName());
+            }
+        }
+    }
+
     protected void printBanner() {
         String banner = ClassPathUtils.readString("/banner.txt");
         banner.lines().forEach(System.out::println);
@@ -1,8 +1,23 @@
 package com.albert.summer.boot;
 
+import com.albert.summer.property.PropertyResolver;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.Context;
 import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.Properties;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class SummerApplicationTest {
@@ -16,5 +31,31 @@ class SummerApplicationTest {
         }
     }
 
+    @Test
+    public void testVirtualThreads() throws Exception {
+        var props = new Properties();
+        props.put("summer.server.virtual-threads", "true");
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("tomcat").toString());
+        tomcat.setPort(0);
+        SummerApplication.configureExecutor(tomcat.getConnector(), new PropertyResolver(props));
+        Context context = tomcat.addContext("", new File(".").getAbsolutePath());
+        Tomcat.addServlet(context, "thread", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.getWriter().print(Thread.currentThread().isVirtual());
+            }
+        });
+        context.addServletMappingDecoded("/thread", "thread");
+        tomcat.start();
+        try {
+            var request = HttpRequest.newBuilder(URI.create("http://localhost:" + tomcat.getConnector().getLocalPort() + "/thread")).build();
+            var resp = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+            assertEquals("true", resp.body());
+        } finally {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+package com.albert.summer.boot;
+
+import com.albert.summer.property.PropertyResolver;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+/**
+ * 对比平台线程池和虚拟线程处理阻塞请求的吞吐量
+ * 每个请求sleep模拟一次慢JDBC调用，同时发起2000个请求
+ * <p>
+ * 运行：在IDE中直接执行main方法
+ */
+public class VirtualThreadLoadBenchmark {
+
+    static final int CONCURRENCY = 2000;
+
+    static final long SLOW_MILLIS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("platform threads: %.1f req/s%n", run(false, 18081));
+        System.out.printf("virtual threads:  %.1f req/s%n", run(true, 18082));
+    }
+
+    static double run(boolean virtualThreads, int port) throws Exception {
+        var props = new Properties();
+        props.put("summer.server.virtual-threads", String.valueOf(virtualThreads));
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("tomcat").toString());
+        tomcat.setPort(port);
+        tomcat.getConnector().setProperty("maxConnections", String.valueOf(CONCURRENCY * 2));
+        tomcat.getConnector().setProperty("acceptCount", String.valueOf(CONCURRENCY));
+        SummerApplication.configureExecutor(tomcat.getConnector(), new PropertyResolver(props));
+        Context context = tomcat.addContext("", new File(".").getAbsolutePath());
+        Tomcat.addServlet(context, "slow", new SlowServlet());
+        context.addServletMappingDecoded("/slow", "slow");
+        tomcat.start();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder().executor(executor).build();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/slow")).build();
+            //预热
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+            long start = System.nanoTime();
+            List<CompletableFuture<HttpResponse<Void>>> futures = new ArrayList<>(CONCURRENCY);
+            for (int i = 0; i < CONCURRENCY; i++) {
+                futures.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            return CONCURRENCY / seconds;
+        } finally {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    static class SlowServlet extends HttpServlet {
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            try {
+                Thread.sleep(SLOW_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            resp.setContentType("text/plain");
+            resp.getWriter().write(Thread.currentThread().isVirtual() ? "virtual" : "platform");
+        }
+    }
+}
@@ -2,7 +2,9 @@ package com.albert.summer.context;
 
 import com.albert.summer.annotation.*;
 import com.albert.summer.exception.*;
+import com.albert.summer.io.ClassMetadataReader;
 import com.albert.summer.io.ResourceResolver;
+import com.albert.summer.io.ScanCache;
 import com.albert.summer.property.PropertyResolver;
 import com.albert.summer.utils.ClassUtils;
 import jakarta.annotation.Nullable;
@@ -13,7 +15,10 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 /**
@@ -35,6 +40,22 @@ public class AnnotationConfigApplicationContext implements ConfigurableApplicati
      */
     protected final Map<String, BeanDefinition> beans;
 
+    /**
+     * 类型索引：Bean的每个父类和接口 -> 该类型下的所有BeanDefinition（已排序）
+     * 在BeanDefinition创建完成后构建一次，按类型查找时不再遍历所有BeanDefinition
+     */
+    protected final Map<Class<?>, List<BeanDefinition>> beanTypes;
+
+    /**
+     * 数组类型的BeanDefinition，数组的协变（Object[]可以接收String[]）无法通过父类和接口表示，按类型查找数组时单独过滤
+     */
+    protected final List<BeanDefinition> arrayBeans;
+
+    /**
+     * 按类型查找唯一Bean（唯一或@Primary）的结果缓存
+     */
+    final Map<Class<?>, Optional<BeanDefinition>> resolvedTypes = new ConcurrentHashMap<>();
+
     /**
      * 当前正在创建的所有Bean的名称
      */
@@ -55,6 +76,8 @@ public class AnnotationConfigApplicationContext implements ConfigurableApplicati
 
         // 2.创建Bean的定义:BeanDefinition
         this.beans = createBeanDefinitions(beanClassNames);
+        this.beanTypes = indexBeanTypes(this.beans.values());
+        this.arrayBeans = this.beans.values().stream().filter(def -> def.getBeanClass().isArray()).sorted().toList();
 
         //--------在这一步BeanDefinition已经扫描完毕--------------
 
@@ -124,20 +147,24 @@ public class AnnotationConfigApplicationContext implements ConfigurableApplicati
                 new String[]{configClass.getPackage().getName()} : componentScan.value();
         log.info("component scan in pkg : " + Arrays.toString(scanPackages));
 
+        //读取class文件判断是否是@Component，只返回需要创建Bean的类
+        ClassMetadataReader reader = new ClassMetadataReader(getClassLoader());
+        //配置了summer.context.scan-cache时，classpath没有变化的根目录直接使用上次的扫描结果
+        String cacheFile = this.propertyResolver.getProperty("summer.context.scan-cache");
+        ScanCache cache = cacheFile == null || cacheFile.isBlank() ? null : ScanCache.load(Paths.get(cacheFile));
+
         Set<String> classNameSet = new HashSet<>();
         //扫描pkg下所有的类
         for (String scanPackage : scanPackages) {
             log.info("scan package : " + scanPackage);
             var rr = new ResourceResolver(scanPackage);
-            List<String> classList = rr.scan(res -> {
-                String name = res.name();
-                if (name.endsWith(".class")) {
-                    return name.substring(0, name.length() - 6).replace("/", ".").replace("\\", ".");
-                }
-                return null;
-            });
+            //有编译时生成的组件索引时直接读取索引
+            List<String> classList = rr.scanClassNames(reader::isCandidateComponent, cache);
             classNameSet.addAll(classList);
         }
+        if (cache != null) {
+            cache.save();
+        }
 
         //查找@Import
         Import importConfig = configClass.getAnnotation(Import.class);
@@ -157,55 +184,101 @@ public class AnnotationConfigApplicationContext implements ConfigurableApplicati
 
     /**
      * 根据扫描的ClassName创建BeanDefinition
+     * 扫描时已经通过class文件过滤了非组件类，加载类、创建BeanDefinition在ForkJoinPool中并行执行，
+     * 当前线程在ForkJoinPool中时使用该线程所在的pool，否则使用commonPool；
+     * 结果按类名顺序依次加入，重复Bean名称检测和报错与顺序执行一致
      */
     Map<String, BeanDefinition> createBeanDefinitions(Set<String> classNameSet) {
+        ClassLoader classLoader = getClassLoader();
+        List<ForkJoinTask<ScannedClass>> tasks = classNameSet.stream().sorted()
+                .map(className -> ForkJoinTask.adapt(() -> scanClass(classLoader, className)).fork())
+                .collect(Collectors.toList());
         Map<String, BeanDefinition> defs = new HashMap<>();
-        for (String className : classNameSet) {
-            // 反射获取Class
-            Class<?> clazz = null;
-            try {
-                clazz = Class.forName(className);
-            } catch (ClassNotFoundException e) {
-                throw new BeanCreationException(e);
-            }
-            //Annotation、enum、interface、record不需要加载
-            if (clazz.isAnnotation() || clazz.isEnum() || clazz.isInterface() || clazz.isRecord()) {
-                continue;
+        for (ForkJoinTask<ScannedClass> task : tasks) {
+            ScannedClass scanned = task.join();
+            //抛出按类名顺序第一个出错的类的原始异常
+            if (scanned.error() != null) {
+                throw scanned.error();
             }
-            // 是否标注@Component?
-            Component component = ClassUtils.findAnnotation(clazz, Component.class);
-            if (component != null) {
-                log.info("found component: " + clazz.getName());
-                int mod = clazz.getModifiers();
-                if (Modifier.isAbstract(mod)) {
-                    throw new BeanDefinitionException("@Component class " + clazz.getName() + " must not be abstract.");
-                }
-                if (Modifier.isPrivate(mod)) {
-                    throw new BeanDefinitionException("@Component class " + clazz.getName() + " must not be private.");
-                }
-
-                String beanName = ClassUtils.getBeanName(clazz);
-                var def = new BeanDefinition(beanName, clazz, getSuitableConstructor(clazz), getOrder(clazz), clazz.isAnnotationPresent(Primary.class),
-                        // named init / destroy method:
-                        null, null,
-                        // 扫描@PostConstruct注解
-                        ClassUtils.findAnnotationMethod(clazz, PostConstruct.class),
-                        // 扫描@PreDestroy注解
-                        ClassUtils.findAnnotationMethod(clazz, PreDestroy.class));
+            for (BeanDefinition def : scanned.definitions()) {
                 addBeanDefinitions(defs, def);
                 log.debug("define bean: {}", def);
-
-                //扫描Configuration注解
-                Configuration configuration = ClassUtils.findAnnotation(clazz, Configuration.class);
-                if (configuration != null) {
-                    //扫描Configuration注解里面的@Bean
-                    scanFactoryMethods(beanName, clazz, defs);
-                }
             }
         }
         return defs;
     }
 
+    /**
+     * 一个类扫描出的BeanDefinition，包括@Configuration类中@Bean方法定义的Bean
+     */
+    record ScannedClass(List<BeanDefinition> definitions, RuntimeException error) {
+    }
+
+    ScannedClass scanClass(ClassLoader classLoader, String className) {
+        try {
+            return new ScannedClass(defineBeans(classLoader, className), null);
+        } catch (RuntimeException e) {
+            return new ScannedClass(List.of(), e);
+        }
+    }
+
+    List<BeanDefinition> defineBeans(ClassLoader classLoader, String className) {
+        // 反射获取Class，并行加载时不执行静态初始化，创建Bean实例时再初始化
+        Class<?> clazz = null;
+        try {
+            clazz = Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new BeanCreationException(e);
+        }
+        //Annotation、enum、interface、record不需要加载
+        if (clazz.isAnnotation() || clazz.isEnum() || clazz.isInterface() || clazz.isRecord()) {
+            return List.of();
+        }
+        // 是否标注@Component?
+        Component component = ClassUtils.findAnnotation(clazz, Component.class);
+        if (component == null) {
+            return List.of();
+        }
+        log.info("found component: " + clazz.getName());
+        int mod = clazz.getModifiers();
+        if (Modifier.isAbstract(mod)) {
+            throw new BeanDefinitionException("@Component class " + clazz.getName() + " must not be abstract.");
+        }
+        if (Modifier.isPrivate(mod)) {
+            throw new BeanDefinitionException("@Component class " + clazz.getName() + " must not be private.");
+        }
+
+        List<BeanDefinition> defs = new ArrayList<>();
+        String beanName = ClassUtils.getBeanName(clazz);
+        var def = new BeanDefinition(beanName, clazz, getSuitableConstructor(clazz), getOrder(clazz), clazz.isAnnotationPresent(Primary.class),
+                // named init / destroy method:
+                null, null,
+                // 扫描@PostConstruct注解
+                ClassUtils.findAnnotationMethod(clazz, PostConstruct.class),
+                // 扫描@PreDestroy注解
+                ClassUtils.findAnnotationMethod(clazz, PreDestroy.class));
+        defs.add(def);
+
+        //扫描Configuration注解
+        Configuration configuration = ClassUtils.findAnnotation(clazz, Configuration.class);
+        if (configuration != null) {
+            //扫描Configuration注解里面的@Bean
+            scanFactoryMethods(beanName, clazz, defs);
+        }
+        return defs;
+    }
+
+    /**
+     * 扫描和加载类使用的类加载器，与ResourceResolver一致
+     */
+    ClassLoader getClassLoader() {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        if (cl == null) {
+            cl = getClass().getClassLoader();
+        }
+        return cl;
+    }
+
     /**
      * 创建Bean，但是不进行字段和方法级别的注入
      * 如果创建的Bean不是Configuration。
@@ -678,18 +751,53 @@ public class AnnotationConfigApplicationContext implements ConfigurableApplicati
         return this.beans.get(beanName);
     }
 
+    /**
+     * 构建类型索引，每个BeanDefinition加入其Bean类型的所有父类和接口对应的列表
+     */
+    Map<Class<?>, List<BeanDefinition>> indexBeanTypes(Collection<BeanDefinition> defs) {
+        Map<Class<?>, List<BeanDefinition>> index = new HashMap<>();
+        for (BeanDefinition def : defs) {
+            for (Class<?> type : allTypes(def.getBeanClass())) {
+                index.computeIfAbsent(type, key -> new ArrayList<>()).add(def);
+            }
+        }
+        index.replaceAll((type, list) -> list.stream().sorted().toList());
+        return index;
+    }
+
+    /**
+     * 类本身、所有父类和接口，包括Object（接口也可以赋值给Object）
+     */
+    static Set<Class<?>> allTypes(Class<?> clazz) {
+        Set<Class<?>> types = new HashSet<>();
+        Deque<Class<?>> queue = new ArrayDeque<>();
+        queue.add(clazz);
+        while (!queue.isEmpty()) {
+            Class<?> type = queue.poll();
+            if (types.add(type)) {
+                if (type.getSuperclass() != null) {
+                    queue.add(type.getSuperclass());
+                }
+                queue.addAll(Arrays.asList(type.getInterfaces()));
+            }
+        }
+        types.add(Object.class);
+        return types;
+    }
+
     @Override
     public List<BeanDefinition> findBeanDefinitions(Class<?> type) {
-        return this.beans.values().stream()
-                //类型过滤
-                //isAssignableFrom()方法用于判断当前Class对象所表示的类或接口是否可以被指定的另一个Class对象所表示的类或接口所赋值。
-                .filter(def -> type.isAssignableFrom(def.getBeanClass()))
-                .sorted().collect(Collectors.toList());
+        if (type.isArray()) {
+            return this.arrayBeans.stream().filter(def -> type.isAssignableFrom(def.getBeanClass())).toList();
+        }
+        //类型索引中包含了所有Bean的父类和接口
+        return this.beanTypes.getOrDefault(type, List.of());
     }
 
 
     /**
      * 根据type查找某个BeanDefinition，如果不存在返回null，如果存在多个返回@Primary标注的一个
+     * 结果按类型缓存，运行时按类型获取Bean只需要查询一次Map
      *
      * @param type
      * @return
@@ -697,6 +805,17 @@ public class AnnotationConfigApplicationContext implements ConfigurableApplicati
     @Nullable
     @Override
     public BeanDefinition findBeanDefinition(Class<?> type) {
+        Optional<BeanDefinition> resolved = this.resolvedTypes.get(type);
+        if (resolved == null) {
+            //存在多个Bean且无法确定@Primary时抛出异常，不缓存
+            resolved = Optional.ofNullable(resolveBeanDefinition(type));
+            this.resolvedTypes.put(type, resolved);
+        }
+        return resolved.orElse(null);
+    }
+
+    @Nullable
+    BeanDefinition resolveBeanDefinition(Class<?> type) {
         //查询某个类型下所有Bean，包含子类、实现类
         List<BeanDefinition> beanDefinitions = findBeanDefinitions(type);
         if (beanDefinitions.isEmpty()) {
@@ -751,7 +870,7 @@ public class AnnotationConfigApplicationContext implements ConfigurableApplicati
      * }
      * </code>
      */
-    void scanFactoryMethods(String factoryBeanName, Class<?> clazz, Map<String, BeanDefinition> defs) {
+    void scanFactoryMethods(String factoryBeanName, Class<?> clazz, List<BeanDefinition> defs) {
         for (Method method : clazz.getDeclaredMethods()) {
             //扫描方法上的@Bean注解
             Bean bean = method.getAnnotation(Bean.class);
@@ -784,8 +903,7 @@ public class AnnotationConfigApplicationContext implements ConfigurableApplicati
                         bean.destroyMethod().isEmpty() ? null : bean.destroyMethod(),
                         // @PostConstruct / @PreDestroy method:
                         null, null);
-                addBeanDefinitions(defs, def);
-                log.debug("define bean: {}", def);
+                defs.add(def);
             }
         }
     }
@@ -895,6 +1013,8 @@ public class AnnotationConfigApplicationContext implements ConfigurableApplicati
             destroyBean(value);
         }
         this.beans.clear();
+        this.beanTypes.clear();
+        this.resolvedTypes.clear();
         this.createingBeanNames.clear();
         ApplicationContextUtils.setApplicationContext(null);
     }
@@ -0,0 +1,48 @@
+package com.albert.summer.io;
+
+import java.util.List;
+
+/**
+ * 从class文件中读取的类信息，不需要加载类
+ *
+ * @param className       类名，嵌套类为Outer$Inner
+ * @param access          class文件中的access_flags
+ * @param superClassName  父类名，java.lang.Object和接口为null
+ * @param interfaceNames  直接实现的接口
+ * @param annotationNames 运行时可见的注解类名
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public record ClassMetadata(String className, int access, String superClassName, List<String> interfaceNames,
+                            List<String> annotationNames) {
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_INTERFACE = 0x0200;
+    static final int ACC_ABSTRACT = 0x0400;
+    static final int ACC_ANNOTATION = 0x2000;
+    static final int ACC_ENUM = 0x4000;
+
+    public boolean isInterface() {
+        return (this.access & ACC_INTERFACE) != 0;
+    }
+
+    public boolean isAnnotation() {
+        return (this.access & ACC_ANNOTATION) != 0;
+    }
+
+    public boolean isEnum() {
+        return (this.access & ACC_ENUM) != 0;
+    }
+
+    public boolean isAbstract() {
+        return (this.access & ACC_ABSTRACT) != 0;
+    }
+
+    public boolean isRecord() {
+        return "java.lang.Record".equals(this.superClassName);
+    }
+
+    public boolean hasAnnotation(String annotationName) {
+        return this.annotationNames.contains(annotationName);
+    }
+}
@@ -0,0 +1,252 @@
+package com.albert.summer.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 直接解析class文件的常量池和RuntimeVisibleAnnotations属性，读取类的注解信息
+ * 扫描时用来判断是否是@Component，避免对每个扫描到的类执行Class.forName：
+ * 加载类会执行静态初始化，不是Bean的类也会占用元空间
+ * <p>
+ * 注解的元注解通过同一个reader读取，结果按类名缓存
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class ClassMetadataReader {
+
+    public static final String COMPONENT = "com.albert.summer.annotation.Component";
+
+    static final int MAGIC = 0xCAFEBABE;
+
+    final ClassLoader classLoader;
+
+    /**
+     * 已读取的注解类，包括不存在的注解（Optional.empty）
+     */
+    final Map<String, Optional<ClassMetadata>> annotationCache = new ConcurrentHashMap<>();
+
+    /**
+     * 注解是否直接或间接标注了@Component
+     */
+    final Map<String, Boolean> componentAnnotations = new ConcurrentHashMap<>();
+
+    public ClassMetadataReader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    public ClassLoader getClassLoader() {
+        return this.classLoader;
+    }
+
+    /**
+     * 读取类信息
+     *
+     * @return class文件不存在时返回null
+     */
+    public ClassMetadata read(String className) {
+        String resource = className.replace('.', '/') + ".class";
+        try (InputStream input = this.classLoader.getResourceAsStream(resource)) {
+            if (input == null) {
+                return null;
+            }
+            return parse(new BufferedInputStream(input));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read class file: " + resource, e);
+        }
+    }
+
+    /**
+     * 是否是可以创建Bean的类：标注了@Component（包括间接标注），不是注解、接口、枚举、record
+     * abstract等不合法的情况留给加载类之后检查并报错
+     */
+    public boolean isCandidateComponent(String className) {
+        ClassMetadata metadata = read(className);
+        if (metadata == null) {
+            //读不到class文件时交给Class.forName处理
+            return true;
+        }
+        if (metadata.isAnnotation() || metadata.isEnum() || metadata.isInterface() || metadata.isRecord()) {
+            return false;
+        }
+        return isComponent(metadata);
+    }
+
+    /**
+     * 类上的注解是否直接或间接标注了@Component
+     */
+    public boolean isComponent(ClassMetadata metadata) {
+        for (String annotation : metadata.annotationNames()) {
+            if (isComponentAnnotation(annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 注解是否就是@Component或者标注了@Component，结果按注解缓存
+     */
+    boolean isComponentAnnotation(String annotation) {
+        Boolean cached = this.componentAnnotations.get(annotation);
+        if (cached == null) {
+            //只缓存完整查找的结果，查找过程中因循环引用中断的中间结果不缓存
+            cached = findComponent(annotation, new HashSet<>());
+            this.componentAnnotations.put(annotation, cached);
+        }
+        return cached;
+    }
+
+    boolean findComponent(String annotation, Set<String> visited) {
+        if (COMPONENT.equals(annotation)) {
+            return true;
+        }
+        //jdk元注解，以及注解之间的循环引用
+        if (annotation.startsWith("java.lang.annotation.") || !visited.add(annotation)) {
+            return false;
+        }
+        ClassMetadata metadata = this.annotationCache.computeIfAbsent(annotation, name -> Optional.ofNullable(read(name))).orElse(null);
+        if (metadata != null) {
+            for (String meta : metadata.annotationNames()) {
+                if (findComponent(meta, visited)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析class文件，格式参考JVM规范第4章
+     */
+    static ClassMetadata parse(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Invalid class file.");
+        }
+        //minor_version, major_version
+        in.skipNBytes(4);
+        int count = in.readUnsignedShort();
+        //只保存Utf8常量，以及Class常量指向的Utf8下标
+        String[] utf8 = new String[count];
+        int[] classes = new int[count];
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                //Utf8，格式与readUTF一致
+                case 1 -> utf8[i] = in.readUTF();
+                //Class
+                case 7 -> classes[i] = in.readUnsignedShort();
+                //String, MethodType, Module, Package
+                case 8, 16, 19, 20 -> in.skipNBytes(2);
+                //MethodHandle
+                case 15 -> in.skipNBytes(3);
+                //Integer, Float, Fieldref, Methodref, InterfaceMethodref, NameAndType, Dynamic, InvokeDynamic
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> in.skipNBytes(4);
+                //Long和Double占两个常量池位置
+                case 5, 6 -> {
+                    in.skipNBytes(8);
+                    i++;
+                }
+                default -> throw new IOException("Invalid constant pool tag: " + tag);
+            }
+        }
+        int access = in.readUnsignedShort();
+        String className = className(utf8, classes, in.readUnsignedShort());
+        String superClassName = className(utf8, classes, in.readUnsignedShort());
+        int interfaceCount = in.readUnsignedShort();
+        List<String> interfaceNames = new ArrayList<>(interfaceCount);
+        for (int i = 0; i < interfaceCount; i++) {
+            interfaceNames.add(className(utf8, classes, in.readUnsignedShort()));
+        }
+        //fields, methods
+        skipMembers(in);
+        skipMembers(in);
+        List<String> annotationNames = Collections.emptyList();
+        int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            String name = utf8[in.readUnsignedShort()];
+            int length = in.readInt();
+            if ("RuntimeVisibleAnnotations".equals(name)) {
+                annotationNames = readAnnotationNames(in, utf8);
+            } else {
+                in.skipNBytes(length);
+            }
+        }
+        if ("java.lang.Object".equals(superClassName)) {
+            superClassName = null;
+        }
+        return new ClassMetadata(className, access, superClassName, interfaceNames, annotationNames);
+    }
+
+    static String className(String[] utf8, int[] classes, int index) {
+        if (index == 0) {
+            return null;
+        }
+        return utf8[classes[index]].replace('/', '.');
+    }
+
+    static void skipMembers(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            //access_flags, name_index, descriptor_index
+            in.skipNBytes(6);
+            int attributeCount = in.readUnsignedShort();
+            for (int j = 0; j < attributeCount; j++) {
+                in.skipNBytes(2);
+                in.skipNBytes(in.readInt() & 0xFFFFFFFFL);
+            }
+        }
+    }
+
+    static List<String> readAnnotationNames(DataInputStream in, String[] utf8) throws IOException {
+        int count = in.readUnsignedShort();
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String descriptor = utf8[in.readUnsignedShort()];
+            //Lcom/albert/summer/annotation/Component;
+            names.add(descriptor.substring(1, descriptor.length() - 1).replace('/', '.'));
+            skipElementValuePairs(in);
+        }
+        return names;
+    }
+
+    static void skipElementValuePairs(DataInputStream in) throws IOException {
+        int pairs = in.readUnsignedShort();
+        for (int i = 0; i < pairs; i++) {
+            //element_name_index
+            in.skipNBytes(2);
+            skipElementValue(in);
+        }
+    }
+
+    static void skipElementValue(DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case 'B', 'C', 'D', 'F', 'I', 'J', 'S', 'Z', 's', 'c' -> in.skipNBytes(2);
+            case 'e' -> in.skipNBytes(4);
+            case '@' -> {
+                in.skipNBytes(2);
+                skipElementValuePairs(in);
+            }
+            case '[' -> {
+                int count = in.readUnsignedShort();
+                for (int i = 0; i < count; i++) {
+                    skipElementValue(in);
+                }
+            }
+            default -> throw new IOException("Invalid element value tag: " + (char) tag);
+        }
+    }
+}
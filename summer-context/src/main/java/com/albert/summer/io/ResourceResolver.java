@@ -1,6 +1,7 @@
 package com.albert.summer.io;
 
 
+import jakarta.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,6 +12,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -18,8 +20,9 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
-import java.util.Map;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * 扫描指定文件下的类
@@ -33,6 +36,11 @@ public class ResourceResolver {
 
     private Logger log = LoggerFactory.getLogger(ResourceResolver.class);
 
+    /**
+     * 编译时生成的@Component类索引，与ComponentIndexProcessor一致
+     */
+    public static final String COMPONENT_INDEX = "META-INF/summer.components";
+
     String basePackages;
 
     public ResourceResolver(String basePackages) {
@@ -62,11 +70,140 @@ public class ResourceResolver {
         }
     }
 
+    /**
+     * 扫描包下所有的类名
+     */
+    public List<String> scanClassNames() {
+        return scanClassNames(className -> true, null);
+    }
+
+    /**
+     * 扫描包下的候选类名
+     * classpath根目录（文件夹或jar）中有编译时生成的组件索引时只返回索引中的@Component类，不遍历文件；
+     * 没有索引的根目录遍历所有.class文件，返回candidate判断为true的类名
+     * <p>
+     * 各个根目录之间互相独立，在ForkJoinPool中并行扫描，结果按classpath顺序合并
+     *
+     * @param candidate 判断是否是候选类，例如读取class文件判断是否标注了@Component
+     * @param cache     扫描结果缓存，根目录的指纹不变时直接返回缓存的类名，可以为null
+     */
+    public List<String> scanClassNames(Predicate<String> candidate, @Nullable ScanCache cache) {
+        String basePackagePath = this.basePackages.replace(".", "/");
+        try {
+            List<String> collector = new ArrayList<>();
+            findRoots(basePackagePath).parallelStream()
+                    .map(root -> scanClassNames(basePackagePath, root, candidate, cache))
+                    .forEachOrdered(collector::addAll);
+            return collector;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (URISyntaxException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * classpath中包所在的根目录
+     *
+     * @param isJar    是否在jar包中
+     * @param base     根目录
+     * @param location jar包文件，或者包对应的文件夹
+     */
+    record Root(boolean isJar, String base, Path location) {
+    }
+
+    List<String> scanClassNames(String basePackagePath, Root root, Predicate<String> candidate, ScanCache cache) {
+        try {
+            String key = root.location() + "!/" + basePackagePath;
+            String fingerprint = null;
+            if (cache != null) {
+                fingerprint = root.isJar() ? ScanCache.jarFingerprint(root.location())
+                        : ScanCache.dirFingerprint(root.location(), indexFile(false, basePackagePath, root.location()));
+                List<String> cached = cache.get(key, fingerprint);
+                if (cached != null) {
+                    log.debug("use scan cache for {}: {} classes", key, cached.size());
+                    return cached;
+                }
+            }
+            List<String> collector = new ArrayList<>();
+            visitRoot(basePackagePath, root, (isJar, base, dir) -> {
+                List<String> indexed = readComponentIndex(isJar, basePackagePath, dir);
+                if (indexed != null) {
+                    log.debug("use component index for {}: {} classes", base, indexed.size());
+                    collector.addAll(indexed);
+                } else {
+                    List<String> classNames = new ArrayList<>();
+                    scanFile(isJar, base, dir, classNames, ResourceResolver::toClassName);
+                    collector.addAll(classNames.parallelStream().filter(candidate).toList());
+                }
+            });
+            if (cache != null) {
+                cache.put(key, fingerprint, collector);
+            }
+            return collector;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 读取包所在根目录的组件索引，只保留该包及子包下的类
+     *
+     * @param dir 包对应的目录
+     * @return 没有索引时返回null
+     */
+    List<String> readComponentIndex(boolean isJar, String basePackagePath, Path dir) throws IOException {
+        Path index = indexFile(isJar, basePackagePath, dir);
+        if (index == null || !Files.isRegularFile(index)) {
+            return null;
+        }
+        String prefix = this.basePackages + ".";
+        return Files.readAllLines(index, StandardCharsets.UTF_8).stream().map(String::trim)
+                .filter(name -> !name.isEmpty() && !name.startsWith("#") && name.startsWith(prefix)).toList();
+    }
+
+    /**
+     * 包所在根目录的组件索引文件
+     *
+     * @param dir 包对应的目录
+     */
+    @Nullable
+    Path indexFile(boolean isJar, String basePackagePath, Path dir) {
+        Path root = dir;
+        if (isJar) {
+            root = dir.getFileSystem().getPath("/");
+        } else {
+            //包路径有几段就向上几级
+            for (int i = basePackagePath.split("/").length; i > 0 && root != null; i--) {
+                root = root.getParent();
+            }
+        }
+        return root == null ? null : root.resolve(COMPONENT_INDEX);
+    }
+
+    static String toClassName(Resource res) {
+        String name = res.name();
+        if (name.endsWith(".class")) {
+            return name.substring(0, name.length() - 6).replace("/", ".").replace("\\", ".");
+        }
+        return null;
+    }
+
     <R> void scan0(String basePackagePath, String path, List<R> collector, Function<Resource, R> mapper) throws IOException, URISyntaxException {
-        log.debug("scan path : {}", path);
+        for (Root root : findRoots(path)) {
+            visitRoot(path, root, (isJar, base, dir) -> scanFile(isJar, base, dir, collector, mapper));
+        }
+    }
+
+    /**
+     * 查找包在classpath中对应的所有根目录
+     */
+    List<Root> findRoots(String basePackagePath) throws IOException, URISyntaxException {
+        log.debug("scan path : {}", basePackagePath);
         ClassLoader contextClassLoader = getContextClassLoader();
+        List<Root> roots = new ArrayList<>();
         //指定文件夹下所有类
-        Enumeration<URL> enumeration = contextClassLoader.getResources(path);
+        Enumeration<URL> enumeration = contextClassLoader.getResources(basePackagePath);
         while (enumeration.hasMoreElements()) {
             URL url = enumeration.nextElement();
             URI uri = url.toURI();
@@ -77,12 +214,36 @@ public class ResourceResolver {
                 uriBaseStr = uriBaseStr.substring(5);
             }
             if (uriStr.startsWith("jar:")) {
-                scanFile(true, uriBaseStr, jarUriToPath(basePackagePath, uri), collector, mapper);
+                roots.add(new Root(true, uriBaseStr, jarUriToPath(uri)));
             } else {
-                scanFile(false, uriBaseStr, Paths.get(uri), collector, mapper);
+                roots.add(new Root(false, uriBaseStr, Paths.get(uri)));
             }
         }
+        return roots;
+    }
 
+    /**
+     * 访问根目录中包对应的目录，jar包在访问期间打开，访问结束后关闭
+     */
+    void visitRoot(String basePackagePath, Root root, RootVisitor visitor) throws IOException {
+        if (!root.isJar()) {
+            visitor.visit(false, root.base(), root.location());
+            return;
+        }
+        //不注册到FileSystemProvider，同一个jar可以重复打开，关闭后释放文件句柄
+        try (FileSystem fs = FileSystems.newFileSystem(root.location())) {
+            visitor.visit(true, root.base(), fs.getPath(basePackagePath));
+        }
+    }
+
+    interface RootVisitor {
+
+        /**
+         * @param isJar 是否在jar包中
+         * @param base  根目录
+         * @param dir   包对应的目录
+         */
+        void visit(boolean isJar, String base, Path dir) throws IOException;
     }
 
     /**
@@ -100,27 +261,34 @@ public class ResourceResolver {
         return cl;
     }
 
-    Path jarUriToPath(String basePackagePath, URI jarUri) throws IOException {
-        return FileSystems.newFileSystem(jarUri, Map.of()).getPath(basePackagePath);
+    /**
+     * jar:file:/path/app.jar!/com/albert -> /path/app.jar
+     */
+    Path jarUriToPath(URI jarUri) throws URISyntaxException {
+        String spec = jarUri.getRawSchemeSpecificPart();
+        int separator = spec.indexOf("!/");
+        return Paths.get(new URI(separator < 0 ? spec : spec.substring(0, separator)));
     }
 
     <R> void scanFile(boolean isJar, String base, Path root, List<R> collector, Function<Resource, R> mapper) throws IOException {
         String baseDir = removeTrailingSlash(base);
-        Files.walk(root).filter(Files::isRegularFile).forEach(file -> {
-            Resource res = null;
-            if (isJar) {
-                res = new Resource(baseDir, removeLeadingSlash(file.toString()));
-            } else {
-                String path = file.toString();
-                String name = removeLeadingSlash(path.substring(baseDir.length()));
-                res = new Resource("file:" + path, name);
-            }
-            log.debug("found resource: {}", res);
-            R r = mapper.apply(res);
-            if (r != null) {
-                collector.add(r);
-            }
-        });
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                Resource res = null;
+                if (isJar) {
+                    res = new Resource(baseDir, removeLeadingSlash(file.toString()));
+                } else {
+                    String path = file.toString();
+                    String name = removeLeadingSlash(path.substring(baseDir.length()));
+                    res = new Resource("file:" + path, name);
+                }
+                log.debug("found resource: {}", res);
+                R r = mapper.apply(res);
+                if (r != null) {
+                    collector.add(r);
+                }
+            });
+        }
     }
 
 
@@ -0,0 +1,194 @@
+package com.albert.summer.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 持久化的扫描结果缓存：classpath根目录（jar或文件夹）+ 包 -> 其中的候选@Component类名
+ * <p>
+ * 每个条目保存扫描时根目录的指纹，指纹不变时直接使用缓存，不再遍历文件和读取class文件：
+ * jar包使用文件大小、修改时间和最后64KB的CRC（zip的中央目录在文件末尾）；
+ * 文件夹遍历包目录，使用每个文件的相对路径、大小和修改时间
+ * <p>
+ * 保存时只保留本次启动用到的条目，classpath中已经不存在的根目录会被清除
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class ScanCache {
+
+    static final Logger log = LoggerFactory.getLogger(ScanCache.class);
+
+    /**
+     * 缓存格式版本，格式或候选类判断规则变化时修改
+     */
+    static final String VERSION = "1";
+
+    static final String VERSION_KEY = "#version";
+
+    static final int JAR_TAIL_SIZE = 64 * 1024;
+
+    final Path file;
+
+    /**
+     * key -> 指纹|类名,类名
+     */
+    final Map<String, String> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 本次启动用到的条目
+     */
+    final Map<String, String> used = new ConcurrentHashMap<>();
+
+    volatile boolean modified = false;
+
+    ScanCache(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * 读取缓存文件，文件不存在、无法读取或版本不一致时使用空缓存
+     */
+    public static ScanCache load(Path file) {
+        ScanCache cache = new ScanCache(file);
+        if (Files.isRegularFile(file)) {
+            Properties props = new Properties();
+            try (InputStream input = Files.newInputStream(file)) {
+                props.load(input);
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("ignore unreadable scan cache {}: {}", file, e.getMessage());
+                return cache;
+            }
+            if (VERSION.equals(props.getProperty(VERSION_KEY))) {
+                props.remove(VERSION_KEY);
+                props.forEach((key, value) -> cache.entries.put((String) key, (String) value));
+            }
+        }
+        log.debug("load scan cache {}: {} entries", file, cache.entries.size());
+        return cache;
+    }
+
+    /**
+     * 查询缓存，指纹不一致时返回null
+     */
+    public List<String> get(String key, String fingerprint) {
+        String value = this.entries.get(key);
+        if (value == null) {
+            return null;
+        }
+        int pos = value.indexOf('|');
+        if (pos < 0 || !value.substring(0, pos).equals(fingerprint)) {
+            return null;
+        }
+        this.used.put(key, value);
+        String names = value.substring(pos + 1);
+        return names.isEmpty() ? List.of() : Arrays.asList(names.split(","));
+    }
+
+    public void put(String key, String fingerprint, List<String> classNames) {
+        String value = fingerprint + "|" + String.join(",", classNames);
+        this.entries.put(key, value);
+        this.used.put(key, value);
+        this.modified = true;
+    }
+
+    /**
+     * 保存本次启动用到的条目，先写临时文件再替换，避免并发启动读到写了一半的文件
+     */
+    public void save() {
+        if (!this.modified && this.used.size() == this.entries.size()) {
+            return;
+        }
+        Properties props = new Properties();
+        props.putAll(this.used);
+        props.put(VERSION_KEY, VERSION);
+        try {
+            Path dir = this.file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, this.file.getFileName().toString(), ".tmp");
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                props.store(output, "summer scan cache");
+            }
+            Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("save scan cache {}: {} entries", this.file, this.used.size());
+        } catch (IOException e) {
+            //缓存写入失败不影响启动
+            log.warn("cannot save scan cache {}: {}", this.file, e.getMessage());
+        }
+    }
+
+    /**
+     * jar包指纹：大小、修改时间、最后64KB的CRC
+     */
+    static String jarFingerprint(Path jar) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(jar, BasicFileAttributes.class);
+        long size = attrs.size();
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+            int length = (int) Math.min(size, JAR_TAIL_SIZE);
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            channel.position(size - length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            crc.update(buffer);
+        }
+        return "jar:" + size + ":" + attrs.lastModifiedTime().toMillis() + ":" + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * 文件夹指纹：遍历目录，计算每个文件的相对路径、大小和修改时间的CRC
+     *
+     * @param extra 目录之外需要检查的文件，例如组件索引，可以不存在
+     */
+    static String dirFingerprint(Path dir, Path extra) throws IOException {
+        List<String> stats = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.forEach(path -> stats.add(stat(dir.relativize(path).toString(), path)));
+        }
+        //遍历顺序与文件系统有关，排序后再计算
+        stats.sort(null);
+        if (extra != null && Files.exists(extra)) {
+            stats.add(stat("+" + extra.getFileName(), extra));
+        }
+        CRC32 crc = new CRC32();
+        for (String stat : stats) {
+            crc.update(stat.getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        return "dir:" + stats.size() + ":" + Long.toHexString(crc.getValue());
+    }
+
+    static String stat(String name, Path path) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            return name + "\t" + attrs.size() + "\t" + attrs.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
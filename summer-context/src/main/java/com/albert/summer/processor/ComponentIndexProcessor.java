@@ -0,0 +1,142 @@
+package com.albert.summer.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 编译时生成@Component类的索引：META-INF/summer.components，每行一个类名
+ * 包括通过注解间接标注@Component的类，例如@Configuration、@RestController
+ * 启动时有索引的classpath根目录直接读取索引，不再遍历文件和加载非组件类
+ * <p>
+ * 增量编译时只处理变化的源文件，之前索引中仍然存在且仍是组件的类会保留
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+@SupportedAnnotationTypes("*")
+public class ComponentIndexProcessor extends AbstractProcessor {
+
+    public static final String INDEX_LOCATION = "META-INF/summer.components";
+
+    static final String COMPONENT = "com.albert.summer.annotation.Component";
+
+    /**
+     * 本次编译中处理过的类
+     */
+    final Set<String> processed = new HashSet<>();
+
+    final Set<String> components = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getRootElements()) {
+            collect(element);
+        }
+        if (roundEnv.processingOver()) {
+            writeIndex();
+        }
+        //不声明处理了任何注解，其他注解处理器照常执行
+        return false;
+    }
+
+    void collect(Element element) {
+        if (!(element instanceof TypeElement type)) {
+            return;
+        }
+        String name = this.processingEnv.getElementUtils().getBinaryName(type).toString();
+        this.processed.add(name);
+        //与扫描时一致：注解、接口、枚举、record不是Bean
+        if (type.getKind() == ElementKind.CLASS && isComponent(type, new HashSet<>())) {
+            this.components.add(name);
+        }
+        for (Element enclosed : type.getEnclosedElements()) {
+            collect(enclosed);
+        }
+    }
+
+    static boolean isComponent(Element element, Set<String> visited) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            String name = annotationType.getQualifiedName().toString();
+            if (name.equals(COMPONENT)) {
+                return true;
+            }
+            if (!name.startsWith("java.lang.annotation.") && visited.add(name) && isComponent(annotationType, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void writeIndex() {
+        Set<String> index = new TreeSet<>(this.components);
+        boolean existed = mergeExistingIndex(index);
+        if (index.isEmpty() && !existed) {
+            return;
+        }
+        try {
+            FileObject file = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION);
+            try (Writer writer = file.openWriter()) {
+                for (String name : index) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + INDEX_LOCATION + ": " + e);
+        }
+    }
+
+    /**
+     * 合并上次编译生成的索引，本次没有编译的类如果还存在且仍是组件则保留
+     *
+     * @return 是否存在上次的索引
+     */
+    boolean mergeExistingIndex(Set<String> index) {
+        FileObject existing;
+        try {
+            existing = this.processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION);
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
+        Elements elements = this.processingEnv.getElementUtils();
+        try (BufferedReader reader = new BufferedReader(existing.openReader(true))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String name = line.trim();
+                if (name.isEmpty() || name.startsWith("#") || this.processed.contains(name)) {
+                    continue;
+                }
+                TypeElement type = elements.getTypeElement(name.replace('$', '.'));
+                if (type != null && isComponent(type, new HashSet<>())) {
+                    index.add(name);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            //上次的索引不存在
+            return false;
+        }
+    }
+}
@@ -20,7 +20,10 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -152,6 +155,46 @@ class AnnotationConfigApplicationContextTest {
         assertSame(proxy, inject2.injected);
     }
 
+    /**
+     * 测试在不同并行度的ForkJoinPool中创建BeanDefinition，结果与顺序执行一致
+     */
+    @Test
+    public void testParallelBeanDefinitions() throws Exception {
+        var sequential = new AnnotationConfigApplicationContext(ScanApplication.class, createPropertyResolver());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            var parallel = pool.submit(() -> new AnnotationConfigApplicationContext(ScanApplication.class, createPropertyResolver())).get();
+            assertEquals(new TreeSet<>(sequential.beans.keySet()), new TreeSet<>(parallel.beans.keySet()));
+            for (BeanDefinition def : sequential.beans.values()) {
+                assertSame(def.getBeanClass(), parallel.findBeanDefinition(def.getName()).getBeanClass());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 测试类型索引与遍历所有BeanDefinition的结果一致
+     */
+    @Test
+    public void testTypeIndex() {
+        var applicationContent = new AnnotationConfigApplicationContext(ScanApplication.class, createPropertyResolver());
+        for (BeanDefinition def : applicationContent.beans.values()) {
+            for (Class<?> type : AnnotationConfigApplicationContext.allTypes(def.getBeanClass())) {
+                List<BeanDefinition> expected = applicationContent.beans.values().stream()
+                        .filter(d -> type.isAssignableFrom(d.getBeanClass())).sorted().toList();
+                assertEquals(expected, applicationContent.findBeanDefinitions(type), type.getName());
+            }
+        }
+        assertEquals(List.of(), applicationContent.findBeanDefinitions(Runnable.class));
+        assertEquals(2, applicationContent.getBeans(BeanPostProcessor.class).size());
+
+        //按类型查找的结果被缓存
+        PersonBean person = applicationContent.getBean(PersonBean.class);
+        assertTrue(applicationContent.resolvedTypes.containsKey(PersonBean.class));
+        assertSame(person, applicationContent.getBean(PersonBean.class));
+    }
+
     PropertyResolver createPropertyResolver() {
         var ps = new Properties();
         ps.put("app.title", "Scan App");
@@ -0,0 +1,52 @@
+package com.albert.summer.context;
+
+import com.albert.summer.scan.ScanApplication;
+import com.albert.summer.scan.primary.PersonBean;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比按类型获取Bean的开销：类型索引+缓存，与遍历所有BeanDefinition过滤排序后再选@Primary（之前的方式）
+ * <p>
+ * 运行：在IDE中直接执行main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanLookupBenchmark {
+
+    AnnotationConfigApplicationContext context;
+
+    @Setup
+    public void setup() {
+        this.context = new AnnotationConfigApplicationContext(ScanApplication.class, new AnnotationConfigApplicationContextTest().createPropertyResolver());
+    }
+
+    @Benchmark
+    public Object indexed() {
+        return this.context.getBean(PersonBean.class);
+    }
+
+    @Benchmark
+    public Object linear() {
+        List<BeanDefinition> defs = this.context.beans.values().stream()
+                .filter(def -> PersonBean.class.isAssignableFrom(def.getBeanClass()))
+                .sorted().toList();
+        if (defs.size() == 1) {
+            return defs.getFirst().getRequiredInstance();
+        }
+        return defs.stream().filter(BeanDefinition::isPrimary).toList().getFirst().getRequiredInstance();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BeanLookupBenchmark.class.getSimpleName()).build()).run();
+    }
+}
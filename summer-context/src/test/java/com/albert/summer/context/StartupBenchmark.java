@@ -0,0 +1,121 @@
+package com.albert.summer.context;
+
+import com.albert.summer.property.PropertyResolver;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 对比不同并行度下的启动耗时：同一个包分布在4个classpath根目录中，共有几千个组件
+ * 在指定并行度的ForkJoinPool中创建容器，扫描和创建BeanDefinition使用该pool
+ * <p>
+ * 运行：在IDE中直接执行main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StartupBenchmark {
+
+    static final String PACKAGE = "app";
+
+    static final int ROOTS = 4;
+
+    @Param({"4000"})
+    int components;
+
+    @Param({"1", "8"})
+    int parallelism;
+
+    Path dir;
+
+    URL[] urls;
+
+    ForkJoinPool pool;
+
+    ClassLoader original;
+
+    @Setup
+    public void setup() throws IOException {
+        this.dir = Files.createTempDirectory("summer-startup");
+        this.urls = new URL[ROOTS];
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+            for (int root = 0; root < ROOTS; root++) {
+                Path src = Files.createDirectories(this.dir.resolve("src" + root).resolve(PACKAGE));
+                List<Path> files = new ArrayList<>();
+                if (root == 0) {
+                    files.add(Files.writeString(src.resolve("AppConfig.java"), "package app; public class AppConfig {}"));
+                }
+                for (int i = root; i < this.components; i += ROOTS) {
+                    files.add(Files.writeString(src.resolve("Service" + i + ".java"), """
+                            package app;
+                            @com.albert.summer.annotation.Component
+                            public class Service%d {
+                                private final java.util.Map<String, Object> values = new java.util.HashMap<>();
+                                @jakarta.annotation.PostConstruct void init() { values.put("id", %d); }
+                                public Object get(String key) { return values.get(key); }
+                                public void put(String key, Object value) { values.put(key, value); }
+                            }
+                            """.formatted(i, i)));
+                }
+                Path out = Files.createDirectories(this.dir.resolve("classes" + root));
+                var options = List.of("-proc:none", "-d", out.toString(), "-classpath", System.getProperty("java.class.path"));
+                if (!compiler.getTask(null, fileManager, null, options, null, fileManager.getJavaFileObjectsFromPaths(files)).call()) {
+                    throw new IllegalStateException("Compile failed.");
+                }
+                this.urls[root] = out.toUri().toURL();
+            }
+        }
+        this.pool = new ForkJoinPool(this.parallelism);
+        this.original = Thread.currentThread().getContextClassLoader();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.pool.shutdown();
+        try (Stream<Path> paths = Files.walk(this.dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int startup() throws Exception {
+        //每次使用新的类加载器，保证类都需要重新加载
+        try (URLClassLoader cl = new URLClassLoader(this.urls, this.original)) {
+            return this.pool.submit(() -> {
+                Thread.currentThread().setContextClassLoader(cl);
+                try {
+                    Class<?> configClass = Class.forName(PACKAGE + ".AppConfig", true, cl);
+                    var context = new AnnotationConfigApplicationContext(configClass, new PropertyResolver(new Properties()));
+                    return context.beans.size();
+                } finally {
+                    Thread.currentThread().setContextClassLoader(this.original);
+                }
+            }).get();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(StartupBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,80 @@
+package com.albert.summer.io;
+
+import com.albert.summer.annotation.ComponentScan;
+import com.albert.summer.annotation.Import;
+import com.albert.summer.annotation.Order;
+import com.albert.summer.scan.ScanApplication;
+import com.albert.summer.scan.custom.annotation.CustomAnnotation;
+import com.albert.summer.scan.custom.annotation.CustomAnnotationBean;
+import com.albert.summer.scan.nested.OuterBean;
+import com.albert.summer.scan.primary.PrimaryConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.ElementType;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class ClassMetadataReaderTest {
+
+    final ClassMetadataReader reader = new ClassMetadataReader(getClass().getClassLoader());
+
+    /**
+     * 读取类名、父类、接口和带参数的注解
+     */
+    @Test
+    public void testRead() {
+        ClassMetadata metadata = this.reader.read(ScanApplication.class.getName());
+        assertEquals(ScanApplication.class.getName(), metadata.className());
+        assertNull(metadata.superClassName());
+        assertEquals(List.of(ComponentScan.class.getName(), Import.class.getName()), metadata.annotationNames());
+
+        ClassMetadata resource = this.reader.read(Resource.class.getName());
+        assertTrue(resource.isRecord());
+        assertEquals(List.of(), resource.annotationNames());
+
+        ClassMetadata order = this.reader.read(Order.class.getName());
+        assertTrue(order.isAnnotation());
+        assertTrue(order.isInterface());
+        assertEquals(List.of("java.lang.annotation.Annotation"), order.interfaceNames());
+
+        assertTrue(this.reader.read(ElementType.class.getName()).isEnum());
+        assertNull(this.reader.read("com.albert.summer.NotExist"));
+    }
+
+    /**
+     * 通过元注解判断@Component，注解本身不是候选Bean
+     */
+    @Test
+    public void testCandidateComponent() {
+        assertTrue(this.reader.isCandidateComponent(CustomAnnotationBean.class.getName()));
+        assertTrue(this.reader.isCandidateComponent(PrimaryConfiguration.class.getName()));
+        assertTrue(this.reader.isCandidateComponent(OuterBean.NestedBean.class.getName()));
+        assertFalse(this.reader.isCandidateComponent(CustomAnnotation.class.getName()));
+        assertFalse(this.reader.isCandidateComponent(ScanApplication.class.getName()));
+        assertFalse(this.reader.isCandidateComponent(Resource.class.getName()));
+    }
+
+    /**
+     * 读取注解信息不会加载类，也不会执行静态初始化
+     */
+    @Test
+    public void testNotInitialized() {
+        String name = getClass().getName() + "$Initializer";
+        assertFalse(this.reader.isCandidateComponent(name));
+        assertEquals(0, initialized);
+    }
+
+    static int initialized = 0;
+
+    @Deprecated
+    static class Initializer {
+        static {
+            initialized++;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.albert.summer.io;
+
+import com.albert.summer.annotation.Component;
+import com.albert.summer.context.AnnotationConfigApplicationContext;
+import com.albert.summer.property.PropertyResolver;
+import com.albert.summer.utils.ClassUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 对比启动扫描的开销：扫描路径下有5000个非组件类和少量组件
+ * 读取class文件判断@Component，与对每个类执行Class.forName后查找注解（之前的方式），
+ * 以及classpath没有变化时使用扫描缓存启动
+ * <p>
+ * 运行：在IDE中直接执行main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComponentScanBenchmark {
+
+    static final String PACKAGE = "bench";
+
+    @Param({"5000"})
+    int classes;
+
+    @Param({"20"})
+    int components;
+
+    Path dir;
+
+    ClassLoader original;
+
+    @Setup
+    public void setup() throws IOException {
+        this.dir = Files.createTempDirectory("summer-scan");
+        Path src = Files.createDirectories(this.dir.resolve("src").resolve(PACKAGE));
+        List<Path> files = new ArrayList<>();
+        files.add(Files.writeString(src.resolve("BenchConfig.java"), "package bench; public class BenchConfig {}"));
+        for (int i = 0; i < this.classes; i++) {
+            //非组件类带静态初始化和几个方法，加载时需要解析和初始化
+            files.add(Files.writeString(src.resolve("Plain" + i + ".java"), """
+                    package bench;
+                    public class Plain%d {
+                        static final long CREATED = System.nanoTime();
+                        private final java.util.Map<String, Object> values = new java.util.HashMap<>();
+                        public Object get(String key) { return values.get(key); }
+                        public void put(String key, Object value) { values.put(key, value); }
+                        @Override public String toString() { return "Plain%d" + values; }
+                    }
+                    """.formatted(i, i)));
+        }
+        for (int i = 0; i < this.components; i++) {
+            files.add(Files.writeString(src.resolve("Service" + i + ".java"),
+                    "package bench; @com.albert.summer.annotation.Component public class Service%d {}".formatted(i)));
+        }
+        Path out = Files.createDirectories(this.dir.resolve("classes"));
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+            //不生成组件索引，测试没有索引时的扫描
+            var options = List.of("-proc:none", "-d", out.toString(), "-classpath", System.getProperty("java.class.path"));
+            if (!compiler.getTask(null, fileManager, null, options, null, fileManager.getJavaFileObjectsFromPaths(files)).call()) {
+                throw new IllegalStateException("Compile failed.");
+            }
+        }
+        this.original = Thread.currentThread().getContextClassLoader();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Thread.currentThread().setContextClassLoader(this.original);
+        try (Stream<Path> paths = Files.walk(this.dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * 每次使用新的类加载器，保证类都需要重新加载
+     */
+    URLClassLoader newClassLoader() throws IOException {
+        URLClassLoader cl = new URLClassLoader(new URL[]{this.dir.resolve("classes").toUri().toURL()}, this.original);
+        Thread.currentThread().setContextClassLoader(cl);
+        return cl;
+    }
+
+    @Benchmark
+    public Object startup() throws Exception {
+        try (URLClassLoader cl = newClassLoader()) {
+            Class<?> configClass = Class.forName(PACKAGE + ".BenchConfig", true, cl);
+            return new AnnotationConfigApplicationContext(configClass, new PropertyResolver(new Properties()));
+        }
+    }
+
+    @Benchmark
+    public Object startupWithCache() throws Exception {
+        try (URLClassLoader cl = newClassLoader()) {
+            Class<?> configClass = Class.forName(PACKAGE + ".BenchConfig", true, cl);
+            Properties props = new Properties();
+            //第一次启动写入缓存，之后每次启动都命中
+            props.put("summer.context.scan-cache", this.dir.resolve("scan.cache").toString());
+            return new AnnotationConfigApplicationContext(configClass, new PropertyResolver(props));
+        }
+    }
+
+    @Benchmark
+    public int readMetadata() throws Exception {
+        try (URLClassLoader cl = newClassLoader()) {
+            ClassMetadataReader reader = new ClassMetadataReader(cl);
+            int found = 0;
+            for (String className : new ResourceResolver(PACKAGE).scanClassNames()) {
+                if (reader.isCandidateComponent(className)) {
+                    Class.forName(className, true, cl);
+                    found++;
+                }
+            }
+            return found;
+        }
+    }
+
+    @Benchmark
+    public int loadEveryClass() throws Exception {
+        try (URLClassLoader cl = newClassLoader()) {
+            int found = 0;
+            for (String className : new ResourceResolver(PACKAGE).scanClassNames()) {
+                Class<?> clazz = Class.forName(className, true, cl);
+                if (ClassUtils.findAnnotation(clazz, Component.class) != null) {
+                    found++;
+                }
+            }
+            return found;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ComponentScanBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -2,10 +2,18 @@ package com.albert.summer.io;
 
 import jakarta.annotation.PostConstruct;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 /**
  * @author yangjunwei
  * @date 2024/7/16
@@ -52,5 +60,26 @@ public class ResourceResolverTest {
         }
     }
 
+    /**
+     * 测试有组件索引时只读取索引，没有索引时遍历文件
+     */
+    @Test
+    public void testScanClassNamesWithIndex(@TempDir Path root) throws Exception {
+        Files.createDirectories(root.resolve("demo/sub"));
+        Files.createFile(root.resolve("demo/Foo.class"));
+        Files.createFile(root.resolve("demo/sub/Bar.class"));
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        try (var cl = new URLClassLoader(new URL[]{root.toUri().toURL()}, null)) {
+            Thread.currentThread().setContextClassLoader(cl);
+            List<String> classes = new ArrayList<>(new ResourceResolver("demo").scanClassNames());
+            Collections.sort(classes);
+            assertEquals(List.of("demo.Foo", "demo.sub.Bar"), classes);
 
+            Files.createDirectories(root.resolve("META-INF"));
+            Files.writeString(root.resolve(ResourceResolver.COMPONENT_INDEX), "demo.sub.Bar\ndemox.Other\nother.Baz\n");
+            assertEquals(List.of("demo.sub.Bar"), new ResourceResolver("demo").scanClassNames());
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
 }
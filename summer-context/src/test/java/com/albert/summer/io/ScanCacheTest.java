@@ -0,0 +1,141 @@
+package com.albert.summer.io;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class ScanCacheTest {
+
+    @TempDir
+    Path dir;
+
+    ClassLoader original;
+
+    final AtomicInteger checked = new AtomicInteger();
+
+    final Predicate<String> candidate = className -> {
+        this.checked.incrementAndGet();
+        return !className.endsWith("Plain");
+    };
+
+    @BeforeEach
+    void setUp() {
+        this.original = Thread.currentThread().getContextClassLoader();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Thread.currentThread().setContextClassLoader(this.original);
+    }
+
+    List<String> scan(URL url, Path cacheFile) throws IOException {
+        try (var cl = new URLClassLoader(new URL[]{url}, null)) {
+            Thread.currentThread().setContextClassLoader(cl);
+            ScanCache cache = ScanCache.load(cacheFile);
+            List<String> classes = new ArrayList<>(new ResourceResolver("demo").scanClassNames(this.candidate, cache));
+            cache.save();
+            Collections.sort(classes);
+            return classes;
+        }
+    }
+
+    /**
+     * 文件夹没有变化时使用缓存，新增文件后重新扫描
+     */
+    @Test
+    public void testDirectory() throws Exception {
+        Path root = Files.createDirectories(this.dir.resolve("classes"));
+        Files.createDirectories(root.resolve("demo/sub"));
+        Files.createFile(root.resolve("demo/Foo.class"));
+        Files.createFile(root.resolve("demo/sub/Plain.class"));
+        Path cacheFile = this.dir.resolve("cache/scan.cache");
+        URL url = root.toUri().toURL();
+
+        assertEquals(List.of("demo.Foo"), scan(url, cacheFile));
+        assertEquals(2, this.checked.get());
+        assertTrue(Files.isRegularFile(cacheFile));
+
+        assertEquals(List.of("demo.Foo"), scan(url, cacheFile));
+        assertEquals(2, this.checked.get());
+
+        Files.createFile(root.resolve("demo/sub/Bar.class"));
+        assertEquals(List.of("demo.Foo", "demo.sub.Bar"), scan(url, cacheFile));
+        assertEquals(5, this.checked.get());
+    }
+
+    /**
+     * jar包每次扫描后关闭，可以重复扫描；jar包内容变化后重新扫描
+     */
+    @Test
+    public void testJar() throws Exception {
+        Path jar = this.dir.resolve("app.jar");
+        writeJar(jar, "demo/", "demo/Foo.class", "demo/Plain.class");
+        Path cacheFile = this.dir.resolve("scan.cache");
+        URL url = jar.toUri().toURL();
+
+        assertEquals(List.of("demo.Foo"), scan(url, cacheFile));
+        assertEquals(2, this.checked.get());
+        assertEquals(List.of("demo.Foo"), scan(url, cacheFile));
+        assertEquals(2, this.checked.get());
+
+        writeJar(jar, "demo/", "demo/Foo.class", "demo/Plain.class", "demo/Bar.class");
+        assertEquals(List.of("demo.Bar", "demo.Foo"), scan(url, cacheFile));
+        assertEquals(5, this.checked.get());
+        //jar包没有被占用
+        Files.delete(jar);
+    }
+
+    /**
+     * 保存时只保留本次用到的条目，版本不一致时忽略
+     */
+    @Test
+    public void testSave() throws Exception {
+        Path cacheFile = this.dir.resolve("scan.cache");
+        ScanCache cache = ScanCache.load(cacheFile);
+        cache.put("a", "f1", List.of("demo.A", "demo.B"));
+        cache.put("b", "f2", List.of());
+        cache.save();
+
+        cache = ScanCache.load(cacheFile);
+        assertEquals(List.of("demo.A", "demo.B"), cache.get("a", "f1"));
+        assertNull(cache.get("a", "changed"));
+        cache.save();
+
+        cache = ScanCache.load(cacheFile);
+        assertNull(cache.get("b", "f2"));
+        assertEquals(List.of("demo.A", "demo.B"), cache.get("a", "f1"));
+
+        Files.writeString(cacheFile, Files.readString(cacheFile).replace("#version=" + ScanCache.VERSION, "#version=0"));
+        assertNull(ScanCache.load(cacheFile).get("a", "f1"));
+    }
+
+    static void writeJar(Path jar, String... entries) throws IOException {
+        try (OutputStream output = Files.newOutputStream(jar); JarOutputStream out = new JarOutputStream(output)) {
+            for (String entry : entries) {
+                out.putNextEntry(new ZipEntry(entry));
+                out.closeEntry();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.albert.summer.processor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComponentIndexProcessorTest {
+
+    @TempDir
+    Path dir;
+
+    void compile(Map<String, String> sources) throws IOException {
+        Path src = this.dir.resolve("src");
+        Path out = this.dir.resolve("out");
+        Files.createDirectories(out);
+        List<Path> files = new ArrayList<>();
+        for (var entry : sources.entrySet()) {
+            Path file = src.resolve(entry.getKey().replace('.', '/') + ".java");
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, entry.getValue());
+            files.add(file);
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+            var options = List.of("-d", out.toString(), "-classpath", System.getProperty("java.class.path") + File.pathSeparator + out);
+            var task = compiler.getTask(null, fileManager, null, options, null, fileManager.getJavaFileObjectsFromPaths(files));
+            task.setProcessors(List.of(new ComponentIndexProcessor()));
+            assertTrue(task.call());
+        }
+    }
+
+    List<String> readIndex() throws IOException {
+        return Files.readAllLines(this.dir.resolve("out").resolve(ComponentIndexProcessor.INDEX_LOCATION));
+    }
+
+    @Test
+    void indexComponents() throws Exception {
+        compile(Map.of(
+                "demo.Service", """
+                        package demo;
+                        @com.albert.summer.annotation.Component
+                        @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)
+                        public @interface Service {}
+                        """,
+                "demo.A", "package demo; @com.albert.summer.annotation.Component public class A {}",
+                "demo.B", "package demo; @Service public class B { @com.albert.summer.annotation.Component public static class Inner {} }",
+                "demo.C", "package demo; public class C {}",
+                "demo.Config", "package demo; @com.albert.summer.annotation.Configuration public class Config {}"));
+        //间接标注@Component的类和嵌套类都在索引中，注解本身不在
+        assertEquals(List.of("demo.A", "demo.B", "demo.B$Inner", "demo.Config"), readIndex());
+    }
+
+    @Test
+    void mergeIncrementalCompile() throws Exception {
+        compile(Map.of(
+                "demo.A", "package demo; @com.albert.summer.annotation.Component public class A {}",
+                "demo.B", "package demo; @com.albert.summer.annotation.Component public class B {}"));
+        //只编译变化的文件：A不再是组件，新增D
+        compile(Map.of(
+                "demo.A", "package demo; public class A {}",
+                "demo.D", "package demo; @com.albert.summer.annotation.Component public class D {}"));
+        assertEquals(List.of("demo.B", "demo.D"), readIndex());
+    }
+}
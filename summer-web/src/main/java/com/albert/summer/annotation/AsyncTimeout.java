@@ -0,0 +1,23 @@
+package com.albert.summer.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 异步接口（返回CompletableFuture、Callable或DeferredResult）的超时时间，
+ * 未设置时使用summer.web.async.timeout
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AsyncTimeout {
+
+    /**
+     * Timeout in milliseconds.
+     */
+    long value();
+
+}
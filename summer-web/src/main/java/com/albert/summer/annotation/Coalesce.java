@@ -0,0 +1,23 @@
+package com.albert.summer.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 合并GET接口的并发请求：key相同的请求同时到达时只执行一次方法，所有请求共享序列化后的结果
+ * 只能用于返回JSON的同步接口，方法不能直接操作HttpServletResponse
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Coalesce {
+
+    /**
+     * 组成key的路径变量或请求参数名，为空时使用完整的URL和查询字符串，与@ResponseCache同时使用时必须相同
+     */
+    String[] key() default {};
+
+}
@@ -0,0 +1,38 @@
+package com.albert.summer.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 限制单个接口同时处理的请求数，上限按延迟自适应调整（AIMD），超过上限的请求立即返回503
+ * 与summer.web.concurrency-limit的全局限制同时生效
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ConcurrencyLimit {
+
+    /**
+     * 初始并发上限
+     */
+    int initial() default 20;
+
+    /**
+     * 上限调整的最小值
+     */
+    int min() default 1;
+
+    /**
+     * 上限调整的最大值
+     */
+    int max() default 200;
+
+    /**
+     * 延迟超过平均延迟的倍数时视为过载
+     */
+    int latencyTolerance() default 2;
+
+}
@@ -0,0 +1,24 @@
+package com.albert.summer.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RequestMapping {
+
+    /**
+     * URL mapping.
+     */
+    String value();
+
+    /**
+     * HTTP methods, default to GET, POST, PUT, PATCH and DELETE.
+     */
+    RequestMethod[] method() default {};
+
+}
@@ -0,0 +1,24 @@
+package com.albert.summer.annotation;
+
+/**
+ * HTTP请求方法
+ * HEAD由GET接口自动处理，OPTIONS由路由表自动计算
+ */
+public enum RequestMethod {
+
+    GET, HEAD, POST, PUT, PATCH, DELETE, OPTIONS;
+
+    private static final RequestMethod[] VALUES = values();
+
+    /**
+     * 按名称查找，不支持的方法返回null
+     */
+    public static RequestMethod resolve(String method) {
+        for (RequestMethod m : VALUES) {
+            if (m.name().equals(method)) {
+                return m;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,28 @@
+package com.albert.summer.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 缓存GET接口序列化后的响应，命中时不解析参数、不执行方法、不序列化
+ * 只能用于返回JSON的同步接口，方法不能直接操作HttpServletResponse
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ResponseCache {
+
+    /**
+     * Cache time in milliseconds.
+     */
+    long ttl() default 60_000;
+
+    /**
+     * 组成缓存key的路径变量或请求参数名，为空时使用完整的URL和查询字符串
+     */
+    String[] key() default {};
+
+}
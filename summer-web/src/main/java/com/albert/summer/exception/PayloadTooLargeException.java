@@ -0,0 +1,24 @@
+package com.albert.summer.exception;
+
+/**
+ * 413 payload too large.
+ * @author admin
+ */
+public class PayloadTooLargeException extends ErrorResponseException {
+
+    public PayloadTooLargeException() {
+        super(413);
+    }
+
+    public PayloadTooLargeException(String message) {
+        super(413, message);
+    }
+
+    public PayloadTooLargeException(Throwable cause) {
+        super(413, cause);
+    }
+
+    public PayloadTooLargeException(String message, Throwable cause) {
+        super(413, message, cause);
+    }
+}
@@ -0,0 +1,24 @@
+package com.albert.summer.exception;
+
+/**
+ * 503 service unavailable.
+ * @author admin
+ */
+public class ServiceUnavailableException extends ErrorResponseException {
+
+    public ServiceUnavailableException() {
+        super(503);
+    }
+
+    public ServiceUnavailableException(String message) {
+        super(503, message);
+    }
+
+    public ServiceUnavailableException(Throwable cause) {
+        super(503, cause);
+    }
+
+    public ServiceUnavailableException(String message, Throwable cause) {
+        super(503, message, cause);
+    }
+}
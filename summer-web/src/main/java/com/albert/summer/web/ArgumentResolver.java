@@ -0,0 +1,27 @@
+package com.albert.summer.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Controller方法单个入参的解析器
+ * 启动时根据Param生成，请求时直接取值，不再判断参数类型
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+@FunctionalInterface
+public interface ArgumentResolver {
+
+    /**
+     * 解析参数值
+     *
+     * @param match    Router匹配结果
+     * @param request
+     * @param response
+     * @return 参数值
+     * @throws Exception 解析失败
+     */
+    Object resolve(Router.Match match, HttpServletRequest request, HttpServletResponse response) throws Exception;
+
+}
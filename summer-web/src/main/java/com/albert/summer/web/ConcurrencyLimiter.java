@@ -0,0 +1,128 @@
+package com.albert.summer.web;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 自适应并发限制（AIMD）
+ * 请求完成时用延迟调整上限：延迟超过平均延迟的latencyTolerance倍或返回5xx时乘以0.9，
+ * 每个平均延迟周期最多减一次，避免同一波慢请求把上限压到最小值；
+ * 正常完成且并发数达到上限一半时加1，负载低时上限不会无限增长
+ * <p>
+ * 平均延迟是指数移动平均，延迟长期升高后会跟上新的水平，上限随之恢复
+ * 调整只使用volatile读写，并发完成时丢失个别更新不影响结果，请求路径上不加锁
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class ConcurrencyLimiter {
+
+    static final double BACKOFF_RATIO = 0.9;
+
+    /**
+     * 平均延迟的平滑系数
+     */
+    static final double SMOOTHING = 0.05;
+
+    final String name;
+
+    final int minLimit;
+
+    final int maxLimit;
+
+    final int latencyTolerance;
+
+    volatile int limit;
+
+    final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * 平均延迟（纳秒），0表示还没有样本
+     */
+    volatile double averageLatency;
+
+    /**
+     * 上次减小上限的时间
+     */
+    volatile long lastDecrease;
+
+    final LongAdder rejected = new LongAdder();
+
+    public ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, int latencyTolerance) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limit: initial=" + initialLimit + ", min=" + minLimit + ", max=" + maxLimit);
+        }
+        if (latencyTolerance < 1) {
+            throw new IllegalArgumentException("Invalid latency tolerance: " + latencyTolerance);
+        }
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * 未达到上限时占用一个并发数，达到上限时返回false，不排队等待
+     */
+    public boolean tryAcquire() {
+        for (; ; ) {
+            int current = this.inFlight.get();
+            if (current >= this.limit) {
+                this.rejected.increment();
+                return false;
+            }
+            if (this.inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 请求未执行，释放并发数但不调整上限
+     */
+    public void cancel() {
+        this.inFlight.decrementAndGet();
+    }
+
+    /**
+     * 请求完成，释放并发数并按延迟调整上限
+     *
+     * @param nanos   请求延迟
+     * @param dropped 是否失败（5xx）
+     */
+    public void release(long nanos, boolean dropped) {
+        int current = this.inFlight.getAndDecrement();
+        double average = this.averageLatency;
+        if (average == 0) {
+            average = nanos;
+        }
+        int limit = this.limit;
+        if (dropped || nanos > average * this.latencyTolerance) {
+            long now = System.nanoTime();
+            if (now - this.lastDecrease >= average) {
+                this.lastDecrease = now;
+                this.limit = Math.max(this.minLimit, (int) (limit * BACKOFF_RATIO));
+            }
+        } else if (current * 2 >= limit && limit < this.maxLimit) {
+            this.limit = limit + 1;
+        }
+        this.averageLatency = average + (nanos - average) * SMOOTHING;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public int getLimit() {
+        return this.limit;
+    }
+
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    public long getRejected() {
+        return this.rejected.sum();
+    }
+}
@@ -0,0 +1,88 @@
+package com.albert.summer.web;
+
+import jakarta.servlet.ServletException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * 参数类型转换器注册表
+ * 启动时按参数类型取出转换器，请求时直接调用，不再逐个比较类型
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class ConverterRegistry {
+
+    Map<Class<?>, Function<String, Object>> converters = new HashMap<>();
+
+    public ConverterRegistry() {
+        //预设的类型转换器
+        // String类型:
+        converters.put(String.class, s -> s);
+        // 基本类型:
+        converters.put(boolean.class, s -> Boolean.valueOf(s));
+        converters.put(Boolean.class, s -> Boolean.valueOf(s));
+        converters.put(int.class, s -> Integer.valueOf(s));
+        converters.put(Integer.class, s -> Integer.valueOf(s));
+        converters.put(long.class, s -> Long.valueOf(s));
+        converters.put(Long.class, s -> Long.valueOf(s));
+        converters.put(byte.class, s -> Byte.valueOf(s));
+        converters.put(Byte.class, s -> Byte.valueOf(s));
+        converters.put(short.class, s -> Short.valueOf(s));
+        converters.put(Short.class, s -> Short.valueOf(s));
+        converters.put(float.class, s -> Float.valueOf(s));
+        converters.put(Float.class, s -> Float.valueOf(s));
+        converters.put(double.class, s -> Double.valueOf(s));
+        converters.put(Double.class, s -> Double.valueOf(s));
+        converters.put(BigInteger.class, s -> new BigInteger(s));
+        converters.put(BigDecimal.class, s -> new BigDecimal(s));
+        converters.put(UUID.class, s -> UUID.fromString(s));
+        // Date/Time类型:
+        converters.put(LocalDate.class, s -> LocalDate.parse(s));
+        converters.put(LocalTime.class, s -> LocalTime.parse(s));
+        converters.put(LocalDateTime.class, s -> LocalDateTime.parse(s));
+        converters.put(ZonedDateTime.class, s -> ZonedDateTime.parse(s));
+        converters.put(Duration.class, s -> Duration.parse(s));
+    }
+
+    /**
+     * 注册转换器，覆盖同类型的预设转换器
+     */
+    public void register(Class<?> type, Function<String, Object> converter) {
+        this.converters.put(type, converter);
+    }
+
+    public void register(ParamConverter<?> converter) {
+        register(converter.getType(), converter::convert);
+    }
+
+    /**
+     * 获取类型对应的转换器，枚举类型按名称转换
+     *
+     * @param type 参数类型
+     * @throws ServletException 不支持的类型
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Function<String, Object> getConverter(Class<?> type) throws ServletException {
+        Function<String, Object> fn = this.converters.get(type);
+        if (fn == null && type.isEnum()) {
+            Class<? extends Enum> enumType = (Class<? extends Enum>) type;
+            fn = s -> Enum.valueOf(enumType, s);
+            this.converters.put(type, fn);
+        }
+        if (fn == null) {
+            throw new ServletException("Could not determine argument type: " + type.getName());
+        }
+        return fn;
+    }
+}
@@ -0,0 +1,42 @@
+package com.albert.summer.web;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 延迟结果
+ * Controller返回DeferredResult后立即释放容器线程，由其他线程调用setResult()或setErrorResult()写回响应
+ *
+ * @param <T> 结果类型
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class DeferredResult<T> {
+
+    final CompletableFuture<T> future = new CompletableFuture<>();
+
+    /**
+     * 设置结果
+     *
+     * @return 已经设置过结果或已超时返回false
+     */
+    public boolean setResult(T result) {
+        return this.future.complete(result);
+    }
+
+    /**
+     * 设置异常，ErrorResponseException按状态码返回
+     *
+     * @return 已经设置过结果或已超时返回false
+     */
+    public boolean setErrorResult(Throwable error) {
+        return this.future.completeExceptionally(error);
+    }
+
+    public boolean isSetOrExpired() {
+        return this.future.isDone();
+    }
+
+    CompletableFuture<T> getFuture() {
+        return this.future;
+    }
+}
@@ -1,13 +1,27 @@
 package com.albert.summer.web;
 
+import com.albert.summer.annotation.AsyncTimeout;
+import com.albert.summer.annotation.Coalesce;
+import com.albert.summer.annotation.ConcurrencyLimit;
+import com.albert.summer.annotation.RequestMethod;
+import com.albert.summer.annotation.ResponseCache;
 import com.albert.summer.annotation.ResponseBody;
-import com.albert.summer.exception.ServerErrorException;
+import com.albert.summer.exception.PayloadTooLargeException;
 import com.albert.summer.exception.ServerWebInputException;
 import com.albert.summer.web.bean.Param;
-import com.albert.summer.web.bean.Result;
+import com.albert.summer.web.bean.ParamType;
+import com.albert.summer.web.metrics.RouteMetrics;
 import com.albert.summer.web.utils.JsonUtils;
-import com.albert.summer.web.utils.PathUtils;
+import com.albert.summer.web.utils.LimitedInputStream;
+import com.albert.summer.web.utils.PathTemplate;
 import com.albert.summer.web.utils.WebUtils;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.TypeFactory;
 import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -15,14 +29,23 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.annotation.Annotation;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Controller层URL处理器，每一个Dispatcher对应一个接口
@@ -37,6 +60,10 @@ public class Dispatcher {
      * 是否返回Rest
      */
     boolean isRest;
+    /**
+     * 请求方法
+     */
+    RequestMethod requestMethod;
     /**
      * 是否有@ResponseBody
      */
@@ -46,9 +73,57 @@ public class Dispatcher {
      */
     boolean isVoid;
     /**
-     * URL正则匹配
+     * 是否异步返回（CompletionStage、Callable、DeferredResult）
+     */
+    boolean isAsync;
+    /**
+     * 是否流式返回（SseEmitter、Flow.Publisher、Stream），逐条写出
+     */
+    boolean isStreaming;
+    /**
+     * 异步超时时间（毫秒），小于0时使用全局配置
+     */
+    long asyncTimeout = -1;
+    /**
+     * &#64;ResponseCache缓存时间（毫秒），小于等于0表示不缓存
+     */
+    long cacheTtl = -1;
+    /**
+     * 是否有@Coalesce，相同key的并发请求只执行一次
+     */
+    boolean coalesce;
+    /**
+     * 组成缓存key的参数名
+     */
+    String[] cacheKeyNames;
+    /**
+     * 缓存key参数对应的路径变量下标，-1表示请求参数
+     */
+    int[] cacheKeyVariables;
+    /**
+     * URL模板
+     */
+    String urlPattern;
+    /**
+     * 按请求方法和状态码统计的延迟直方图
+     */
+    RouteMetrics metrics;
+    /**
+     * &#64;ConcurrencyLimit的并发限制，没有注解时为null
+     */
+    ConcurrencyLimiter limiter;
+    /**
+     * 适用于该路由的拦截器，启动时计算
      */
-    Pattern urlPattern;
+    HandlerInterceptor[] interceptors = new HandlerInterceptor[0];
+    /**
+     * 按返回值类型创建的JSON序列化器
+     */
+    ObjectWriter jsonWriter;
+    /**
+     * 预编译的URL模板
+     */
+    PathTemplate pathTemplate;
     /**
      * Bean实例
      */
@@ -57,15 +132,19 @@ public class Dispatcher {
      * 处理方法
      */
     Method handlerMethod;
+    /**
+     * 启动时生成的方法调用器，请求时不使用反射
+     */
+    HandlerInvoker invoker;
     /**
      * 方法的请求参数
      */
     Param[] methodParams;
 
     /**
-     * 未处理状态
+     * 每个参数对应的解析器，启动时生成
      */
-    final static Result NOT_PROCESSED = new Result(false, null);
+    ArgumentResolver[] resolvers;
 
     /**
      * @param httpMethod
@@ -75,135 +154,363 @@ public class Dispatcher {
      * @param urlPattern
      */
     public Dispatcher(String httpMethod, boolean isRest, Object controller, Method method, String urlPattern) throws ServletException {
+        this(httpMethod, isRest, controller, method, urlPattern, new DispatcherContext());
+    }
+
+    /**
+     * @param httpMethod
+     * @param isRest
+     * @param controller
+     * @param method            具体方法
+     * @param urlPattern
+     * @param context    参数转换器、ObjectMapper等共享配置
+     */
+    public Dispatcher(String httpMethod, boolean isRest, Object controller, Method method, String urlPattern, DispatcherContext context) throws ServletException {
+        this.requestMethod = RequestMethod.resolve(httpMethod);
+        if (this.requestMethod == null) {
+            throw new ServletException("Unsupported HTTP method '" + httpMethod + "' at method: " + method);
+        }
         this.isRest = isRest;
         this.isResponseBody = method.getAnnotation(ResponseBody.class) != null;
         this.isVoid = method.getReturnType() == void.class;
-        //解析URL正则
-        this.urlPattern = PathUtils.compile(urlPattern);
+        Class<?> returnType = method.getReturnType();
+        this.isAsync = CompletionStage.class.isAssignableFrom(returnType) || Callable.class.isAssignableFrom(returnType)
+                || DeferredResult.class.isAssignableFrom(returnType);
+        this.isStreaming = SseEmitter.class.isAssignableFrom(returnType) || Flow.Publisher.class.isAssignableFrom(returnType)
+                || Stream.class.isAssignableFrom(returnType);
+        this.jsonWriter = JsonUtils.createWriter(context.objectMapper, resolveValueType(method, context.objectMapper));
+        AsyncTimeout timeout = method.getAnnotation(AsyncTimeout.class);
+        if (timeout != null) {
+            if (!this.isAsync && !this.isStreaming) {
+                throw new ServletException("@AsyncTimeout only applies to async or streaming return type at method: " + method);
+            }
+            this.asyncTimeout = timeout.value();
+        }
+        //解析URL模板，URL匹配由Router完成
+        this.pathTemplate = PathTemplate.parse(urlPattern);
+        this.urlPattern = urlPattern;
+        this.metrics = new RouteMetrics(urlPattern, this.requestMethod);
         this.controller = controller;
         this.handlerMethod = method;
+        this.invoker = HandlerInvokerFactory.create(method);
         Parameter[] parameters = method.getParameters();
         Annotation[][] parameterAnnotations = method.getParameterAnnotations();
         //解析参数
         this.methodParams = new Param[parameters.length];
+        this.resolvers = new ArgumentResolver[parameters.length];
         for (int i = 0; i < parameters.length; i++) {
             //构建Param
             this.methodParams[i] = new Param(httpMethod, method, parameters[i], parameterAnnotations[i]);
+            //路径变量在启动时确定下标，请求时按下标取值
+            if (this.methodParams[i].paramType == ParamType.PATH_VARIABLE) {
+                int index = this.pathTemplate.indexOf(this.methodParams[i].name);
+                if (index < 0) {
+                    throw new ServletException("Path variable '" + this.methodParams[i].name + "' not found in url pattern '" + urlPattern + "' at method: " + method);
+                }
+                this.methodParams[i].pathVariableIndex = index;
+            }
+            try {
+                this.resolvers[i] = createResolver(this.methodParams[i], context);
+            } catch (ServletException e) {
+                throw new ServletException(e.getMessage() + " at method: " + method, e);
+            }
+        }
+        ResponseCache cache = method.getAnnotation(ResponseCache.class);
+        Coalesce coalesce = method.getAnnotation(Coalesce.class);
+        if (cache != null) {
+            checkSerializable("@ResponseCache", method);
+            if (cache.ttl() <= 0) {
+                throw new ServletException("@ResponseCache ttl must be positive at method: " + method);
+            }
+            this.cacheTtl = cache.ttl();
+            initCacheKey(cache.key());
+        }
+        if (coalesce != null) {
+            checkSerializable("@Coalesce", method);
+            if (cache != null && !Arrays.equals(cache.key(), coalesce.key())) {
+                throw new ServletException("@Coalesce key must be same as @ResponseCache key at method: " + method);
+            }
+            this.coalesce = true;
+            initCacheKey(coalesce.key());
+        }
+        ConcurrencyLimit limit = method.getAnnotation(ConcurrencyLimit.class);
+        if (limit != null) {
+            try {
+                this.limiter = new ConcurrencyLimiter(httpMethod + " " + urlPattern, limit.initial(), limit.min(), limit.max(), limit.latencyTolerance());
+            } catch (IllegalArgumentException e) {
+                throw new ServletException("@ConcurrencyLimit: " + e.getMessage() + " at method: " + method, e);
+            }
         }
         log.debug("mapping {} to handler {}.{}", urlPattern, controller.getClass().getSimpleName(), method.getName());
     }
 
+    public RequestMethod getRequestMethod() {
+        return this.requestMethod;
+    }
+
+    public String getUrlPattern() {
+        return this.urlPattern;
+    }
+
+    public Object getController() {
+        return this.controller;
+    }
+
+    public Method getHandlerMethod() {
+        return this.handlerMethod;
+    }
+
+    /**
+     * 方法或所在类是否带有注解
+     */
+    public boolean hasAnnotation(Class<? extends Annotation> annotationClass) {
+        return this.handlerMethod.isAnnotationPresent(annotationClass) || this.handlerMethod.getDeclaringClass().isAnnotationPresent(annotationClass);
+    }
+
+    /**
+     * 缓存和合并的都是序列化后的响应体，方法必须是返回JSON的同步GET接口，且不能直接写响应
+     */
+    void checkSerializable(String annotation, Method method) throws ServletException {
+        if (this.requestMethod != RequestMethod.GET && this.requestMethod != RequestMethod.HEAD) {
+            throw new ServletException(annotation + " only applies to GET method at method: " + method);
+        }
+        if (!this.isRest || this.isVoid || this.isAsync || this.isStreaming) {
+            throw new ServletException(annotation + " only applies to synchronous REST method with return value at method: " + method);
+        }
+        for (Param param : this.methodParams) {
+            if (param.classType == HttpServletResponse.class) {
+                throw new ServletException(annotation + " could not be used with HttpServletResponse argument at method: " + method);
+            }
+        }
+    }
+
+    void initCacheKey(String[] keyNames) {
+        this.cacheKeyNames = keyNames;
+        this.cacheKeyVariables = new int[this.cacheKeyNames.length];
+        for (int i = 0; i < this.cacheKeyNames.length; i++) {
+            this.cacheKeyVariables[i] = this.pathTemplate.indexOf(this.cacheKeyNames[i]);
+        }
+    }
+
+    /**
+     * 缓存和合并请求的key：未指定key时为URL和查询字符串，否则为URL模板和各参数的值
+     */
+    String cacheKey(Router.Match match, HttpServletRequest request) {
+        if (this.cacheKeyNames.length == 0) {
+            String query = request.getQueryString();
+            return query == null ? request.getRequestURI() : request.getRequestURI() + "?" + query;
+        }
+        StringBuilder sb = new StringBuilder(this.urlPattern);
+        for (int i = 0; i < this.cacheKeyNames.length; i++) {
+            int index = this.cacheKeyVariables[i];
+            String value = index >= 0 ? match.getVariable(index) : request.getParameter(this.cacheKeyNames[i]);
+            sb.append('\0').append(this.cacheKeyNames[i]);
+            //区分参数不存在和空字符串
+            if (value != null) {
+                sb.append('=').append(value);
+            }
+        }
+        return sb.toString();
+    }
+
     /**
-     * 1.匹配url
-     * 2.调用方法
-     * 3.解析入参，反射执行方法
-     * 4.返回执行结果
+     * 按handleResult()相同的规则序列化返回值，用于缓存
+     */
+    byte[] serialize(Object processResult) throws IOException {
+        if (this.isResponseBody) {
+            if (processResult instanceof String s) {
+                return s.getBytes(StandardCharsets.UTF_8);
+            } else if (processResult instanceof byte[] data) {
+                return data;
+            }
+        }
+        return this.jsonWriter.writeValueAsBytes(processResult);
+    }
+
+    /**
+     * 1.解析入参
+     * 2.通过HandlerInvoker执行方法
+     * 3.返回执行结果，Controller抛出的异常原样抛出
      *
-     * @param url
+     * @param match    Router匹配结果
      * @param request
      * @param response
      * @return
      * @throws Exception
      */
-    Result process(String url, HttpServletRequest request, HttpServletResponse response) throws ServletException,IOException {
-        //TODO 为什么要正则匹配？
-        //匹配URL
-        Matcher matcher = urlPattern.matcher(url);
-        if (matcher.matches()) {
-            //获取参数真实值
-            Object[] arguments = new Object[this.methodParams.length];
-            for (int i = 0; i < arguments.length; i++) {
-                Param param = methodParams[i];
-                //@RequestBody、@RequestParam、@PathVariable
-                arguments[i] = switch (param.paramType) {
-                    case PATH_VARIABLE -> {
-                        String group = matcher.group(param.name);
-                        yield convertToType(param.classType, group);
-                    }
-                    case REQUEST_BODY -> {
-                        //请求体
-                        BufferedReader reader = request.getReader();
-                        yield JsonUtils.readJson(reader, param.classType);
-                    }
-                    case REQUEST_PARAM -> {
-                        String s = getOrDefault(request, param.name, param.defaultValue);
-                        yield convertToType(param.classType, s);
-                    }
-                    case SERVICE_VARIABLE -> {
-                        Class<?> classType = param.classType;
-                        if (classType == HttpServletRequest.class) {
-                            yield request;
-                        } else if (classType == HttpServletResponse.class) {
-                            yield response;
-                        } else if (classType == HttpSession.class) {
-                            yield request.getSession();
-                        } else if (classType == ServletContext.class) {
-                            yield request.getServletContext();
-                        } else {
-                            throw new ServerErrorException("Could not determine argument type: " + classType);
-                        }
-                    }
-                };
+    Object process(Router.Match match, HttpServletRequest request, HttpServletResponse response) throws Exception {
+        //获取参数真实值
+        ArgumentResolver[] resolvers = this.resolvers;
+        Object[] arguments = new Object[resolvers.length];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = resolvers[i].resolve(match, request, response);
+        }
+        //执行方法
+        return this.invoker.invoke(this.controller, arguments);
+    }
+
+    /**
+     * 返回值序列化时使用的类型，异步返回值取CompletableFuture&lt;T&gt;等的T
+     */
+    static JavaType resolveValueType(Method method, ObjectMapper objectMapper) {
+        TypeFactory typeFactory = objectMapper.getTypeFactory();
+        JavaType type = typeFactory.constructType(method.getGenericReturnType());
+        Class<?> asyncType = null;
+        if (type.isTypeOrSubTypeOf(CompletionStage.class)) {
+            asyncType = CompletionStage.class;
+        } else if (type.isTypeOrSubTypeOf(Callable.class)) {
+            asyncType = Callable.class;
+        } else if (type.isTypeOrSubTypeOf(DeferredResult.class)) {
+            asyncType = DeferredResult.class;
+        } else if (type.isTypeOrSubTypeOf(Flow.Publisher.class)) {
+            //流式返回值按元素类型序列化
+            asyncType = Flow.Publisher.class;
+        } else if (type.isTypeOrSubTypeOf(Stream.class)) {
+            asyncType = Stream.class;
+        } else if (type.isTypeOrSubTypeOf(SseEmitter.class)) {
+            return typeFactory.constructType(Object.class);
+        }
+        if (asyncType != null) {
+            JavaType[] parameters = typeFactory.findTypeParameters(type, asyncType);
+            type = parameters.length == 1 ? parameters[0] : typeFactory.constructType(Object.class);
+        }
+        return type;
+    }
+
+    /**
+     * 请求体直接从InputStream按字节解析，不经过Reader解码
+     * Stream&lt;T&gt;和Iterator&lt;T&gt;参数按NDJSON（每行一个JSON）逐条读取，不限制请求体总大小，max-body-size限制每行的大小
+     */
+    static ArgumentResolver createBodyResolver(Param param, DispatcherContext context) {
+        ObjectMapper objectMapper = context.objectMapper;
+        long maxBodySize = context.maxBodySize;
+        if (param.classType == Stream.class || param.classType == Iterator.class) {
+            JavaType[] elementType = objectMapper.getTypeFactory().findTypeParameters(
+                    objectMapper.constructType(param.genericType), param.classType);
+            ObjectReader reader = JsonUtils.createReader(objectMapper, elementType.length == 1 ? elementType[0] : Object.class);
+            boolean isStream = param.classType == Stream.class;
+            return (match, request, response) -> {
+                InputStream input = request.getInputStream();
+                if (maxBodySize >= 0) {
+                    input = new LimitedInputStream(input, maxBodySize, true);
+                }
+                MappingIterator<Object> values = reader.readValues(input);
+                Iterator<Object> iterator = ndjsonIterator(values);
+                if (!isStream) {
+                    return iterator;
+                }
+                return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                        .onClose(() -> {
+                            try {
+                                values.close();
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+            };
+        }
+        //按带泛型的参数类型创建，请求时复用
+        ObjectReader reader = JsonUtils.createReader(objectMapper, param.genericType);
+        return (match, request, response) -> {
+            InputStream input = request.getInputStream();
+            if (maxBodySize >= 0) {
+                //有Content-Length时直接拒绝，否则边读边计数
+                if (request.getContentLengthLong() > maxBodySize) {
+                    throw new PayloadTooLargeException("Request body exceeds " + maxBodySize + " bytes.");
+                }
+                input = new LimitedInputStream(input, maxBodySize);
             }
-            Object result = null;
-            //给某个类的某个方法，传入某些参数。反射执行方法
             try {
-                //执行方法
-                result = this.handlerMethod.invoke(this.controller, arguments);
-            } catch (InvocationTargetException e) {
-                //Throwable t = e.getCause();
-                //if (t instanceof Exception ex) {
-                //    throw ex;
-                //}
-                //throw e;
-            } catch (ReflectiveOperationException e) {
-                throw new ServerErrorException(e);
-            }
-            return new Result(true, result);
-        }
-        //未匹配上，默认未处理
-        return NOT_PROCESSED;
-    }
-
-    Object convertToType(Class<?> classType, String s) {
-        if (classType == String.class) {
-            return s;
-        } else if (classType == boolean.class || classType == Boolean.class) {
-            return Boolean.valueOf(s);
-        } else if (classType == int.class || classType == Integer.class) {
-            return Integer.valueOf(s);
-        } else if (classType == long.class || classType == Long.class) {
-            return Long.valueOf(s);
-        } else if (classType == byte.class || classType == Byte.class) {
-            return Byte.valueOf(s);
-        } else if (classType == short.class || classType == Short.class) {
-            return Short.valueOf(s);
-        } else if (classType == float.class || classType == Float.class) {
-            return Float.valueOf(s);
-        } else if (classType == double.class || classType == Double.class) {
-            return Double.valueOf(s);
-        } else {
-            throw new ServerErrorException("Could not determine argument type: " + classType);
-        }
-    }
-
-    /**
-     * 从request获取参数
-     *
-     * @param request
-     * @param name
-     * @param defaultValue
-     * @return
+                return reader.readValue(input);
+            } catch (JsonProcessingException e) {
+                throw new ServerWebInputException("Invalid request body.", e);
+            }
+        };
+    }
+
+    /**
+     * 逐条读取NDJSON，格式错误的记录与整体解析一样返回400
      */
-    String getOrDefault(HttpServletRequest request, String name, String defaultValue) {
-        String s = request.getParameter(name);
-        if (s == null) {
-            if (WebUtils.DEFAULT_PARAM_VALUE.equals(defaultValue)) {
-                throw new ServerWebInputException("Request parameter '" + name + "' not found.");
+    static Iterator<Object> ndjsonIterator(MappingIterator<Object> values) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return values.hasNextValue();
+                } catch (JsonProcessingException e) {
+                    throw new ServerWebInputException("Invalid request body.", e);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
             }
-            return defaultValue;
-        }
-        return s;
+
+            @Override
+            public Object next() {
+                try {
+                    return values.nextValue();
+                } catch (JsonProcessingException e) {
+                    throw new ServerWebInputException("Invalid request body.", e);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * 根据参数类型生成解析器
+     * 支持@RequestBody、@RequestParam、@PathVariable和Servlet提供的入参
+     */
+    static ArgumentResolver createResolver(Param param, DispatcherContext context) throws ServletException {
+        Class<?> classType = param.classType;
+        ConverterRegistry converterRegistry = context.converterRegistry;
+        return switch (param.paramType) {
+            case PATH_VARIABLE -> {
+                int index = param.pathVariableIndex;
+                //int/long直接从URL中解析，不创建子串
+                if (classType == long.class || classType == Long.class) {
+                    yield (match, request, response) -> match.getLongVariable(index);
+                } else if (classType == int.class || classType == Integer.class) {
+                    yield (match, request, response) -> match.getIntVariable(index);
+                } else if (classType == String.class) {
+                    yield (match, request, response) -> match.getVariable(index);
+                }
+                Function<String, Object> converter = converterRegistry.getConverter(classType);
+                yield (match, request, response) -> converter.apply(match.getVariable(index));
+            }
+            case REQUEST_BODY -> createBodyResolver(param, context);
+            case REQUEST_PARAM -> {
+                String name = param.name;
+                String defaultValue = param.defaultValue;
+                Function<String, Object> converter = converterRegistry.getConverter(classType);
+                if (WebUtils.DEFAULT_PARAM_VALUE.equals(defaultValue)) {
+                    //必填参数
+                    yield (match, request, response) -> {
+                        String s = request.getParameter(name);
+                        if (s == null) {
+                            throw new ServerWebInputException("Request parameter '" + name + "' not found.");
+                        }
+                        return converter.apply(s);
+                    };
+                }
+                yield (match, request, response) -> {
+                    String s = request.getParameter(name);
+                    return converter.apply(s == null ? defaultValue : s);
+                };
+            }
+            case SERVICE_VARIABLE -> {
+                if (classType == HttpServletRequest.class) {
+                    yield (match, request, response) -> request;
+                } else if (classType == HttpServletResponse.class) {
+                    yield (match, request, response) -> response;
+                } else if (classType == HttpSession.class) {
+                    yield (match, request, response) -> request.getSession();
+                } else if (classType == ServletContext.class) {
+                    yield (match, request, response) -> request.getServletContext();
+                }
+                throw new ServletException("Could not determine argument type: " + classType);
+            }
+        };
     }
 
 
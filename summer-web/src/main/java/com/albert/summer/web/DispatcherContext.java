@@ -0,0 +1,38 @@
+package com.albert.summer.web;
+
+import com.albert.summer.property.PropertyResolver;
+import com.albert.summer.web.utils.JsonUtils;
+import com.albert.summer.web.utils.WebUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 构建Dispatcher时共享的配置，由DispatcherServlet在启动时创建
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class DispatcherContext {
+
+    /**
+     * 参数类型转换器，init()阶段注册自定义的ParamConverter
+     */
+    ConverterRegistry converterRegistry = new ConverterRegistry();
+
+    /**
+     * 按summer.web.json.*配置创建的ObjectMapper
+     */
+    ObjectMapper objectMapper = JsonUtils.OBJECT_MAPPER;
+
+    /**
+     * 请求体最大字节数，小于0表示不限制
+     */
+    long maxBodySize = -1;
+
+    public DispatcherContext() {
+    }
+
+    public DispatcherContext(PropertyResolver propertyResolver) {
+        this.objectMapper = JsonUtils.createObjectMapper(propertyResolver);
+        this.maxBodySize = WebUtils.parseSize(propertyResolver.getProperty("${summer.web.max-body-size:10MB}"));
+    }
+}
@@ -2,33 +2,65 @@ package com.albert.summer.web;
 
 import com.albert.summer.annotation.Controller;
 import com.albert.summer.annotation.GetMapping;
+import com.albert.summer.annotation.DeleteMapping;
+import com.albert.summer.annotation.PatchMapping;
 import com.albert.summer.annotation.PostMapping;
+import com.albert.summer.annotation.PutMapping;
+import com.albert.summer.annotation.RequestMapping;
+import com.albert.summer.annotation.RequestMethod;
 import com.albert.summer.annotation.RestController;
 import com.albert.summer.context.ApplicationContext;
 import com.albert.summer.context.BeanDefinition;
 import com.albert.summer.context.ConfigurableApplicationContext;
 import com.albert.summer.exception.ErrorResponseException;
 import com.albert.summer.exception.NestedRuntimeException;
+import com.albert.summer.exception.ServiceUnavailableException;
 import com.albert.summer.property.PropertyResolver;
 import com.albert.summer.web.bean.ModelAndView;
-import com.albert.summer.web.bean.Result;
-import com.albert.summer.web.utils.JsonUtils;
+import com.albert.summer.web.metrics.PrometheusWriter;
+import com.albert.summer.web.utils.PathUtils;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * DispatcherServlet
@@ -43,8 +75,85 @@ public class DispatcherServlet extends HttpServlet {
     ApplicationContext applicationContext;
     ViewResolver viewResolver;
 
-    List<Dispatcher> getDispatchers = new ArrayList<>();
-    List<Dispatcher> postDispatchers = new ArrayList<>();
+    /**
+     * RequestMapping未指定method时映射的请求方法
+     */
+    static final RequestMethod[] DEFAULT_METHODS = {RequestMethod.GET, RequestMethod.POST, RequestMethod.PUT, RequestMethod.PATCH, RequestMethod.DELETE};
+
+    /**
+     * 路由树，按请求方法×URL保存处理器，在init()阶段构建
+     */
+    Router router = new Router();
+
+    /**
+     * 所有Dispatcher，导出统计时使用
+     */
+    List<Dispatcher> dispatchers = new ArrayList<>();
+
+    /**
+     * 是否记录请求统计并导出，默认关闭：统计包含内部的路由和缓存信息，需要显式开启
+     */
+    boolean metricsEnabled = false;
+
+    /**
+     * Prometheus格式统计的路径，为空时不导出
+     */
+    String metricsPath = "/metrics";
+
+    /**
+     * 流式响应的心跳间隔（毫秒），0表示不发送
+     */
+    long heartbeatInterval = 15_000;
+
+    /**
+     * 触发心跳，心跳本身在虚拟线程中写出，不会被慢客户端阻塞
+     */
+    ScheduledExecutorService heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("summer-heartbeat").daemon().factory());
+
+    /**
+     * 全局并发限制，未开启时为null
+     */
+    ConcurrencyLimiter limiter;
+
+    /**
+     * 并发超限时Retry-After的秒数
+     */
+    String retryAfter = "1";
+
+    /**
+     * 构建Dispatcher时共享的配置
+     */
+    DispatcherContext dispatcherContext = new DispatcherContext();
+
+    /**
+     * 异步接口默认超时时间（毫秒）
+     */
+    long asyncTimeout = 30_000;
+
+    /**
+     * 执行Controller返回的Callable
+     */
+    ExecutorService asyncExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("summer-async-", 0).factory());
+
+    /**
+     * &#64;ResponseCache的缓存
+     */
+    ResponseCacheStore responseCache = new ResponseCacheStore();
+
+    /**
+     * &#64;Coalesce的合并执行
+     */
+    RequestCoalescer coalescer = new RequestCoalescer();
+
+    /**
+     * 响应体gzip压缩
+     */
+    ResponseCompression compression = new ResponseCompression();
+
+    /**
+     * 静态资源处理，ETag、Range、内存缓存
+     */
+    StaticResourceHandler staticResourceHandler = new StaticResourceHandler();
 
     /**
      * 静态资源路径
@@ -64,6 +173,23 @@ public class DispatcherServlet extends HttpServlet {
         this.viewResolver = applicationContext.getBean(ViewResolver.class);
         this.resourcePath = properyResolver.getProperty("${summer.web.static-path:/static/}");
         this.faviconPath = properyResolver.getProperty("${summer.web.favicon-path:/favicon.ico}");
+        this.asyncTimeout = properyResolver.getProperty("${summer.web.async.timeout:30000}", int.class);
+        this.dispatcherContext = new DispatcherContext(properyResolver);
+        this.metricsEnabled = properyResolver.getProperty("${summer.web.metrics.enabled:false}", boolean.class);
+        this.metricsPath = properyResolver.getProperty("${summer.web.metrics.path:/metrics}");
+        this.responseCache = new ResponseCacheStore(properyResolver);
+        this.coalescer = new RequestCoalescer(properyResolver);
+        if (properyResolver.getProperty("${summer.web.concurrency-limit.enabled:false}", boolean.class)) {
+            this.limiter = new ConcurrencyLimiter("global",
+                    properyResolver.getProperty("${summer.web.concurrency-limit.initial-limit:100}", int.class),
+                    properyResolver.getProperty("${summer.web.concurrency-limit.min-limit:10}", int.class),
+                    properyResolver.getProperty("${summer.web.concurrency-limit.max-limit:1000}", int.class),
+                    properyResolver.getProperty("${summer.web.concurrency-limit.latency-tolerance:2}", int.class));
+        }
+        this.retryAfter = properyResolver.getProperty("${summer.web.concurrency-limit.retry-after:1}");
+        this.heartbeatInterval = properyResolver.getProperty("${summer.web.streaming.heartbeat-interval:15000}", int.class);
+        this.compression = new ResponseCompression(properyResolver);
+        this.staticResourceHandler = new StaticResourceHandler(properyResolver, this.compression);
         if (!this.resourcePath.endsWith("/")) {
             this.resourcePath = this.resourcePath + "/";
         }
@@ -72,6 +198,11 @@ public class DispatcherServlet extends HttpServlet {
     @Override
     public void init() throws ServletException {
         log.info("init {}", getClass().getName());
+        //注册自定义参数类型转换器
+        for (ParamConverter<?> converter : this.applicationContext.getBeans(ParamConverter.class)) {
+            log.info("register param converter for {}: {}", converter.getType().getName(), converter.getClass().getName());
+            this.dispatcherContext.converterRegistry.register(converter);
+        }
         //scan @Controller 和 @RestController，注册方法（每个方法对应一个url）
         //查询所有Bean
         for (BeanDefinition def : ((ConfigurableApplicationContext) this.applicationContext).findBeanDefinitions(Object.class)) {
@@ -92,10 +223,26 @@ public class DispatcherServlet extends HttpServlet {
                 addController(true, def.getName(), requiredInstance);
             }
         }
+        //统计路径在路由之前匹配，与Controller的路由冲突时启动失败，避免Controller被静默覆盖
+        if (this.metricsEnabled && this.router.match(RequestMethod.GET, this.metricsPath) != null) {
+            throw new ServletException("Metrics path conflicts with a registered route: " + this.metricsPath
+                    + ", change summer.web.metrics.path or disable summer.web.metrics.enabled.");
+        }
+        //每个路由适用的拦截器
+        List<HandlerInterceptor> interceptors = this.applicationContext.getBeans(HandlerInterceptor.class);
+        for (Dispatcher dispatcher : this.dispatchers) {
+            dispatcher.interceptors = selectInterceptors(interceptors, dispatcher);
+        }
+        //启动时压缩静态资源
+        if (this.staticResourceHandler.precompress) {
+            this.staticResourceHandler.precompress(this.applicationContext.getBean(ServletContext.class), this.resourcePath);
+        }
     }
 
     @Override
     public void destroy() {
+        this.asyncExecutor.shutdownNow();
+        this.heartbeatScheduler.shutdownNow();
         this.applicationContext.close();
     }
 
@@ -110,15 +257,31 @@ public class DispatcherServlet extends HttpServlet {
             //解析GetMapping
             GetMapping get = m.getAnnotation(GetMapping.class);
             if (get != null) {
-                checkMethod(m);
-                this.getDispatchers.add(new Dispatcher("GET", isRest, instance, m, get.value()));
+                addMapping(isRest, instance, m, RequestMethod.GET, get.value());
             }
             //解析PostMapping
             PostMapping post = m.getAnnotation(PostMapping.class);
             if (post != null) {
-                checkMethod(m);
-                //对应的dispatcher
-                this.postDispatchers.add(new Dispatcher("POST", isRest, instance, m, post.value()));
+                addMapping(isRest, instance, m, RequestMethod.POST, post.value());
+            }
+            PutMapping put = m.getAnnotation(PutMapping.class);
+            if (put != null) {
+                addMapping(isRest, instance, m, RequestMethod.PUT, put.value());
+            }
+            PatchMapping patch = m.getAnnotation(PatchMapping.class);
+            if (patch != null) {
+                addMapping(isRest, instance, m, RequestMethod.PATCH, patch.value());
+            }
+            DeleteMapping delete = m.getAnnotation(DeleteMapping.class);
+            if (delete != null) {
+                addMapping(isRest, instance, m, RequestMethod.DELETE, delete.value());
+            }
+            //解析RequestMapping，可以同时映射多个请求方法
+            RequestMapping request = m.getAnnotation(RequestMapping.class);
+            if (request != null) {
+                for (RequestMethod method : request.method().length == 0 ? DEFAULT_METHODS : request.method()) {
+                    addMapping(isRest, instance, m, method, request.value());
+                }
             }
         }
         //扫描父类方法
@@ -128,6 +291,32 @@ public class DispatcherServlet extends HttpServlet {
         }
     }
 
+    void addMapping(boolean isRest, Object instance, Method m, RequestMethod method, String urlPattern) throws ServletException {
+        checkMethod(m);
+        //对应的dispatcher
+        Dispatcher dispatcher = new Dispatcher(method.name(), isRest, instance, m, urlPattern, this.dispatcherContext);
+        this.router.add(dispatcher);
+        this.dispatchers.add(dispatcher);
+    }
+
+    /**
+     * 按路径模式和注解筛选路由的拦截器，保持@Order顺序
+     */
+    static HandlerInterceptor[] selectInterceptors(List<HandlerInterceptor> interceptors, Dispatcher dispatcher) {
+        List<HandlerInterceptor> selected = new ArrayList<>();
+        for (HandlerInterceptor interceptor : interceptors) {
+            String template = dispatcher.urlPattern;
+            boolean included = interceptor.getPathPatterns().stream().anyMatch(p -> PathUtils.matchTemplate(p, template))
+                    && interceptor.getExcludePathPatterns().stream().noneMatch(p -> PathUtils.matchTemplate(p, template));
+            List<Class<? extends Annotation>> annotations = interceptor.getHandlerAnnotations();
+            if (included && (annotations.isEmpty() || annotations.stream().anyMatch(dispatcher::hasAnnotation))) {
+                log.info("apply interceptor {} to {} {}", interceptor.getClass().getName(), dispatcher.requestMethod, template);
+                selected.add(interceptor);
+            }
+        }
+        return selected.toArray(HandlerInterceptor[]::new);
+    }
+
     void checkMethod(Method m) throws ServletException {
         //获取方法的修饰符信息
         //public、private
@@ -141,9 +330,13 @@ public class DispatcherServlet extends HttpServlet {
     }
 
     /**
-     * Servlet默认方法，get请求都会进到该方法
-     * 从所有Get接口中，匹配url
-     * 匹配上url之后执行方法，根据注解解析返回结果
+     * 所有请求都进入该方法，按请求方法和url在路由表中查找处理器
+     * 1.HEAD请求使用GET接口处理，不写响应体
+     * 2.OPTIONS请求和405响应的Allow头由路由表计算
+     * 3.客户端接受gzip时压缩业务响应，静态资源使用预压缩的文件
+     * 4.开启统计时metrics-path返回Prometheus格式的统计
+     * 5.超过全局或接口的并发上限时返回503和Retry-After
+     * 6.流式返回值逐条写成SSE帧或JSON数组
      *
      * @param req
      * @param resp
@@ -151,39 +344,47 @@ public class DispatcherServlet extends HttpServlet {
      * @throws IOException
      */
     @Override
-    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        RequestMethod method = RequestMethod.resolve(req.getMethod());
+        if (method == null) {
+            resp.sendError(501, "NOT IMPLEMENTED");
+            return;
+        }
+        if (method == RequestMethod.HEAD) {
+            resp = new NoBodyResponse(resp);
+        }
         String url = req.getRequestURI();
 
         //区分静态资源请求，还是业务URL请求
-        if (url.equals(this.faviconPath) || url.startsWith(this.resourcePath)) {
+        if ((method == RequestMethod.GET || method == RequestMethod.HEAD) && (url.equals(this.faviconPath) || url.startsWith(this.resourcePath))) {
             doResource(url, req, resp);
+        } else if (method == RequestMethod.GET && this.metricsEnabled && url.equals(this.metricsPath)) {
+            doMetrics(resp);
+        } else if (method != RequestMethod.HEAD && this.compression.accepts(req)) {
+            GzipResponse gzip = new GzipResponse(resp, this.compression);
+            doService(req, gzip, method);
+            //异步请求在完成时写出
+            if (!req.isAsyncStarted()) {
+                gzip.finish();
+            }
         } else {
-            doService(req, resp, this.getDispatchers);
+            doService(req, resp, method);
         }
     }
 
-    @Override
-    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        doService(req, resp, this.postDispatchers);
-    }
-
     /**
      * @param req
      * @param resp
-     * @param dispatchers
+     * @param method 请求方法
      * @throws ServletException
      * @throws IOException
      */
-    void doService(HttpServletRequest req, HttpServletResponse resp, List<Dispatcher> dispatchers) throws ServletException, IOException {
+    void doService(HttpServletRequest req, HttpServletResponse resp, RequestMethod method) throws ServletException, IOException {
         String url = req.getRequestURI();
         try {
-            doService(url, req, resp, dispatchers);
+            doService(url, req, resp, method);
         } catch (ErrorResponseException e) {
-            log.warn("process request failed with status " + e.statusCode + ":" + url, e);
-            if (!resp.isCommitted()) {
-                resp.resetBuffer();
-                resp.sendError(e.statusCode);
-            }
+            sendErrorResponse(url, e, resp);
         } catch (RuntimeException | ServletException | IOException e) {
             log.warn("process request failed: " + url, e);
             throw e;
@@ -194,123 +395,597 @@ public class DispatcherServlet extends HttpServlet {
     }
 
     /**
-     * 处理Controller方法返回结果
+     * 匹配处理器并执行Controller方法，异步返回值交给AsyncContext处理
      *
      * @param url
      * @param req
      * @param resp
-     * @param dispatchers
-     * @throws ServletException
-     * @throws IOException
+     * @param method 请求方法
+     * @throws Exception Controller方法抛出的异常
      */
-    void doService(String url, HttpServletRequest req, HttpServletResponse resp, List<Dispatcher> dispatchers) throws ServletException, IOException {
-        for (Dispatcher dispatcher : dispatchers) {
-            //匹配url，执行方法
-            Result process = dispatcher.process(url, req, resp);
-            //url匹配成功，方法执行完成
-            if (process.processed()) {
-                //执行结果
-                //Controller层方法返回结果
-                Object processResult = process.returnObject();
-                //restController需要返回JSON
-                if (dispatcher.isRest) {
-                    if (!resp.isCommitted()) {
-                        resp.setContentType("application/json");
-                    }
-                    //@ResponseBody只能处理String、byte[]?
-                    if (dispatcher.isResponseBody) {
-                        //instanceof 后强转
-                        if (processResult instanceof String s) {
-                            PrintWriter writer = resp.getWriter();
-                            writer.write(s);
-                            writer.flush();
-                        } else if (processResult instanceof byte[] data) {
-                            ServletOutputStream outputStream = resp.getOutputStream();
-                            outputStream.write(data);
-                            outputStream.flush();
-                        } else {
-                            //序列化对象为json然后返回
-                            PrintWriter writer = resp.getWriter();
-                            JsonUtils.writeJson(writer, processResult);
-                            writer.flush();
-                            //throw new ServletException("Unable to process REST result when handle url: " + url);
-                        }
-                    } else if (!dispatcher.isVoid) {
-                        //TODO 加了@ResponseBody的接口，不能序列化对象？
-                        //默认转换为JSON
-                        PrintWriter writer = resp.getWriter();
-                        JsonUtils.writeJson(writer, processResult);
-                        writer.flush();
-                    }
+    void doService(String url, HttpServletRequest req, HttpServletResponse resp, RequestMethod method) throws Exception {
+        //路由树同时匹配请求方法和url
+        Router.Match match = this.router.match(method, url);
+        if (match == null) {
+            Set<RequestMethod> allowed = this.router.allowedMethods(url);
+            if (allowed.isEmpty()) {
+                resp.sendError(404, "NOT FOUND");
+                return;
+            }
+            resp.setHeader("Allow", allowed.stream().map(RequestMethod::name).collect(Collectors.joining(", ")));
+            if (method == RequestMethod.OPTIONS) {
+                resp.setStatus(200);
+            } else {
+                resp.sendError(405, "METHOD NOT ALLOWED");
+            }
+            return;
+        }
+        Dispatcher dispatcher = match.dispatcher();
+        long start = System.nanoTime();
+        if (!tryAcquire(dispatcher)) {
+            //超过并发上限立即拒绝，不在容器中排队
+            resp.setHeader("Retry-After", this.retryAfter);
+            resp.sendError(503, "SERVICE UNAVAILABLE");
+            recordMetrics(dispatcher, req, 503, start);
+            return;
+        }
+        HandlerInterceptor[] interceptors = dispatcher.interceptors;
+        //preHandle返回true的拦截器个数
+        int applied = 0;
+        //流式响应由AsyncContext完成时记录，不依赖isAsyncStarted()：响应可能在返回之前就已经结束
+        boolean streaming = false;
+        try {
+            while (applied < interceptors.length && interceptors[applied].preHandle(req, resp, dispatcher)) {
+                applied++;
+            }
+            if (applied == interceptors.length) {
+                if (dispatcher.cacheTtl > 0 || dispatcher.coalesce) {
+                    doCachedService(match, dispatcher, req, resp);
                 } else {
-                    //process MVC
-                    if (!resp.isCommitted()) {
-                        resp.setContentType("text/html");
-                    }
-                    if (processResult instanceof String s) {
-                        if (dispatcher.isResponseBody) {
-                            PrintWriter writer = resp.getWriter();
-                            writer.write(s);
-                            writer.flush();
-                        } else if (s.startsWith("redirect:")) {
-                            // send redirect:
-                            resp.sendRedirect(s.substring(9));
-                        } else {
-                            // error:
-                            throw new ServletException("Unable to process String result when handle url: " + url);
-                        }
-                    } else if (processResult instanceof byte[] data) {
-                        if (dispatcher.isResponseBody) {
-                            // send as response body:
-                            ServletOutputStream output = resp.getOutputStream();
-                            output.write(data);
-                            output.flush();
-                        } else {
-                            // error:
-                            throw new ServletException("Unable to process byte[] result when handle url: " + url);
-                        }
-                    } else if (processResult instanceof ModelAndView mv) {
-                        String view = mv.getViewName();
-                        if (view.startsWith("redirect:")) {
-                            // send redirect:
-                            resp.sendRedirect(view.substring(9));
-                        } else {
-                            this.viewResolver.render(view, mv.getModel(), req, resp);
-                        }
-                    } else if (!dispatcher.isVoid && processResult != null) {
-                        // error:
-                        throw new ServletException("Unable to process " + processResult.getClass().getName() + " result when handle url: " + url);
+                    //执行方法
+                    //Controller层方法返回结果
+                    Object processResult = dispatcher.process(match, req, resp);
+                    postHandle(dispatcher, processResult, req, resp);
+                    if (dispatcher.isStreaming && processResult != null) {
+                        streaming = doStreaming(url, dispatcher, processResult, req, resp, start);
+                    } else if (dispatcher.isAsync && processResult != null) {
+                        doAsync(url, dispatcher, toFuture(processResult), req, resp, start);
+                    } else {
+                        handleResult(url, dispatcher, processResult, req, resp);
                     }
                 }
-                return;
             }
+        } catch (Exception e) {
+            complete(dispatcher, req, e instanceof ErrorResponseException ere ? ere.statusCode : 500, start);
+            afterCompletion(dispatcher, applied, e, req, resp);
+            throw e;
+        }
+        //异步请求在完成时记录
+        if (!streaming && !req.isAsyncStarted()) {
+            complete(dispatcher, req, resp.getStatus(), start);
+            afterCompletion(dispatcher, applied, null, req, resp);
         }
-        resp.sendError(404, "NOT FOUND");
     }
 
-    void doResource(String url, HttpServletRequest req, HttpServletResponse resp) throws IOException {
-        ServletContext ctx = req.getServletContext();
-        try (InputStream input = ctx.getResourceAsStream(url)) {
-            if (input == null) {
-                resp.sendError(404, "Not Found");
+    void postHandle(Dispatcher dispatcher, Object result, HttpServletRequest req, HttpServletResponse resp) throws Exception {
+        HandlerInterceptor[] interceptors = dispatcher.interceptors;
+        for (int i = interceptors.length - 1; i >= 0; i--) {
+            interceptors[i].postHandle(req, resp, dispatcher, result);
+        }
+    }
+
+    /**
+     * 倒序调用前applied个拦截器的afterCompletion，异常不影响已写出的响应
+     */
+    void afterCompletion(Dispatcher dispatcher, int applied, Exception ex, HttpServletRequest req, HttpServletResponse resp) {
+        HandlerInterceptor[] interceptors = dispatcher.interceptors;
+        for (int i = applied - 1; i >= 0; i--) {
+            try {
+                interceptors[i].afterCompletion(req, resp, dispatcher, ex);
+            } catch (Exception e) {
+                log.warn("afterCompletion failed: " + interceptors[i].getClass().getName(), e);
+            }
+        }
+    }
+
+    /**
+     * 先占用接口的并发数再占用全局的，全局超限时归还接口的
+     */
+    boolean tryAcquire(Dispatcher dispatcher) {
+        if (dispatcher.limiter != null && !dispatcher.limiter.tryAcquire()) {
+            return false;
+        }
+        if (this.limiter != null && !this.limiter.tryAcquire()) {
+            if (dispatcher.limiter != null) {
+                dispatcher.limiter.cancel();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 请求处理完成：记录延迟，释放并发数，5xx视为过载
+     */
+    void complete(Dispatcher dispatcher, HttpServletRequest req, int status, long start) {
+        long nanos = System.nanoTime() - start;
+        if (this.metricsEnabled) {
+            dispatcher.metrics.record(RequestMethod.resolve(req.getMethod()), status, nanos);
+        }
+        boolean dropped = status >= 500;
+        if (dispatcher.limiter != null) {
+            dispatcher.limiter.release(nanos, dropped);
+        }
+        if (this.limiter != null) {
+            this.limiter.release(nanos, dropped);
+        }
+    }
+
+    void recordMetrics(Dispatcher dispatcher, HttpServletRequest req, int status, long start) {
+        if (this.metricsEnabled) {
+            dispatcher.metrics.record(RequestMethod.resolve(req.getMethod()), status, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 输出Prometheus格式的统计
+     */
+    void doMetrics(HttpServletResponse resp) throws IOException {
+        Map<String, Long> coalesced = new TreeMap<>();
+        this.coalescer.getStats().forEach((route, stats) -> coalesced.put(route, stats.getMergedCalls()));
+        List<ConcurrencyLimiter> limiters = new ArrayList<>();
+        if (this.limiter != null) {
+            limiters.add(this.limiter);
+        }
+        this.dispatchers.stream().map(dispatcher -> dispatcher.limiter).filter(Objects::nonNull).forEach(limiters::add);
+        Map<String, Long> limits = new LinkedHashMap<>();
+        Map<String, Long> inFlight = new LinkedHashMap<>();
+        Map<String, Long> rejected = new LinkedHashMap<>();
+        for (ConcurrencyLimiter limiter : limiters) {
+            limits.put(limiter.getName(), (long) limiter.getLimit());
+            inFlight.put(limiter.getName(), (long) limiter.getInFlight());
+            rejected.put(limiter.getName(), limiter.getRejected());
+        }
+        String text = new PrometheusWriter()
+                .writeRequests(this.dispatchers.stream().map(dispatcher -> dispatcher.metrics).toList())
+                .writeCounter("summer_web_coalesced_calls_total", "Requests merged into an in-flight @Coalesce call.", "route", coalesced)
+                .writeGauge("summer_web_response_cache_bytes", "Estimated size of @ResponseCache entries.", this.responseCache.size.get())
+                .writeGauge("summer_web_concurrency_limit", "Current adaptive concurrency limit.", "limiter", limits)
+                .writeGauge("summer_web_concurrency_in_flight", "Requests currently holding a concurrency permit.", "limiter", inFlight)
+                .writeCounter("summer_web_concurrency_rejected_total", "Requests rejected with 503 by the concurrency limiter.", "limiter", rejected)
+                .toString();
+        resp.setContentType(PrometheusWriter.CONTENT_TYPE);
+        ServletOutputStream output = resp.getOutputStream();
+        output.write(text.getBytes(StandardCharsets.UTF_8));
+        output.flush();
+    }
+
+    /**
+     * 命中缓存时直接写出缓存的响应体，未命中时执行方法并缓存序列化结果
+     * &#64;Coalesce的接口，相同key的并发请求共享一次执行的结果
+     */
+    void doCachedService(Router.Match match, Dispatcher dispatcher, HttpServletRequest req, HttpServletResponse resp) throws Exception {
+        String key = dispatcher.cacheKey(match, req);
+        //本次请求执行了方法时保存返回值，命中缓存或合并到其他请求时为null
+        Object[] result = new Object[1];
+        ResponseCacheStore.CachedResponse cached = dispatcher.cacheTtl > 0 ? this.responseCache.get(key) : null;
+        if (cached == null) {
+            if (dispatcher.coalesce) {
+                cached = this.coalescer.execute(dispatcher.urlPattern, key, () -> processAndSerialize(key, match, dispatcher, req, resp, result));
+            } else {
+                cached = processAndSerialize(key, match, dispatcher, req, resp, result);
+            }
+        }
+        postHandle(dispatcher, result[0], req, resp);
+        //压缩后的字节与缓存的原始内容不同，ETag加上编码后缀，避免与未压缩的响应共用同一个强ETag
+        String etag = cached.etag;
+        if (resp instanceof GzipResponse gzip && gzip.willCompress(cached.body.length, cached.contentType)) {
+            etag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+        resp.setHeader("ETag", etag);
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null && StaticResourceHandler.matchesEtag(ifNoneMatch, etag)) {
+            resp.setStatus(304);
+            return;
+        }
+        resp.setContentType(cached.contentType);
+        resp.setContentLength(cached.body.length);
+        ServletOutputStream output = resp.getOutputStream();
+        output.write(cached.body);
+        output.flush();
+    }
+
+    ResponseCacheStore.CachedResponse processAndSerialize(String key, Router.Match match, Dispatcher dispatcher, HttpServletRequest req, HttpServletResponse resp,
+                                                          Object[] result) throws Exception {
+        result[0] = dispatcher.process(match, req, resp);
+        byte[] body = dispatcher.serialize(result[0]);
+        if (dispatcher.cacheTtl > 0) {
+            return this.responseCache.put(key, body, "application/json", dispatcher.cacheTtl);
+        }
+        //只合并不缓存
+        return new ResponseCacheStore.CachedResponse(key, body, "application/json", Long.MAX_VALUE);
+    }
+
+    /**
+     * 异步返回值：已完成的直接在当前线程写回，否则startAsync()释放容器线程，完成后再写回
+     */
+    void doAsync(String url, Dispatcher dispatcher, CompletableFuture<?> future, HttpServletRequest req, HttpServletResponse resp, long start) throws Exception {
+        long timeout = dispatcher.asyncTimeout >= 0 ? dispatcher.asyncTimeout : this.asyncTimeout;
+        if (future.isDone() || !req.isAsyncSupported()) {
+            //不支持异步时阻塞等待
+            Object result;
+            try {
+                result = timeout > 0 ? future.get(timeout, TimeUnit.MILLISECONDS) : future.get();
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            } catch (TimeoutException e) {
+                future.cancel(false);
+                throw new ServiceUnavailableException("Async request timeout: " + url);
+            }
+            handleResult(url, dispatcher, result, req, resp);
+            return;
+        }
+        AsyncContext asyncContext = req.startAsync(req, resp);
+        asyncContext.setTimeout(timeout);
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                future.completeExceptionally(new ServiceUnavailableException("Async request timeout: " + url));
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                future.cancel(false);
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        future.whenComplete((result, error) -> {
+            try {
+                completeAsync(url, dispatcher, result, error, req, resp);
+                if (resp instanceof GzipResponse gzip) {
+                    gzip.finish();
+                }
+            } catch (IOException e) {
+                log.warn("write async response failed: " + url, e);
+            } finally {
+                //客户端断开导致写出失败时也要归还并发数，否则限流器的占用只增不减
+                complete(dispatcher, req, resp.getStatus(), start);
+                afterCompletion(dispatcher, dispatcher.interceptors.length, error instanceof Exception e ? e : null, req, resp);
+                asyncContext.complete();
+            }
+        });
+    }
+
+    /**
+     * 异步结果完成后写回响应，异常按doService()相同的规则转换为状态码
+     */
+    void completeAsync(String url, Dispatcher dispatcher, Object result, Throwable error, HttpServletRequest req, HttpServletResponse resp) {
+        try {
+            try {
+                if (error != null) {
+                    throw unwrap(error);
+                }
+                handleResult(url, dispatcher, result, req, resp);
+            } catch (ErrorResponseException e) {
+                sendErrorResponse(url, e, resp);
+            } catch (Exception e) {
+                log.warn("process async request failed: " + url, e);
+                if (!resp.isCommitted()) {
+                    resp.resetBuffer();
+                    resp.sendError(500);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("write async response failed: " + url, e);
+        }
+    }
+
+    /**
+     * CompletionStage、Callable、DeferredResult统一转换为CompletableFuture
+     */
+    CompletableFuture<?> toFuture(Object processResult) {
+        if (processResult instanceof CompletionStage<?> stage) {
+            return stage.toCompletableFuture();
+        } else if (processResult instanceof DeferredResult<?> deferred) {
+            return deferred.getFuture();
+        }
+        Callable<?> callable = (Callable<?>) processResult;
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        this.asyncExecutor.execute(() -> {
+            try {
+                future.complete(callable.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 流式返回值（SseEmitter、Flow.Publisher、Stream）：先提交响应头，startAsync()后逐条写出，每条写完立即flush
+     * 返回SseEmitter或请求头Accept包含text/event-stream时写成SSE帧，否则写成JSON数组
+     *
+     * @return 是否交给AsyncContext完成
+     */
+    boolean doStreaming(String url, Dispatcher dispatcher, Object result, HttpServletRequest req, HttpServletResponse resp, long start) throws Exception {
+        boolean sse = result instanceof SseEmitter || acceptsEventStream(req);
+        resp.setContentType(sse ? "text/event-stream" : "application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        if (resp instanceof NoBodyResponse) {
+            //HEAD请求不写响应体
+            if (result instanceof Stream<?> stream) {
+                stream.close();
+            } else if (result instanceof SseEmitter emitter) {
+                emitter.complete();
+            }
+            return false;
+        }
+        StreamingResponseWriter writer = new StreamingResponseWriter(resp, dispatcher.jsonWriter, sse);
+        writer.open();
+        long timeout = dispatcher.asyncTimeout >= 0 ? dispatcher.asyncTimeout : result instanceof SseEmitter emitter ? emitter.timeout : 0;
+        if (!req.isAsyncSupported()) {
+            //不支持异步时在当前线程写完
+            stream(writer, result, false);
+            try {
+                if (timeout > 0) {
+                    writer.done.get(timeout, TimeUnit.MILLISECONDS);
+                } else {
+                    writer.done.get();
+                }
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            } catch (TimeoutException e) {
+                writer.close(null);
+            }
+            return false;
+        }
+        AsyncContext asyncContext = req.startAsync(req, resp);
+        asyncContext.setTimeout(timeout);
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                //超时正常结束，SSE客户端会自动重连
+                writer.close(null);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                writer.close(event.getThrowable() != null ? event.getThrowable() : new IOException("Async request error: " + url));
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        writer.done.whenComplete((v, error) -> {
+            try {
+                if (error != null) {
+                    log.warn("write streaming response failed: " + url, error);
+                }
+                if (resp instanceof GzipResponse gzip) {
+                    gzip.finish();
+                }
+            } catch (IOException e) {
+                log.warn("write streaming response failed: " + url, e);
+            } finally {
+                complete(dispatcher, req, error == null ? resp.getStatus() : 500, start);
+                afterCompletion(dispatcher, dispatcher.interceptors.length, error instanceof Exception e ? e : null, req, resp);
+                asyncContext.complete();
+            }
+        });
+        if (this.heartbeatInterval > 0) {
+            long intervalNanos = TimeUnit.MILLISECONDS.toNanos(this.heartbeatInterval);
+            ScheduledFuture<?> heartbeat = this.heartbeatScheduler.scheduleWithFixedDelay(
+                    () -> this.asyncExecutor.execute(() -> writer.heartbeat(intervalNanos)), this.heartbeatInterval, this.heartbeatInterval, TimeUnit.MILLISECONDS);
+            writer.done.whenComplete((v, error) -> heartbeat.cancel(false));
+        }
+        stream(writer, result, true);
+        return true;
+    }
+
+    /**
+     * 开始写出流式返回值，出错时由writer结束响应，不抛出异常
+     *
+     * @param async Stream是否在虚拟线程中读取
+     */
+    void stream(StreamingResponseWriter writer, Object result, boolean async) {
+        if (result instanceof SseEmitter emitter) {
+            emitter.bind(writer);
+        } else if (result instanceof Flow.Publisher<?> publisher) {
+            publisher.subscribe(writer.subscriber());
+        } else {
+            Stream<?> stream = (Stream<?>) result;
+            if (async) {
+                this.asyncExecutor.execute(() -> writer.writeAll(stream));
             } else {
-                // guess content type:
-                String file = url;
-                int n = url.lastIndexOf('/');
-                if (n >= 0) {
-                    file = url.substring(n + 1);
+                writer.writeAll(stream);
+            }
+        }
+    }
+
+    static boolean acceptsEventStream(HttpServletRequest req) {
+        String accept = req.getHeader("Accept");
+        return accept != null && accept.contains("text/event-stream");
+    }
+
+    /**
+     * 取出异步执行抛出的原始异常
+     */
+    Exception unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        if (t instanceof Exception e) {
+            return e;
+        }
+        if (t instanceof Error e) {
+            throw e;
+        }
+        return new NestedRuntimeException(t);
+    }
+
+    void sendErrorResponse(String url, ErrorResponseException e, HttpServletResponse resp) throws IOException {
+        log.warn("process request failed with status " + e.statusCode + ":" + url, e);
+        if (!resp.isCommitted()) {
+            resp.resetBuffer();
+            resp.sendError(e.statusCode);
+        }
+    }
+
+    /**
+     * 处理Controller方法返回结果
+     *
+     * @param url
+     * @param dispatcher
+     * @param processResult Controller方法返回结果
+     * @param req
+     * @param resp
+     * @throws ServletException
+     * @throws IOException
+     */
+    void handleResult(String url, Dispatcher dispatcher, Object processResult, HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        //restController需要返回JSON
+        if (dispatcher.isRest) {
+            if (!resp.isCommitted()) {
+                resp.setContentType("application/json");
+            }
+            //@ResponseBody只能处理String、byte[]?
+            if (dispatcher.isResponseBody) {
+                //instanceof 后强转
+                if (processResult instanceof String s) {
+                    PrintWriter writer = resp.getWriter();
+                    writer.write(s);
+                    writer.flush();
+                } else if (processResult instanceof byte[] data) {
+                    ServletOutputStream outputStream = resp.getOutputStream();
+                    outputStream.write(data);
+                    outputStream.flush();
+                } else {
+                    //序列化对象为json然后返回
+                    writeJson(dispatcher, processResult, resp);
+                    //throw new ServletException("Unable to process REST result when handle url: " + url);
+                }
+            } else if (!dispatcher.isVoid) {
+                //TODO 加了@ResponseBody的接口，不能序列化对象？
+                //默认转换为JSON
+                writeJson(dispatcher, processResult, resp);
+            }
+        } else {
+            //process MVC
+            if (!resp.isCommitted()) {
+                resp.setContentType("text/html");
+            }
+            if (processResult instanceof String s) {
+                if (dispatcher.isResponseBody) {
+                    PrintWriter writer = resp.getWriter();
+                    writer.write(s);
+                    writer.flush();
+                } else if (s.startsWith("redirect:")) {
+                    // send redirect:
+                    resp.sendRedirect(s.substring(9));
+                } else {
+                    // error:
+                    throw new ServletException("Unable to process String result when handle url: " + url);
+                }
+            } else if (processResult instanceof byte[] data) {
+                if (dispatcher.isResponseBody) {
+                    // send as response body:
+                    ServletOutputStream output = resp.getOutputStream();
+                    output.write(data);
+                    output.flush();
+                } else {
+                    // error:
+                    throw new ServletException("Unable to process byte[] result when handle url: " + url);
                 }
-                String mime = ctx.getMimeType(file);
-                if (mime == null) {
-                    mime = "application/octet-stream";
+            } else if (processResult instanceof ModelAndView mv) {
+                String view = mv.getViewName();
+                if (view.startsWith("redirect:")) {
+                    // send redirect:
+                    resp.sendRedirect(view.substring(9));
+                } else if (!(resp instanceof NoBodyResponse)) {
+                    if (mv.isStreaming()) {
+                        this.viewResolver.renderStreaming(view, mv.getModel(), req, resp);
+                    } else {
+                        this.viewResolver.render(view, mv.getModel(), req, resp);
+                    }
                 }
-                resp.setContentType(mime);
-                ServletOutputStream output = resp.getOutputStream();
-                input.transferTo(output);
-                output.flush();
+            } else if (!dispatcher.isVoid && processResult != null) {
+                // error:
+                throw new ServletException("Unable to process " + processResult.getClass().getName() + " result when handle url: " + url);
             }
         }
     }
 
+    /**
+     * 直接以UTF-8字节写入ServletOutputStream，不经过PrintWriter的字符编码
+     */
+    void writeJson(Dispatcher dispatcher, Object processResult, HttpServletResponse resp) throws IOException {
+        //HEAD请求不需要序列化
+        if (resp instanceof NoBodyResponse) {
+            return;
+        }
+        ServletOutputStream output = resp.getOutputStream();
+        dispatcher.jsonWriter.writeValue(output, processResult);
+        output.flush();
+    }
+
+    void doResource(String url, HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        this.staticResourceHandler.handle(url, req, resp);
+    }
+
+    /**
+     * HEAD请求的响应，丢弃写入的响应体
+     */
+    static class NoBodyResponse extends HttpServletResponseWrapper {
+
+        final ServletOutputStream output = new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+
+        PrintWriter writer;
+
+        NoBodyResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return this.output;
+        }
 
+        @Override
+        public PrintWriter getWriter() {
+            if (this.writer == null) {
+                this.writer = new PrintWriter(new OutputStreamWriter(this.output, StandardCharsets.UTF_8));
+            }
+            return this.writer;
+        }
+    }
 }
@@ -1,6 +1,8 @@
 package com.albert.summer.web;
 
+import com.albert.summer.exception.NestedRuntimeException;
 import com.albert.summer.exception.ServerErrorException;
+import freemarker.cache.StrongCacheStorage;
 import freemarker.cache.TemplateLoader;
 import freemarker.core.HTMLOutputFormat;
 import freemarker.template.*;
@@ -12,10 +14,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.BaseStream;
+import java.util.stream.Stream;
 
 /**
+ * FreeMarker视图解析器
+ * 1.生产模式：启动时解析模板目录下的所有模板，之后不再检查文件修改时间，模板常驻缓存
+ * 2.开发模式：每次请求都检查模板是否修改，修改后重新加载
+ * 3.渲染到池化的缓冲区，成功后一次写入响应，模板出错时不会输出半个页面
+ * 4.按模板统计渲染次数和耗时
+ * 5.流式渲染：输出&lt;/head&gt;后立即flush，之后每输出flush-interval个字符flush一次，模板中也可以用&lt;#flush&gt;
+ * 6.Model中的Stream、Iterable按需迭代，不需要一次性加载到内存，渲染结束后关闭Model中的Stream
+ *
  * @author yjw
  * @date 2024/7/24 21:18
  */
@@ -23,22 +42,62 @@ public class FreeMarkerViewResolver implements ViewResolver {
 
     final Logger logger = LoggerFactory.getLogger(getClass());
 
+    /**
+     * 缓冲区池大小
+     */
+    static final int BUFFER_POOL_SIZE = 64;
+
+    /**
+     * 超过该大小的缓冲区用完后丢弃，不放回池中
+     */
+    static final int BUFFER_MAX_RETAINED = 1024 * 1024;
+
     final String templatePath;
     final String templateEncoding;
 
+    /**
+     * 是否生产模式
+     */
+    final boolean production;
+
+    /**
+     * 流式渲染时的flush间隔（字符数）
+     */
+    final long flushInterval;
+
     final ServletContext servletContext;
 
     Configuration config;
 
+    /**
+     * 渲染缓冲区池，虚拟线程下不使用ThreadLocal
+     */
+    final Queue<CharArrayWriter> buffers = new ArrayBlockingQueue<>(BUFFER_POOL_SIZE);
+
+    /**
+     * 模板名 -> 渲染统计
+     */
+    final Map<String, TemplateStats> templateStats = new ConcurrentHashMap<>();
+
     public FreeMarkerViewResolver(ServletContext servletContext, String templatePath, String templateEncoding) {
+        this(servletContext, templatePath, templateEncoding, false);
+    }
+
+    public FreeMarkerViewResolver(ServletContext servletContext, String templatePath, String templateEncoding, boolean production) {
+        this(servletContext, templatePath, templateEncoding, production, 8 * 1024);
+    }
+
+    public FreeMarkerViewResolver(ServletContext servletContext, String templatePath, String templateEncoding, boolean production, long flushInterval) {
         this.servletContext = servletContext;
+        this.flushInterval = flushInterval;
         this.templatePath = templatePath;
         this.templateEncoding = templateEncoding;
+        this.production = production;
     }
 
     @Override
     public void init() {
-        logger.info("init {}, set template path: {}", getClass().getSimpleName(), this.templatePath);
+        logger.info("init {}, set template path: {}, production: {}", getClass().getSimpleName(), this.templatePath, this.production);
         Configuration cfg = new Configuration(Configuration.VERSION_2_3_32);
         cfg.setOutputFormat(HTMLOutputFormat.INSTANCE);
         cfg.setDefaultEncoding(this.templateEncoding);
@@ -46,28 +105,270 @@ public class FreeMarkerViewResolver implements ViewResolver {
         cfg.setTemplateExceptionHandler(TemplateExceptionHandler.HTML_DEBUG_HANDLER);
         cfg.setAutoEscapingPolicy(Configuration.ENABLE_IF_SUPPORTED_AUTO_ESCAPING_POLICY);
         cfg.setLocalizedLookup(false);
+        if (this.production) {
+            //模板不会被淘汰，也不再检查文件修改时间
+            cfg.setCacheStorage(new StrongCacheStorage());
+            cfg.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
+        } else {
+            cfg.setTemplateUpdateDelayMilliseconds(0);
+        }
 
-        var ow = new DefaultObjectWrapper(Configuration.VERSION_2_3_32);
+        var ow = new LazyObjectWrapper(Configuration.VERSION_2_3_32);
         ow.setExposeFields(true);
+        //非Collection的Iterable按需迭代
+        ow.setIterableSupport(true);
         cfg.setObjectWrapper(ow);
         this.config = cfg;
+        if (this.production) {
+            precompile();
+        }
+    }
+
+    /**
+     * 解析模板目录下的所有模板并放入缓存，模板有语法错误时启动失败
+     */
+    void precompile() {
+        String dir = this.templatePath.endsWith("/") ? this.templatePath : this.templatePath + "/";
+        if (!dir.startsWith("/")) {
+            dir = "/" + dir;
+        }
+        long start = System.currentTimeMillis();
+        int count = precompile(dir, dir);
+        logger.info("precompile {} templates under {} in {} ms.", count, dir, System.currentTimeMillis() - start);
+    }
+
+    int precompile(String root, String dir) {
+        Set<String> paths = this.servletContext.getResourcePaths(dir);
+        if (paths == null) {
+            return 0;
+        }
+        int count = 0;
+        for (String path : paths) {
+            if (path.endsWith("/")) {
+                count += precompile(root, path);
+                continue;
+            }
+            String name = path.substring(root.length());
+            try {
+                this.config.getTemplate(name);
+            } catch (IOException e) {
+                throw new NestedRuntimeException("Failed to precompile template: " + name, e);
+            }
+            this.templateStats.computeIfAbsent(name, n -> new TemplateStats());
+            count++;
+        }
+        return count;
     }
 
     @Override
     public void render(String viewName, Map<String, Object> model, HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        Template templ = null;
+        Template templ = getTemplate(viewName);
+        TemplateStats stats = this.templateStats.computeIfAbsent(templ.getName(), n -> new TemplateStats());
+        CharArrayWriter buffer = acquireBuffer();
+        long start = System.nanoTime();
         try {
-            templ = this.config.getTemplate(viewName);
-        } catch (Exception e) {
-            throw new ServerErrorException("View not found: " + viewName);
+            templ.process(model, buffer);
+            stats.record(System.nanoTime() - start);
+            PrintWriter pw = resp.getWriter();
+            buffer.writeTo(pw);
+            pw.flush();
+        } catch (TemplateException e) {
+            stats.recordError();
+            throw new ServerErrorException(e);
+        } finally {
+            releaseBuffer(buffer);
+            closeStreams(model);
         }
-        PrintWriter pw = resp.getWriter();
+    }
+
+    /**
+     * 边渲染边输出，响应已提交后模板出错只能中断输出
+     */
+    @Override
+    public void renderStreaming(String viewName, Map<String, Object> model, HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        Template templ = getTemplate(viewName);
+        TemplateStats stats = this.templateStats.computeIfAbsent(templ.getName(), n -> new TemplateStats());
+        StreamingWriter writer = new StreamingWriter(resp, this.flushInterval);
+        long start = System.nanoTime();
         try {
-            templ.process(model, pw);
+            templ.process(model, writer);
+            writer.flush();
+            stats.record(System.nanoTime() - start);
         } catch (TemplateException e) {
+            stats.recordError();
             throw new ServerErrorException(e);
+        } finally {
+            closeStreams(model);
+        }
+    }
+
+    Template getTemplate(String viewName) {
+        try {
+            return this.config.getTemplate(viewName);
+        } catch (Exception e) {
+            throw new ServerErrorException("View not found: " + viewName);
+        }
+    }
+
+    /**
+     * Model中的Stream可能持有数据库连接等资源，渲染结束后关闭
+     */
+    static void closeStreams(Map<String, Object> model) {
+        if (model == null) {
+            return;
+        }
+        for (Object value : model.values()) {
+            if (value instanceof BaseStream<?, ?> stream) {
+                stream.close();
+            }
+        }
+    }
+
+    CharArrayWriter acquireBuffer() {
+        CharArrayWriter buffer = this.buffers.poll();
+        return buffer != null ? buffer : new CharArrayWriter(8192);
+    }
+
+    void releaseBuffer(CharArrayWriter buffer) {
+        if (buffer.size() <= BUFFER_MAX_RETAINED) {
+            buffer.reset();
+            this.buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * 按模板名返回渲染统计
+     */
+    public Map<String, TemplateStats> getTemplateStats() {
+        return Collections.unmodifiableMap(this.templateStats);
+    }
+
+    /**
+     * 把Stream包装为只能迭代一次的集合，#list时逐个取出元素
+     */
+    static class LazyObjectWrapper extends DefaultObjectWrapper {
+
+        LazyObjectWrapper(Version incompatibleImprovements) {
+            super(incompatibleImprovements);
+        }
+
+        @Override
+        protected TemplateModel handleUnknownType(Object obj) throws TemplateModelException {
+            if (obj instanceof Stream<?> stream) {
+                return DefaultIteratorAdapter.adapt(stream.iterator(), this);
+            }
+            return super.handleUnknownType(obj);
+        }
+    }
+
+    /**
+     * 流式渲染的Writer，&lt;/head&gt;之后和每输出flushInterval个字符时flush到客户端
+     */
+    static class StreamingWriter extends Writer {
+
+        final HttpServletResponse resp;
+
+        final PrintWriter out;
+
+        final long flushInterval;
+
+        long pending;
+
+        boolean headFlushed;
+
+        StreamingWriter(HttpServletResponse resp, long flushInterval) throws IOException {
+            this.resp = resp;
+            this.out = resp.getWriter();
+            this.flushInterval = flushInterval;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            this.out.write(cbuf, off, len);
+            written(this.headFlushed ? null : new String(cbuf, off, len), len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            this.out.write(str, off, len);
+            written(this.headFlushed ? null : str.substring(off, off + len), len);
+        }
+
+        void written(String text, int len) throws IOException {
+            this.pending += len;
+            if (text != null && text.toLowerCase().contains("</head>")) {
+                this.headFlushed = true;
+                flush();
+            } else if (this.pending >= this.flushInterval) {
+                flush();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.out.flush();
+            //PrintWriter不抛出IOException，客户端断开后停止渲染
+            if (this.out.checkError()) {
+                throw new IOException("Failed to write response, client may be disconnected.");
+            }
+            this.resp.flushBuffer();
+            this.pending = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * 单个模板的渲染统计，时间单位为纳秒
+     */
+    public static final class TemplateStats {
+
+        final LongAdder count = new LongAdder();
+
+        final LongAdder errorCount = new LongAdder();
+
+        final LongAdder totalTime = new LongAdder();
+
+        final AtomicLong maxTime = new AtomicLong();
+
+        void record(long nanos) {
+            this.count.increment();
+            this.totalTime.add(nanos);
+            this.maxTime.accumulateAndGet(nanos, Math::max);
+        }
+
+        void recordError() {
+            this.errorCount.increment();
+        }
+
+        public long getCount() {
+            return this.count.sum();
+        }
+
+        public long getErrorCount() {
+            return this.errorCount.sum();
+        }
+
+        public long getTotalTime() {
+            return this.totalTime.sum();
+        }
+
+        public long getMaxTime() {
+            return this.maxTime.get();
+        }
+
+        public long getAverageTime() {
+            long count = getCount();
+            return count == 0 ? 0 : getTotalTime() / count;
+        }
+
+        @Override
+        public String toString() {
+            return "TemplateStats{count=" + getCount() + ", errors=" + getErrorCount() + ", avg=" + getAverageTime() + "ns, max=" + getMaxTime() + "ns}";
         }
-        pw.flush();
     }
 }
 
@@ -0,0 +1,303 @@
+package com.albert.summer.web;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * gzip压缩的响应
+ * 先缓冲min-size字节，超过后根据Content-Type决定是否压缩，未超过时原样写出并设置Content-Length
+ * 缓冲阶段的flush()不生效，否则无法在提交响应头之前确定是否压缩，需要立即发送时调用flushBuffer()
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+class GzipResponse extends HttpServletResponseWrapper {
+
+    final ResponseCompression compression;
+
+    final GzipOutputStream output = new GzipOutputStream();
+
+    PrintWriter writer;
+
+    /**
+     * Controller设置的Content-Length，压缩时丢弃
+     */
+    long contentLength = -1;
+
+    /**
+     * 是否已确定压缩或不压缩
+     */
+    boolean decided;
+
+    boolean finished;
+
+    byte[] buffer;
+
+    int count;
+
+    /**
+     * 实际写出的流，压缩时为GZIPOutputStream
+     */
+    OutputStream target;
+
+    /**
+     * 设置了WriteListener时的底层输出流
+     */
+    ServletOutputStream nonBlockingOutput;
+
+    GzipResponse(HttpServletResponse response, ResponseCompression compression) {
+        super(response);
+        this.compression = compression;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        return this.output;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (this.writer == null) {
+            this.writer = new PrintWriter(new OutputStreamWriter(this.output, Charset.forName(getCharacterEncoding())));
+        }
+        return this.writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        setContentLengthLong(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        if (this.decided) {
+            if (!isGzip()) {
+                super.setContentLengthLong(len);
+            }
+        } else {
+            this.contentLength = len;
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(value == null ? -1 : Long.parseLong(value));
+        } else {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(Long.parseLong(value));
+        } else {
+            super.addHeader(name, value);
+        }
+    }
+
+    /**
+     * 流式响应主动提交时不再等待min-size，按Content-Type决定是否压缩
+     */
+    @Override
+    public void flushBuffer() throws IOException {
+        if (this.writer != null) {
+            this.writer.flush();
+        }
+        if (!this.decided && !this.finished && this.count > 0) {
+            decide(true);
+        }
+        if (this.decided) {
+            this.output.flush();
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public void resetBuffer() {
+        this.count = 0;
+        super.resetBuffer();
+    }
+
+    @Override
+    public void reset() {
+        this.count = 0;
+        this.contentLength = -1;
+        super.reset();
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        discard();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        discard();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        discard();
+        super.sendRedirect(location);
+    }
+
+    boolean isGzip() {
+        return this.target instanceof GZIPOutputStream;
+    }
+
+    /**
+     * 一次写出length字节、类型为contentType的响应体时是否会压缩，与decide()的判断一致
+     */
+    boolean willCompress(long length, String contentType) {
+        return !this.decided && length > this.compression.minSize && getHeader("Content-Encoding") == null
+                && this.compression.isCompressible(contentType);
+    }
+
+    /**
+     * 错误页和重定向由容器写出，丢弃已缓冲的内容
+     */
+    void discard() {
+        this.count = 0;
+        this.finished = true;
+    }
+
+    /**
+     * 请求处理完成后调用，写出缓冲区或gzip结尾
+     */
+    void finish() throws IOException {
+        if (this.finished) {
+            return;
+        }
+        if (this.writer != null) {
+            this.writer.flush();
+        }
+        this.finished = true;
+        if (!this.decided) {
+            if (this.count == 0) {
+                if (this.contentLength >= 0) {
+                    super.setContentLengthLong(this.contentLength);
+                }
+                return;
+            }
+            if (this.contentLength < 0) {
+                this.contentLength = this.count;
+            }
+            decide(false);
+        }
+        if (this.target instanceof GZIPOutputStream gzip) {
+            gzip.finish();
+        }
+        this.target.flush();
+    }
+
+    /**
+     * 确定是否压缩，然后写出已缓冲的内容
+     *
+     * @param large 响应体是否超过min-size
+     */
+    void decide(boolean large) throws IOException {
+        ServletOutputStream out = super.getOutputStream();
+        int status = getStatus();
+        if (large && status != 204 && status != 304 && !isCommitted() && getHeader("Content-Encoding") == null
+                && this.compression.isCompressible(getContentType())) {
+            super.setHeader("Content-Encoding", "gzip");
+            super.addHeader("Vary", "Accept-Encoding");
+            //syncFlush：flush()时输出已压缩的数据，流式响应不会卡在Deflater中
+            this.target = new GZIPOutputStream(out, 8192, true);
+        } else {
+            if (this.contentLength >= 0) {
+                super.setContentLengthLong(this.contentLength);
+            }
+            this.target = out;
+        }
+        this.decided = true;
+        if (this.count > 0) {
+            this.target.write(this.buffer, 0, this.count);
+            this.count = 0;
+        }
+        this.buffer = null;
+    }
+
+    class GzipOutputStream extends ServletOutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (finished && !decided) {
+                //sendError()之后写入的内容
+                return;
+            }
+            if (!decided) {
+                long minSize = compression.minSize;
+                if (count + len <= minSize) {
+                    if (buffer == null || count + len > buffer.length) {
+                        int size = (int) Math.min(minSize, Math.max(count + len, buffer == null ? 1024 : buffer.length * 2L));
+                        buffer = buffer == null ? new byte[size] : Arrays.copyOf(buffer, size);
+                    }
+                    System.arraycopy(b, off, buffer, count, len);
+                    count += len;
+                    return;
+                }
+                decide(true);
+            }
+            target.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (decided) {
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        @Override
+        public boolean isReady() {
+            //阻塞写出时总是可写
+            return nonBlockingOutput == null || nonBlockingOutput.isReady();
+        }
+
+        /**
+         * 非阻塞写出时不压缩：一次write可能产生多次底层写出，无法配合isReady()，gzip结尾也无法在完成时写出
+         * 已缓冲的内容原样写出，之后直接写到底层的流，WriteListener交给底层的流
+         */
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            if (isGzip()) {
+                throw new IllegalStateException("Cannot set WriteListener after compressed output has started.");
+            }
+            try {
+                if (!decided) {
+                    decide(false);
+                }
+                nonBlockingOutput = GzipResponse.super.getOutputStream();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            nonBlockingOutput.setWriteListener(writeListener);
+        }
+    }
+}
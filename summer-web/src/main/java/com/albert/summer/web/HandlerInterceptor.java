@@ -0,0 +1,62 @@
+package com.albert.summer.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.lang.annotation.Annotation;
+import java.util.List;
+
+/**
+ * 处理器拦截器，实现该接口并注册为Bean即可生效，多个拦截器按@Order排序
+ * <p>
+ * 每个路由适用的拦截器在启动时按路径模式和注解计算好，请求时不再匹配路径
+ * 路径模式匹配的是URL模板而不是实际URL：*匹配一段（包括{id}这样的路径变量），**匹配任意多段
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public interface HandlerInterceptor {
+
+    /**
+     * 拦截的路径模式，默认所有路径
+     */
+    default List<String> getPathPatterns() {
+        return List.of("/**");
+    }
+
+    /**
+     * 排除的路径模式
+     */
+    default List<String> getExcludePathPatterns() {
+        return List.of();
+    }
+
+    /**
+     * 只拦截方法或所在类带有其中任意一个注解的处理器，为空时不限制
+     */
+    default List<Class<? extends Annotation>> getHandlerAnnotations() {
+        return List.of();
+    }
+
+    /**
+     * 执行处理器之前调用，返回false时不再继续处理，由拦截器自己写出响应
+     */
+    default boolean preHandle(HttpServletRequest req, HttpServletResponse resp, Dispatcher handler) throws Exception {
+        return true;
+    }
+
+    /**
+     * 处理器正常返回之后、写出响应之前调用，按注册顺序倒序执行
+     * 异步接口的result是未完成的返回值，@ResponseCache和@Coalesce的接口没有执行方法时result为null
+     */
+    default void postHandle(HttpServletRequest req, HttpServletResponse resp, Dispatcher handler, Object result) throws Exception {
+    }
+
+    /**
+     * 请求处理完成后调用（异步接口在写出响应之后），只对preHandle返回true的拦截器倒序执行，抛出的异常只记录日志
+     *
+     * @param ex 处理过程中的异常，正常完成时为null
+     */
+    default void afterCompletion(HttpServletRequest req, HttpServletResponse resp, Dispatcher handler, Exception ex) throws Exception {
+    }
+}
@@ -0,0 +1,24 @@
+package com.albert.summer.web;
+
+/**
+ * Controller方法调用器
+ * 每个Dispatcher在构建时生成一个，请求时直接调用Controller方法，不经过反射。
+ * Controller抛出的异常原样抛出，不会包装成InvocationTargetException。
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+@FunctionalInterface
+public interface HandlerInvoker {
+
+    /**
+     * 调用Controller方法
+     *
+     * @param controller Controller实例
+     * @param arguments  方法入参
+     * @return 方法返回值，void方法返回null
+     * @throws Exception Controller方法抛出的异常
+     */
+    Object invoke(Object controller, Object[] arguments) throws Exception;
+
+}
@@ -0,0 +1,95 @@
+package com.albert.summer.web;
+
+import com.albert.summer.exception.ServerErrorException;
+import jakarta.servlet.ServletException;
+import lombok.extern.slf4j.Slf4j;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.MethodCall;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+import net.bytebuddy.matcher.ElementMatchers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 生成HandlerInvoker
+ * 使用ByteBuddy为每个Controller方法生成一个HandlerInvoker实现类，生成的类和Controller在同一个包下，
+ * 可以直接调用包级可见的方法；private方法无法从其他类直接调用，退化为MethodHandle调用。
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+@Slf4j
+public class HandlerInvokerFactory {
+
+    static final ByteBuddy BYTE_BUDDY = new ByteBuddy();
+
+    static final AtomicInteger COUNTER = new AtomicInteger();
+
+    /**
+     * 为Controller方法创建调用器
+     *
+     * @param method Controller方法
+     * @throws ServletException 无法生成调用器
+     */
+    public static HandlerInvoker create(Method method) throws ServletException {
+        try {
+            if (Modifier.isPrivate(method.getModifiers())) {
+                return createMethodHandleInvoker(method);
+            }
+            return createBytecodeInvoker(method);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new ServletException("Cannot create invoker for method: " + method, e);
+        }
+    }
+
+    /**
+     * 生成的代码等价于：
+     * <code>
+     * return ((Controller) controller).method((P1) arguments[0], (P2) arguments[1]);
+     * </code>
+     */
+    static HandlerInvoker createBytecodeInvoker(Method method) throws ReflectiveOperationException {
+        Class<?> declaringClass = method.getDeclaringClass();
+        String name = declaringClass.getName() + "$$SummerInvoker$" + method.getName() + "$" + COUNTER.incrementAndGet();
+        MethodCall call = MethodCall.invoke(method).onArgument(0);
+        if (method.getParameterCount() > 0) {
+            call = call.withArgumentArrayElements(1, method.getParameterCount());
+        }
+        Class<? extends HandlerInvoker> invokerClass = BYTE_BUDDY
+                .subclass(HandlerInvoker.class)
+                .name(name)
+                .method(ElementMatchers.named("invoke"))
+                //运行时强转入参、拆装箱基本类型，void方法返回null
+                .intercept(call.withAssigner(Assigner.DEFAULT, Assigner.Typing.DYNAMIC))
+                .make()
+                //定义到Controller所在的包和类加载器中
+                .load(declaringClass.getClassLoader(), ClassLoadingStrategy.UsingLookup.of(
+                        MethodHandles.privateLookupIn(declaringClass, MethodHandles.lookup())))
+                .getLoaded();
+        log.debug("generate invoker {} for method {}", name, method);
+        return invokerClass.getConstructor().newInstance();
+    }
+
+    static HandlerInvoker createMethodHandleInvoker(Method method) throws ReflectiveOperationException {
+        int count = method.getParameterCount();
+        MethodHandle handle = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup())
+                .unreflect(method)
+                .asType(MethodType.genericMethodType(count + 1))
+                .asSpreader(Object[].class, count);
+        return (controller, arguments) -> {
+            try {
+                return handle.invokeExact(controller, arguments);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new ServerErrorException(t);
+            }
+        };
+    }
+}
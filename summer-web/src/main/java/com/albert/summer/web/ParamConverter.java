@@ -0,0 +1,25 @@
+package com.albert.summer.web;
+
+/**
+ * 自定义参数类型转换器
+ * 实现该接口并注册为Bean，@PathVariable和@RequestParam即可使用对应的参数类型
+ *
+ * @param <T> 转换后的类型
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public interface ParamConverter<T> {
+
+    /**
+     * 支持的参数类型
+     */
+    Class<T> getType();
+
+    /**
+     * 把请求中的字符串转换为参数类型
+     *
+     * @param value 请求中的值
+     */
+    T convert(String value);
+
+}
@@ -0,0 +1,127 @@
+package com.albert.summer.web;
+
+import com.albert.summer.exception.ServiceUnavailableException;
+import com.albert.summer.property.PropertyResolver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * &#64;Coalesce的合并执行（single-flight）
+ * 第一个请求执行方法，执行期间到达的相同key的请求等待同一个结果，异常也一起抛出
+ * 等待超时的请求返回503，方法一直不返回时不会占住所有等待的线程
+ * <p>
+ * 配置：
+ * summer.web.coalesce.timeout: 等待其他请求结果的超时时间（毫秒），0表示不限制，默认30000
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+@Slf4j
+public class RequestCoalescer {
+
+    /**
+     * key -> 执行中的调用
+     */
+    final Map<String, CompletableFuture<ResponseCacheStore.CachedResponse>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * URL模板 -> 合并统计
+     */
+    final Map<String, CoalesceStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * 等待其他请求结果的超时时间（毫秒）
+     */
+    long timeout = 30_000;
+
+    public RequestCoalescer() {
+    }
+
+    public RequestCoalescer(PropertyResolver propertyResolver) {
+        this.timeout = propertyResolver.getProperty("${summer.web.coalesce.timeout:30000}", int.class);
+    }
+
+    /**
+     * @param route 统计使用的路由名
+     * @param key   相同key的请求合并
+     * @param call  实际执行方法并序列化结果
+     */
+    ResponseCacheStore.CachedResponse execute(String route, String key, Callable<ResponseCacheStore.CachedResponse> call) throws Exception {
+        CoalesceStats routeStats = this.stats.computeIfAbsent(route, r -> new CoalesceStats());
+        CompletableFuture<ResponseCacheStore.CachedResponse> future = new CompletableFuture<>();
+        CompletableFuture<ResponseCacheStore.CachedResponse> existing = this.inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            routeStats.merged.increment();
+            try {
+                return this.timeout > 0 ? existing.get(this.timeout, TimeUnit.MILLISECONDS) : existing.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            } catch (TimeoutException e) {
+                routeStats.timeouts.increment();
+                throw new ServiceUnavailableException("Coalesced request timeout: " + route);
+            }
+        }
+        routeStats.invocations.increment();
+        try {
+            ResponseCacheStore.CachedResponse result = call.call();
+            future.complete(result);
+            return result;
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            this.inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 按URL模板返回合并统计
+     */
+    public Map<String, CoalesceStats> getStats() {
+        return Collections.unmodifiableMap(this.stats);
+    }
+
+    public static final class CoalesceStats {
+
+        final LongAdder invocations = new LongAdder();
+
+        final LongAdder merged = new LongAdder();
+
+        final LongAdder timeouts = new LongAdder();
+
+        /**
+         * 实际执行方法的次数
+         */
+        public long getInvocations() {
+            return this.invocations.sum();
+        }
+
+        /**
+         * 等待其他请求结果、没有执行方法的次数
+         */
+        public long getMergedCalls() {
+            return this.merged.sum();
+        }
+
+        /**
+         * 等待其他请求结果超时的次数
+         */
+        public long getTimeouts() {
+            return this.timeouts.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "CoalesceStats{invocations=" + getInvocations() + ", merged=" + getMergedCalls() + ", timeouts=" + getTimeouts() + "}";
+        }
+    }
+}
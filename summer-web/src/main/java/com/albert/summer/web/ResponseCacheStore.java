@@ -0,0 +1,165 @@
+package com.albert.summer.web;
+
+import com.albert.summer.property.PropertyResolver;
+import com.albert.summer.web.utils.WebUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * &#64;ResponseCache的缓存，保存序列化后的响应体
+ * 1.超过TTL的条目在读取或淘汰时删除
+ * 2.总大小超过上限时先删除过期条目，再按访问次数淘汰（LFU），淘汰后访问次数减半，避免曾经的热点一直占用缓存
+ * <p>
+ * 配置：
+ * summer.web.response-cache.max-size: 缓存总大小，默认32MB
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+@Slf4j
+public class ResponseCacheStore {
+
+    /**
+     * 每个条目除响应体外的估算开销
+     */
+    static final int ENTRY_OVERHEAD = 128;
+
+    long maxSize = 32 * 1024 * 1024;
+
+    final Map<String, CachedResponse> cache = new ConcurrentHashMap<>();
+
+    final AtomicLong size = new AtomicLong();
+
+    /**
+     * 同一时间只有一个线程执行淘汰
+     */
+    final AtomicBoolean evicting = new AtomicBoolean();
+
+    public ResponseCacheStore() {
+    }
+
+    public ResponseCacheStore(PropertyResolver propertyResolver) {
+        this.maxSize = WebUtils.parseSize(propertyResolver.getProperty("${summer.web.response-cache.max-size:32MB}"));
+    }
+
+    /**
+     * @return 未命中或已过期时返回null
+     */
+    CachedResponse get(String key) {
+        CachedResponse cached = this.cache.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.isExpired(System.currentTimeMillis())) {
+            remove(key, cached);
+            return null;
+        }
+        cached.frequency.incrementAndGet();
+        return cached;
+    }
+
+    CachedResponse put(String key, byte[] body, String contentType, long ttl) {
+        CachedResponse cached = new CachedResponse(key, body, contentType, System.currentTimeMillis() + ttl);
+        if (cached.size > this.maxSize) {
+            //超过缓存总大小，只返回不缓存
+            return cached;
+        }
+        CachedResponse old = this.cache.put(key, cached);
+        this.size.addAndGet(cached.size - (old == null ? 0 : old.size));
+        if (this.size.get() > this.maxSize) {
+            evict();
+        }
+        return cached;
+    }
+
+    void remove(String key, CachedResponse cached) {
+        if (this.cache.remove(key, cached)) {
+            this.size.addAndGet(-cached.size);
+        }
+    }
+
+    /**
+     * 淘汰到总大小的90%以下，避免每次写入都触发
+     */
+    void evict() {
+        if (!this.evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            List<CachedResponse> entries = new ArrayList<>(this.cache.size());
+            for (CachedResponse cached : this.cache.values()) {
+                if (cached.isExpired(now)) {
+                    remove(cached.key, cached);
+                } else {
+                    entries.add(cached);
+                }
+            }
+            long target = this.maxSize / 10 * 9;
+            if (this.size.get() > target) {
+                entries.sort(Comparator.comparingInt(cached -> cached.frequency.get()));
+                int evicted = 0;
+                for (CachedResponse cached : entries) {
+                    if (this.size.get() <= target) {
+                        break;
+                    }
+                    remove(cached.key, cached);
+                    evicted++;
+                }
+                log.debug("evict {} cached responses, cache size {} bytes.", evicted, this.size.get());
+            }
+            for (CachedResponse cached : this.cache.values()) {
+                cached.frequency.getAndUpdate(f -> f >> 1);
+            }
+        } finally {
+            this.evicting.set(false);
+        }
+    }
+
+    static final class CachedResponse {
+
+        final String key;
+
+        final byte[] body;
+
+        final String contentType;
+
+        /**
+         * 按响应体计算的强ETag
+         */
+        final String etag;
+
+        final long expiresAt;
+
+        final long size;
+
+        /**
+         * 访问次数
+         */
+        final AtomicInteger frequency = new AtomicInteger();
+
+        CachedResponse(String key, byte[] body, String contentType, long expiresAt) {
+            this.key = key;
+            this.body = body;
+            this.contentType = contentType;
+            this.expiresAt = expiresAt;
+            this.size = body.length + key.length() * 2L + ENTRY_OVERHEAD;
+            CRC32C crc = new CRC32C();
+            crc.update(body);
+            this.etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(body.length) + "\"";
+        }
+
+        boolean isExpired(long now) {
+            return now >= this.expiresAt;
+        }
+    }
+}
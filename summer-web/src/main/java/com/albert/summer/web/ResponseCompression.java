@@ -0,0 +1,109 @@
+package com.albert.summer.web;
+
+import com.albert.summer.property.PropertyResolver;
+import com.albert.summer.web.utils.WebUtils;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * gzip压缩配置
+ * <p>
+ * 配置：
+ * summer.web.compression.enabled: 是否启用，默认true，只有请求头Accept-Encoding包含gzip时才压缩
+ * summer.web.compression.min-size: 响应体超过该大小才压缩，默认2KB
+ * summer.web.compression.excluded-mime-types: 不压缩的MIME类型，逗号分隔，以/结尾时按前缀匹配，默认为图片、音视频和压缩包等已压缩的类型
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class ResponseCompression {
+
+    static final String DEFAULT_EXCLUDED_MIME_TYPES = "image/,video/,audio/,font/woff,font/woff2,application/zip,application/gzip,application/x-gzip,"
+            + "application/x-7z-compressed,application/x-rar-compressed,application/pdf,application/octet-stream,text/event-stream";
+
+    boolean enabled = true;
+
+    long minSize = 2 * 1024;
+
+    String[] excludedMimeTypes = DEFAULT_EXCLUDED_MIME_TYPES.split(",");
+
+    public ResponseCompression() {
+    }
+
+    public ResponseCompression(PropertyResolver propertyResolver) {
+        this.enabled = propertyResolver.getProperty("${summer.web.compression.enabled:true}", boolean.class);
+        this.minSize = WebUtils.parseSize(propertyResolver.getProperty("${summer.web.compression.min-size:2KB}"));
+        this.excludedMimeTypes = Arrays.stream(propertyResolver.getProperty("${summer.web.compression.excluded-mime-types:" + DEFAULT_EXCLUDED_MIME_TYPES + "}").split(","))
+                .map(String::trim).filter(s -> !s.isEmpty()).toArray(String[]::new);
+    }
+
+    /**
+     * 客户端是否接受gzip，q=0表示拒绝
+     */
+    boolean accepts(HttpServletRequest req) {
+        if (!this.enabled) {
+            return false;
+        }
+        Enumeration<String> headers = req.getHeaders("Accept-Encoding");
+        if (headers == null) {
+            return false;
+        }
+        while (headers.hasMoreElements()) {
+            for (String coding : headers.nextElement().split(",")) {
+                int n = coding.indexOf(';');
+                String name = (n >= 0 ? coding.substring(0, n) : coding).trim();
+                if (name.equalsIgnoreCase("gzip") || name.equals("*")) {
+                    return n < 0 || !isZeroQuality(coding.substring(n + 1));
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 已压缩的类型再压缩只会浪费CPU
+     */
+    boolean isCompressible(String contentType) {
+        if (!this.enabled || contentType == null) {
+            return false;
+        }
+        int n = contentType.indexOf(';');
+        String mime = (n >= 0 ? contentType.substring(0, n) : contentType).trim().toLowerCase();
+        for (String excluded : this.excludedMimeTypes) {
+            if (excluded.endsWith("/") ? mime.startsWith(excluded) : mime.equals(excluded)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isZeroQuality(String params) {
+        for (String param : params.split(";")) {
+            param = param.trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2).trim()) <= 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,354 @@
+package com.albert.summer.web;
+
+import com.albert.summer.annotation.RequestMethod;
+import com.albert.summer.web.utils.PathTemplate;
+import jakarta.servlet.ServletException;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * URL路由树（radix tree）
+ * 在DispatcherServlet.init()阶段一次性构建，请求时按URL逐字符匹配，不使用正则，查找耗时只和URL长度相关
+ * <p>
+ * 支持的URL模板：
+ * 1.静态段：/api/users
+ * 2.变量段：/users/{id}，也可以带前缀/后缀：/files/file-{name}.json，一段内可以有多个变量：/files/{name}-{version}.json
+ * 3.单段通配：/users/*，匹配一个路径段，不提取变量
+ * 4.多段通配：/static/**，匹配剩余所有路径，只能出现在末尾
+ * <p>
+ * 匹配优先级：静态段 > 变量段 > 单段通配 > 多段通配
+ * <p>
+ * 每个叶子节点按RequestMethod保存处理器，一次查找同时确定URL和请求方法；
+ * 注册GET时同时注册到HEAD（除非显式注册了HEAD）。
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class Router {
+
+    private static final Node[] EMPTY = new Node[0];
+
+    private static final RequestMethod[] METHODS = RequestMethod.values();
+
+    /**
+     * 根节点
+     */
+    final Node root = new Node("");
+
+    /**
+     * 所有路由中路径变量的最大个数，决定匹配时记录变量位置的数组大小
+     */
+    int maxVariables = 0;
+
+    /**
+     * 按处理器的请求方法和URL模板注册
+     *
+     * @param dispatcher 处理器
+     * @throws ServletException 重复注册
+     */
+    public void add(Dispatcher dispatcher) throws ServletException {
+        PathTemplate template = dispatcher.pathTemplate;
+        Node node = this.root;
+        for (PathTemplate.Part part : template.getParts()) {
+            node = switch (part.type()) {
+                case STATIC -> node.addStatic(part.text());
+                case VARIABLE -> node.addVariable(part.text(), false);
+                case INNER_VARIABLE -> node.addVariable(part.text(), true);
+                case WILDCARD -> node.wildcard == null ? (node.wildcard = new Node("*")) : node.wildcard;
+                case CATCH_ALL -> node.catchAll == null ? (node.catchAll = new Node("**")) : node.catchAll;
+            };
+        }
+        if (node.dispatchers == null) {
+            node.dispatchers = new Dispatcher[METHODS.length];
+        }
+        Dispatcher[] dispatchers = node.dispatchers;
+        RequestMethod method = dispatcher.requestMethod;
+        int get = RequestMethod.GET.ordinal();
+        int head = RequestMethod.HEAD.ordinal();
+        Dispatcher exist = dispatchers[method.ordinal()];
+        //HEAD槽位上自动注册的GET处理器可以被显式的HEAD覆盖
+        if (exist != null && !(method == RequestMethod.HEAD && exist == dispatchers[get])) {
+            throw new ServletException("Duplicate URL mapping: " + method + " " + template);
+        }
+        dispatchers[method.ordinal()] = dispatcher;
+        if (method == RequestMethod.GET && dispatchers[head] == null) {
+            dispatchers[head] = dispatcher;
+        }
+        this.maxVariables = Math.max(this.maxVariables, template.getVariableCount());
+    }
+
+    /**
+     * 根据请求方法和URL查找处理器
+     *
+     * @param method 请求方法
+     * @param url    请求URL
+     * @return 未匹配返回null
+     */
+    public Match match(RequestMethod method, String url) {
+        return match(method.ordinal(), url);
+    }
+
+    /**
+     * 根据URL查找处理器，不区分请求方法
+     *
+     * @param url 请求URL
+     * @return 未匹配返回null
+     */
+    public Match match(String url) {
+        return match(-1, url);
+    }
+
+    Match match(int method, String url) {
+        int[] captures = this.maxVariables == 0 ? null : new int[this.maxVariables * 2];
+        Node node = find(this.root, url, 0, 0, captures, method);
+        if (node == null) {
+            return null;
+        }
+        Dispatcher dispatcher = method >= 0 ? node.dispatchers[method] : first(node.dispatchers);
+        return new Match(dispatcher, url, captures);
+    }
+
+    /**
+     * URL支持的请求方法，用于OPTIONS和405响应，URL不存在返回空集合
+     *
+     * @param url 请求URL
+     */
+    public Set<RequestMethod> allowedMethods(String url) {
+        int[] captures = this.maxVariables == 0 ? null : new int[this.maxVariables * 2];
+        Node node = find(this.root, url, 0, 0, captures, -1);
+        Set<RequestMethod> methods = EnumSet.noneOf(RequestMethod.class);
+        if (node != null) {
+            for (RequestMethod method : METHODS) {
+                if (node.dispatchers[method.ordinal()] != null) {
+                    methods.add(method);
+                }
+            }
+            methods.add(RequestMethod.OPTIONS);
+        }
+        return methods;
+    }
+
+    /**
+     * 从node开始匹配url[pos...]，node自身的label已经匹配完成
+     *
+     * @param node     当前节点
+     * @param url      请求URL
+     * @param pos      当前匹配位置
+     * @param variable 已匹配的变量个数
+     * @param captures 记录变量在url中的起止位置
+     * @param method   请求方法下标，小于0时匹配任意方法
+     * @return 匹配上的叶子节点
+     */
+    Node find(Node node, String url, int pos, int variable, int[] captures, int method) {
+        int length = url.length();
+        if (pos == length && node.accept(method)) {
+            return node;
+        }
+        //静态段，同一个首字符最多只有一个子节点
+        if (pos < length) {
+            char c = url.charAt(pos);
+            for (Node child : node.children) {
+                if (child.label.charAt(0) == c) {
+                    if (url.startsWith(child.label, pos)) {
+                        Node found = find(child, url, pos + child.label.length(), variable, captures, method);
+                        if (found != null) {
+                            return found;
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+        //变量段和单段通配，匹配到下一个'/'为止
+        if (node.variables.length > 0 || node.wildcard != null) {
+            int end = url.indexOf('/', pos);
+            if (end < 0) {
+                end = length;
+            }
+            for (Node child : node.variables) {
+                if (child.inner) {
+                    //段内变量：从最后一个分隔符开始尝试，与正则的贪婪匹配一致
+                    int separator = child.label.length();
+                    for (int k = url.lastIndexOf(child.label, end - separator); k >= pos; k = url.lastIndexOf(child.label, k - 1)) {
+                        captures[variable * 2] = pos;
+                        captures[variable * 2 + 1] = k;
+                        Node found = find(child, url, k + separator, variable + 1, captures, method);
+                        if (found != null) {
+                            return found;
+                        }
+                    }
+                    continue;
+                }
+                int valueEnd = end - child.label.length();
+                if (valueEnd >= pos && url.startsWith(child.label, valueEnd)) {
+                    captures[variable * 2] = pos;
+                    captures[variable * 2 + 1] = valueEnd;
+                    Node found = find(child, url, end, variable + 1, captures, method);
+                    if (found != null) {
+                        return found;
+                    }
+                }
+            }
+            if (node.wildcard != null) {
+                Node found = find(node.wildcard, url, end, variable, captures, method);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        //多段通配，匹配剩余所有路径
+        if (node.catchAll != null && node.catchAll.accept(method)) {
+            return node.catchAll;
+        }
+        return null;
+    }
+
+    static Dispatcher first(Dispatcher[] dispatchers) {
+        for (Dispatcher dispatcher : dispatchers) {
+            if (dispatcher != null) {
+                return dispatcher;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 路由树节点
+     * 静态节点的label为路径文本，变量节点的label为变量后缀，段内变量节点的label为到下一个变量之间的分隔符
+     */
+    static final class Node {
+
+        String label;
+
+        /**
+         * 静态子节点，首字符互不相同
+         */
+        Node[] children = EMPTY;
+
+        /**
+         * 变量子节点，后缀长的优先匹配
+         */
+        Node[] variables = EMPTY;
+
+        Node wildcard;
+
+        Node catchAll;
+
+        /**
+         * 是否为段内变量节点
+         */
+        boolean inner;
+
+        /**
+         * 按RequestMethod.ordinal()保存的处理器，非叶子节点为null
+         */
+        Dispatcher[] dispatchers;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        boolean accept(int method) {
+            return this.dispatchers != null && (method < 0 || this.dispatchers[method] != null);
+        }
+
+        Node addStatic(String text) {
+            Node node = this;
+            while (!text.isEmpty()) {
+                Node child = null;
+                for (Node n : node.children) {
+                    if (n.label.charAt(0) == text.charAt(0)) {
+                        child = n;
+                        break;
+                    }
+                }
+                if (child == null) {
+                    child = new Node(text);
+                    node.children = append(node.children, child);
+                    return child;
+                }
+                int common = 0;
+                int max = Math.min(child.label.length(), text.length());
+                while (common < max && child.label.charAt(common) == text.charAt(common)) {
+                    common++;
+                }
+                if (common < child.label.length()) {
+                    child.split(common);
+                }
+                node = child;
+                text = text.substring(common);
+            }
+            return node;
+        }
+
+        Node addVariable(String suffix, boolean inner) {
+            for (Node n : this.variables) {
+                if (n.label.equals(suffix) && n.inner == inner) {
+                    return n;
+                }
+            }
+            Node child = new Node(suffix);
+            child.inner = inner;
+            this.variables = append(this.variables, child);
+            Arrays.sort(this.variables, (a, b) -> Integer.compare(b.label.length(), a.label.length()));
+            return child;
+        }
+
+        /**
+         * 在position处拆分当前节点，后半部分下沉为子节点
+         */
+        void split(int position) {
+            Node tail = new Node(this.label.substring(position));
+            tail.children = this.children;
+            tail.variables = this.variables;
+            tail.wildcard = this.wildcard;
+            tail.catchAll = this.catchAll;
+            tail.dispatchers = this.dispatchers;
+            this.label = this.label.substring(0, position);
+            this.children = new Node[]{tail};
+            this.variables = EMPTY;
+            this.wildcard = null;
+            this.catchAll = null;
+            this.dispatchers = null;
+        }
+
+        static Node[] append(Node[] nodes, Node node) {
+            Node[] copy = Arrays.copyOf(nodes, nodes.length + 1);
+            copy[nodes.length] = node;
+            return copy;
+        }
+    }
+
+    /**
+     * 路由匹配结果
+     *
+     * @param dispatcher 处理器
+     * @param url        请求URL
+     * @param captures   路径变量在url中的起止位置
+     */
+    public record Match(Dispatcher dispatcher, String url, int[] captures) {
+
+        /**
+         * 按变量在URL模板中的顺序获取变量值
+         */
+        public String getVariable(int index) {
+            return this.url.substring(this.captures[index * 2], this.captures[index * 2 + 1]);
+        }
+
+        /**
+         * 直接从URL中解析int，不创建子串
+         */
+        public int getIntVariable(int index) {
+            return Integer.parseInt(this.url, this.captures[index * 2], this.captures[index * 2 + 1], 10);
+        }
+
+        /**
+         * 直接从URL中解析long，不创建子串
+         */
+        public long getLongVariable(int index) {
+            return Long.parseLong(this.url, this.captures[index * 2], this.captures[index * 2 + 1], 10);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.albert.summer.web;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Server-Sent Events
+ * Controller返回SseEmitter后立即释放容器线程，由其他线程调用send()推送事件，complete()结束响应
+ * send()在调用线程上写出并flush，客户端读得慢时会阻塞；客户端断开后send()抛出IOException
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class SseEmitter {
+
+    /**
+     * 超时时间（毫秒），0表示不超时
+     */
+    final long timeout;
+
+    /**
+     * 响应结束时完成，不论是主动结束、超时还是客户端断开
+     */
+    final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    /**
+     * 绑定响应之前发送的事件
+     */
+    final List<Object[]> earlyEvents = new ArrayList<>();
+
+    /**
+     * 不使用synchronized，send()阻塞在socket写入时虚拟线程不会占住载体线程
+     */
+    final ReentrantLock lock = new ReentrantLock();
+
+    StreamingResponseWriter writer;
+
+    boolean completed;
+
+    Throwable failure;
+
+    public SseEmitter() {
+        this(0);
+    }
+
+    /**
+     * @param timeout 超时时间（毫秒），0表示不超时，超时后正常结束响应，浏览器的EventSource会自动重连
+     */
+    public SseEmitter(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public void send(Object data) throws IOException {
+        send(null, null, data);
+    }
+
+    public void send(String name, Object data) throws IOException {
+        send(null, name, data);
+    }
+
+    /**
+     * 发送一个事件，String原样写出，其他对象序列化为JSON
+     *
+     * @param id   事件id，可以为null
+     * @param name 事件名，可以为null
+     * @throws IllegalStateException 已经结束
+     */
+    public void send(String id, String name, Object data) throws IOException {
+        this.lock.lock();
+        try {
+            if (this.completed) {
+                throw new IllegalStateException("SseEmitter already completed.");
+            }
+            if (this.writer == null) {
+                this.earlyEvents.add(new Object[]{id, name, data});
+            } else {
+                this.writer.writeEvent(id, name, data);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void complete() {
+        completeWithError(null);
+    }
+
+    public void completeWithError(Throwable error) {
+        this.lock.lock();
+        try {
+            if (this.completed) {
+                return;
+            }
+            this.completed = true;
+            this.failure = error;
+            if (this.writer != null) {
+                this.writer.close(error);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 响应结束时回调，生产者可以据此停止推送
+     */
+    public void onCompletion(Runnable callback) {
+        this.completion.whenComplete((v, e) -> callback.run());
+    }
+
+    public boolean isComplete() {
+        return this.completion.isDone();
+    }
+
+    /**
+     * 绑定响应，写出之前发送的事件
+     */
+    void bind(StreamingResponseWriter writer) {
+        this.lock.lock();
+        try {
+            this.writer = writer;
+            //回调中不能获取SseEmitter的锁，send()持有锁时可能正在等待writer的锁
+            writer.done.whenComplete((v, e) -> this.completion.complete(null));
+            try {
+                for (Object[] event : this.earlyEvents) {
+                    writer.writeEvent((String) event[0], (String) event[1], event[2]);
+                }
+            } catch (IOException e) {
+                this.completed = true;
+                return;
+            }
+            this.earlyEvents.clear();
+            if (this.completed) {
+                writer.close(this.failure);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package com.albert.summer.web;
+
+import com.albert.summer.property.PropertyResolver;
+import com.albert.summer.web.utils.WebUtils;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 静态资源处理
+ * 1.ETag、Last-Modified，If-None-Match/If-Modified-Since命中时返回304
+ * 2.Range请求返回206，只支持单个区间，多个区间时返回整个文件
+ * 3.小文件缓存在内存中，总大小有上限，超过时淘汰最久未访问的文件
+ * 4.大文件在Tomcat支持时通过sendfile零拷贝发送
+ * 5.按扩展名缓存MIME类型
+ * 6.客户端接受gzip时优先返回同名的.gz文件，开启预压缩时返回内存中压缩好的内容
+ * <p>
+ * 配置：
+ * summer.web.static.cache-control: Cache-Control响应头，默认no-cache（每次都用ETag校验）
+ * summer.web.static.cache-max-size: 内存缓存总大小，默认16MB
+ * summer.web.static.cache-file-max-size: 可以缓存的单个文件大小，默认256KB
+ * summer.web.static.sendfile-min-size: 使用sendfile的最小文件大小，默认48KB
+ * summer.web.static.precompress: 是否在启动时压缩静态资源目录下可以缓存的文件，默认false
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+@Slf4j
+public class StaticResourceHandler {
+
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    static final String DEFAULT_MIME = "application/octet-stream";
+
+    String cacheControl = "no-cache";
+
+    long cacheMaxSize = 16 * 1024 * 1024;
+
+    long cacheFileMaxSize = 256 * 1024;
+
+    long sendfileMinSize = 48 * 1024;
+
+    boolean precompress = false;
+
+    ResponseCompression compression = new ResponseCompression();
+
+    /**
+     * url -> 缓存的小文件
+     */
+    final Map<String, Resource> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 缓存的总字节数
+     */
+    final AtomicLong cacheSize = new AtomicLong();
+
+    /**
+     * 扩展名 -> MIME类型
+     */
+    final Map<String, String> mimeTypes = new ConcurrentHashMap<>();
+
+    public StaticResourceHandler() {
+    }
+
+    public StaticResourceHandler(PropertyResolver propertyResolver) {
+        this(propertyResolver, new ResponseCompression(propertyResolver));
+    }
+
+    public StaticResourceHandler(PropertyResolver propertyResolver, ResponseCompression compression) {
+        this.compression = compression;
+        this.precompress = propertyResolver.getProperty("${summer.web.static.precompress:false}", boolean.class);
+        this.cacheControl = propertyResolver.getProperty("${summer.web.static.cache-control:no-cache}");
+        this.cacheMaxSize = WebUtils.parseSize(propertyResolver.getProperty("${summer.web.static.cache-max-size:16MB}"));
+        this.cacheFileMaxSize = WebUtils.parseSize(propertyResolver.getProperty("${summer.web.static.cache-file-max-size:256KB}"));
+        this.sendfileMinSize = WebUtils.parseSize(propertyResolver.getProperty("${summer.web.static.sendfile-min-size:48KB}"));
+    }
+
+    /**
+     * 处理静态资源请求
+     *
+     * @param url  资源路径
+     * @param req
+     * @param resp
+     * @throws IOException
+     */
+    public void handle(String url, HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Resource resource = getResource(url, req.getServletContext());
+        if (resource == null) {
+            resp.sendError(404, "Not Found");
+            return;
+        }
+        String mime = resource.mime;
+        String bodyUrl = url;
+        if (this.compression.isCompressible(mime)) {
+            resp.addHeader("Vary", "Accept-Encoding");
+            if (this.compression.accepts(req)) {
+                //ETag、Range等都针对压缩后的内容
+                Resource gzip = getGzipResource(url, resource, req.getServletContext());
+                if (gzip != null) {
+                    resource = gzip;
+                    bodyUrl = url + ".gz";
+                    resp.setHeader("Content-Encoding", "gzip");
+                }
+            }
+        }
+        resp.setHeader("ETag", resource.etag);
+        resp.setDateHeader("Last-Modified", resource.lastModified);
+        resp.setHeader("Accept-Ranges", "bytes");
+        if (this.cacheControl != null && !this.cacheControl.isEmpty()) {
+            resp.setHeader("Cache-Control", this.cacheControl);
+        }
+        if (isNotModified(resource, req)) {
+            resp.setStatus(304);
+            return;
+        }
+        resp.setContentType(mime);
+        long start = 0;
+        long end = resource.length - 1;
+        long[] range = parseRange(req, resource);
+        if (range != null) {
+            if (range.length == 0) {
+                resp.setHeader("Content-Range", "bytes */" + resource.length);
+                resp.sendError(416, "Range Not Satisfiable");
+                return;
+            }
+            start = range[0];
+            end = range[1];
+            resp.setStatus(206);
+            resp.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + resource.length);
+        }
+        long length = end - start + 1;
+        resp.setContentLengthLong(length);
+        if ("HEAD".equals(req.getMethod()) || length == 0) {
+            return;
+        }
+        if (resource.content != null) {
+            ServletOutputStream output = resp.getOutputStream();
+            output.write(resource.content, (int) start, (int) length);
+            output.flush();
+        } else if (resource.path != null && length >= this.sendfileMinSize && Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORT))) {
+            //由Tomcat在请求处理完成后通过sendfile发送，不经过用户态缓冲区
+            req.setAttribute(SENDFILE_FILENAME, resource.path.toString());
+            req.setAttribute(SENDFILE_START, start);
+            req.setAttribute(SENDFILE_END, end + 1);
+        } else {
+            try (InputStream input = resource.path != null ? Files.newInputStream(resource.path) : req.getServletContext().getResourceAsStream(bodyUrl)) {
+                if (input == null) {
+                    resp.sendError(404, "Not Found");
+                    return;
+                }
+                input.skipNBytes(start);
+                ServletOutputStream output = resp.getOutputStream();
+                copy(input, output, length);
+                output.flush();
+            }
+        }
+    }
+
+    /**
+     * 查找资源，小文件命中缓存时只检查文件的修改时间和大小
+     */
+    Resource getResource(String url, ServletContext ctx) throws IOException {
+        Resource cached = this.cache.get(url);
+        if (cached != null) {
+            if (cached.isValid()) {
+                cached.lastAccess = System.nanoTime();
+                return cached;
+            }
+            evict(url, cached);
+        }
+        Resource resource = loadResource(url, ctx);
+        if (resource != null && resource.length <= this.cacheFileMaxSize && resource.length <= this.cacheMaxSize) {
+            resource.content = readContent(url, resource, ctx);
+            if (resource.content != null) {
+                resource.lastAccess = System.nanoTime();
+                if (this.cache.putIfAbsent(url, resource) == null) {
+                    this.cacheSize.addAndGet(resource.length);
+                    shrink();
+                }
+            }
+        }
+        return resource;
+    }
+
+    /**
+     * 查找gzip压缩后的资源：
+     * 1.已生成的压缩内容
+     * 2.同名的.gz文件
+     * 3.开启预压缩时，压缩已缓存的文件，压缩后和原文件一起缓存和淘汰
+     *
+     * @return 没有可用的压缩内容时返回null
+     */
+    Resource getGzipResource(String url, Resource resource, ServletContext ctx) throws IOException {
+        Resource gzip = resource.gzip;
+        if (gzip != null) {
+            return gzip;
+        }
+        if (!resource.noGzipFile) {
+            gzip = getResource(url + ".gz", ctx);
+            if (gzip != null) {
+                return gzip;
+            }
+            resource.noGzipFile = true;
+        }
+        if (!this.precompress || resource.content == null || resource.length < this.compression.minSize || resource.incompressible) {
+            return null;
+        }
+        this.cache.computeIfPresent(url, (key, cached) -> {
+            if (cached == resource && cached.gzip == null) {
+                byte[] data = ResponseCompression.gzip(cached.content);
+                if (data.length < cached.length) {
+                    Resource compressed = new Resource(null, data.length, cached.lastModified, cached.mime);
+                    compressed.content = data;
+                    cached.gzip = compressed;
+                    this.cacheSize.addAndGet(data.length);
+                } else {
+                    cached.incompressible = true;
+                }
+            }
+            return cached;
+        });
+        shrink();
+        return resource.gzip;
+    }
+
+    /**
+     * 压缩目录下所有可以缓存的文件
+     *
+     * @param ctx
+     * @param dir 以/结尾的目录
+     */
+    public void precompress(ServletContext ctx, String dir) {
+        long start = System.currentTimeMillis();
+        int count = precompressDirectory(ctx, dir);
+        log.info("precompress {} static resources under {} in {} ms, cache size {} bytes.", count, dir, System.currentTimeMillis() - start, this.cacheSize.get());
+    }
+
+    int precompressDirectory(ServletContext ctx, String dir) {
+        Set<String> paths = ctx.getResourcePaths(dir);
+        if (paths == null) {
+            return 0;
+        }
+        int count = 0;
+        for (String path : paths) {
+            if (path.endsWith("/")) {
+                count += precompressDirectory(ctx, path);
+            } else if (!path.endsWith(".gz") && this.compression.isCompressible(getMimeType(path, ctx))) {
+                try {
+                    Resource resource = getResource(path, ctx);
+                    if (resource != null && getGzipResource(path, resource, ctx) != null) {
+                        count++;
+                    }
+                } catch (IOException e) {
+                    log.warn("precompress static resource failed: " + path, e);
+                }
+            }
+        }
+        return count;
+    }
+
+    Resource loadResource(String url, ServletContext ctx) throws IOException {
+        String mime = getMimeType(url, ctx);
+        String realPath = ctx.getRealPath(url);
+        if (realPath != null) {
+            Path path = Path.of(realPath);
+            if (Files.isRegularFile(path)) {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                return new Resource(path, attrs.size(), attrs.lastModifiedTime().toMillis(), mime);
+            }
+            if (Files.exists(path)) {
+                //目录
+                return null;
+            }
+        }
+        //资源在jar中等无法获取真实路径的情况
+        URL resourceUrl = ctx.getResource(url);
+        if (resourceUrl == null) {
+            return null;
+        }
+        URLConnection conn = resourceUrl.openConnection();
+        long length = conn.getContentLengthLong();
+        long lastModified = conn.getLastModified();
+        //关闭连接，jar中的资源会占用文件句柄
+        conn.getInputStream().close();
+        return length < 0 ? null : new Resource(null, length, lastModified, mime);
+    }
+
+    byte[] readContent(String url, Resource resource, ServletContext ctx) throws IOException {
+        try (InputStream input = resource.path != null ? Files.newInputStream(resource.path) : ctx.getResourceAsStream(url)) {
+            if (input == null) {
+                return null;
+            }
+            byte[] content = input.readAllBytes();
+            return content.length == resource.length ? content : null;
+        }
+    }
+
+    /**
+     * 超过缓存总大小时，淘汰最久未访问的文件
+     */
+    void shrink() {
+        while (this.cacheSize.get() > this.cacheMaxSize) {
+            Map.Entry<String, Resource> oldest = null;
+            for (Map.Entry<String, Resource> entry : this.cache.entrySet()) {
+                if (oldest == null || entry.getValue().lastAccess < oldest.getValue().lastAccess) {
+                    oldest = entry;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            evict(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    void evict(String url, Resource resource) {
+        if (this.cache.remove(url, resource)) {
+            Resource gzip = resource.gzip;
+            this.cacheSize.addAndGet(-resource.length - (gzip == null ? 0 : gzip.length));
+        }
+    }
+
+    String getMimeType(String url, ServletContext ctx) {
+        int n = url.lastIndexOf('/');
+        String file = n >= 0 ? url.substring(n + 1) : url;
+        int dot = file.lastIndexOf('.');
+        String ext = dot >= 0 ? file.substring(dot + 1).toLowerCase() : "";
+        return this.mimeTypes.computeIfAbsent(ext, e -> {
+            String mime = e.isEmpty() ? null : ctx.getMimeType("file." + e);
+            return mime == null ? DEFAULT_MIME : mime;
+        });
+    }
+
+    /**
+     * If-None-Match优先于If-Modified-Since
+     */
+    boolean isNotModified(Resource resource, HttpServletRequest req) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return matchesEtag(ifNoneMatch, resource.etag);
+        }
+        long ifModifiedSince = getDateHeader(req, "If-Modified-Since");
+        return ifModifiedSince >= 0 && resource.lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * 解析Range请求头
+     *
+     * @return null表示返回整个文件，空数组表示范围无效（416），否则返回[start, end]
+     */
+    long[] parseRange(HttpServletRequest req, Resource resource) {
+        String range = req.getHeader("Range");
+        if (range == null || !range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        //If-Range不匹配时返回整个文件
+        String ifRange = req.getHeader("If-Range");
+        if (ifRange != null) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                //If-Range要求强比较，弱ETag（长度+修改时间）不能保证内容相同，总是返回整个文件
+                if (ifRange.startsWith("W/") || resource.etag.startsWith("W/") || !ifRange.equals(resource.etag)) {
+                    return null;
+                }
+            } else {
+                long date = getDateHeader(req, "If-Range");
+                if (date < 0 || resource.lastModified / 1000 > date / 1000) {
+                    return null;
+                }
+            }
+        }
+        String spec = range.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        long length = resource.length;
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                //最后N个字节
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+            }
+            if (start >= length || start > end) {
+                return new long[0];
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static boolean matchesEtag(String header, String etag) {
+        if (header.trim().equals("*")) {
+            return true;
+        }
+        //弱比较，忽略W/前缀
+        String value = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static long getDateHeader(HttpServletRequest req, String name) {
+        try {
+            return req.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    static void copy(InputStream input, ServletOutputStream output, long length) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (length > 0) {
+            int n = input.read(buffer, 0, (int) Math.min(buffer.length, length));
+            if (n < 0) {
+                break;
+            }
+            output.write(buffer, 0, n);
+            length -= n;
+        }
+    }
+
+    /**
+     * 静态资源
+     */
+    static final class Resource {
+
+        /**
+         * 文件路径，资源在jar中时为null
+         */
+        final Path path;
+
+        final long length;
+
+        final long lastModified;
+
+        final String etag;
+
+        final String mime;
+
+        /**
+         * 缓存的文件内容，大文件为null
+         */
+        byte[] content;
+
+        volatile long lastAccess;
+
+        /**
+         * 预压缩的内容，只在缓存的资源上生成
+         */
+        volatile Resource gzip;
+
+        /**
+         * 已确认没有同名的.gz文件
+         */
+        volatile boolean noGzipFile;
+
+        /**
+         * 压缩后没有变小
+         */
+        volatile boolean incompressible;
+
+        Resource(Path path, long length, long lastModified, String mime) {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.etag = "W/\"" + length + "-" + lastModified + "\"";
+            this.mime = mime;
+        }
+
+        /**
+         * 文件被修改后缓存失效
+         */
+        boolean isValid() {
+            if (this.path == null) {
+                return true;
+            }
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(this.path, BasicFileAttributes.class);
+                return attrs.size() == this.length && attrs.lastModifiedTime().toMillis() == this.lastModified;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+}
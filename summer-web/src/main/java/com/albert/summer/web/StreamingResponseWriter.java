@@ -0,0 +1,238 @@
+package com.albert.summer.web;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 逐条写出流式响应：SSE帧或JSON数组，每条写完立即flush
+ * 写入在调用线程上同步完成，客户端读得慢时生产者被阻塞（背压）；Flow.Publisher每写完一条才request(1)
+ * 所有写入（包括心跳）在同一把锁内完成，帧不会交错；使用ReentrantLock而不是synchronized，
+ * 虚拟线程阻塞在socket写入时不会占住载体线程
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+class StreamingResponseWriter {
+
+    static final byte[] SSE_HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    final HttpServletResponse resp;
+
+    final ServletOutputStream output;
+
+    final ObjectWriter jsonWriter;
+
+    final boolean sse;
+
+    /**
+     * 响应结束时完成，异常结束（客户端断开、生产者出错）时带有异常
+     */
+    final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    /**
+     * 写入、心跳、结束共用一把锁
+     */
+    final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 已写出的元素个数
+     */
+    long count;
+
+    /**
+     * 最近一次写出的时间，心跳只在空闲时发送
+     */
+    volatile long lastWrite = System.nanoTime();
+
+    StreamingResponseWriter(HttpServletResponse resp, ObjectWriter jsonWriter, boolean sse) throws IOException {
+        this.resp = resp;
+        this.output = resp.getOutputStream();
+        this.jsonWriter = jsonWriter;
+        this.sse = sse;
+    }
+
+    /**
+     * 提交响应头，JSON数组先写出[，之后的心跳可以用空白字符
+     */
+    void open() throws IOException {
+        this.lock.lock();
+        try {
+            if (!this.sse) {
+                this.output.write('[');
+            }
+            flush();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    void write(Object data) throws IOException {
+        writeEvent(null, null, data);
+    }
+
+    /**
+     * 写出一条数据，JSON数组忽略id和name
+     *
+     * @throws IllegalStateException 响应已结束
+     * @throws IOException           写出失败，响应随之结束
+     */
+    void writeEvent(String id, String name, Object data) throws IOException {
+        this.lock.lock();
+        try {
+            if (this.done.isDone()) {
+                throw new IllegalStateException("Streaming response already completed.");
+            }
+            try {
+                if (this.sse) {
+                    StringBuilder sb = new StringBuilder(64);
+                    if (id != null) {
+                        sb.append("id: ").append(id).append('\n');
+                    }
+                    if (name != null) {
+                        sb.append("event: ").append(name).append('\n');
+                    }
+                    //多行数据每行一个data字段
+                    String text = data instanceof String s ? s : this.jsonWriter.writeValueAsString(data);
+                    for (String line : text.split("\r?\n", -1)) {
+                        sb.append("data: ").append(line).append('\n');
+                    }
+                    sb.append('\n');
+                    this.output.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+                } else {
+                    if (this.count > 0) {
+                        this.output.write(',');
+                    }
+                    this.jsonWriter.writeValue(this.output, data);
+                }
+                this.count++;
+                flush();
+            } catch (IOException e) {
+                close(e);
+                throw e;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 距上次写出超过interval时发送心跳：SSE为注释行，JSON数组为换行，客户端断开时结束响应
+     */
+    void heartbeat(long intervalNanos) {
+        this.lock.lock();
+        try {
+            if (this.done.isDone() || System.nanoTime() - this.lastWrite < intervalNanos) {
+                return;
+            }
+            try {
+                if (this.sse) {
+                    this.output.write(SSE_HEARTBEAT);
+                } else {
+                    this.output.write('\n');
+                }
+                flush();
+            } catch (IOException e) {
+                close(e);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 结束响应，异常结束时JSON数组不补]，客户端据此识别不完整的响应
+     */
+    void close(Throwable error) {
+        this.lock.lock();
+        try {
+            if (this.done.isDone()) {
+                return;
+            }
+            if (error == null && !this.sse) {
+                try {
+                    this.output.write(']');
+                    flush();
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            if (error == null) {
+                this.done.complete(null);
+            } else {
+                this.done.completeExceptionally(error);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    void flush() throws IOException {
+        this.output.flush();
+        //压缩的响应在flushBuffer()时才确定是否压缩并提交
+        this.resp.flushBuffer();
+        this.lastWrite = System.nanoTime();
+    }
+
+    /**
+     * 在当前线程逐条写出Stream，响应结束后停止读取，最后关闭Stream
+     */
+    void writeAll(Stream<?> stream) {
+        try (stream) {
+            Iterator<?> it = stream.iterator();
+            while (!this.done.isDone() && it.hasNext()) {
+                write(it.next());
+            }
+            close(null);
+        } catch (Exception e) {
+            close(e);
+        }
+    }
+
+    /**
+     * 订阅Flow.Publisher，每次只请求一条，写出后再请求下一条
+     */
+    Flow.Subscriber<Object> subscriber() {
+        return new Flow.Subscriber<>() {
+
+            Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                //客户端断开或超时时取消订阅
+                done.whenComplete((v, e) -> subscription.cancel());
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Object item) {
+                try {
+                    write(item);
+                    this.subscription.request(1);
+                } catch (Exception e) {
+                    this.subscription.cancel();
+                    close(e);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                close(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                close(null);
+            }
+        };
+    }
+}
@@ -28,4 +28,15 @@ public interface ViewResolver {
      */
     void render(String viewName, Map<String, Object> model, HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException;
 
+    /**
+     * 流式渲染，边渲染边输出，默认与render()相同
+     * @param viewName
+     * @param model
+     * @param request
+     * @param response
+     */
+    default void renderStreaming(String viewName, Map<String, Object> model, HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        render(viewName, model, request, response);
+    }
+
 }
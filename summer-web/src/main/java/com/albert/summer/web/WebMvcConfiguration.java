@@ -4,6 +4,7 @@ import com.albert.summer.annotation.Autowired;
 import com.albert.summer.annotation.Bean;
 import com.albert.summer.annotation.Configuration;
 import com.albert.summer.annotation.Value;
+import com.albert.summer.web.utils.WebUtils;
 import jakarta.servlet.ServletContext;
 
 import java.util.Objects;
@@ -36,8 +37,10 @@ public class WebMvcConfiguration {
     @Bean(initMethod = "init")
     ViewResolver viewResolver(@Autowired ServletContext servletContext,
                               @Value("${summer.web.freemarker.template-path:/WEB-INF/templates}") String templatePath,
-                              @Value("${summer.web.freemarker.template-encoding:UTF-8}") String templateEncoding) {
-        return new FreeMarkerViewResolver(servletContext, templatePath, templateEncoding);
+                              @Value("${summer.web.freemarker.template-encoding:UTF-8}") String templateEncoding,
+                              @Value("${summer.web.freemarker.production:false}") boolean production,
+                              @Value("${summer.web.freemarker.flush-interval:8KB}") String flushInterval) {
+        return new FreeMarkerViewResolver(servletContext, templatePath, templateEncoding, production, WebUtils.parseSize(flushInterval));
     }
 
 
@@ -14,6 +14,11 @@ public class ModelAndView {
 
     int status;
 
+    /**
+     * 是否流式渲染
+     */
+    boolean streaming;
+
     public ModelAndView(String viewName) {
         this(viewName, HttpServletResponse.SC_OK, null);
     }
@@ -67,4 +72,15 @@ public class ModelAndView {
     public int getStatus() {
         return this.status;
     }
+
+    public boolean isStreaming() {
+        return this.streaming;
+    }
+
+    /**
+     * 流式渲染时页面头部和内容分段发送，Model中可以放入Stream等按需迭代的数据
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
 }
\ No newline at end of file
@@ -15,6 +15,7 @@ import jakarta.servlet.http.HttpSession;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -30,8 +31,18 @@ public class Param {
 
     public Class<?> classType;
 
+    /**
+     * 带泛型的参数类型，例如List&lt;User&gt;
+     */
+    public Type genericType;
+
     public String defaultValue;
 
+    /**
+     * 路径变量在URL模板中的下标
+     */
+    public int pathVariableIndex = -1;
+
     private static List<Class<?>> SERVICE_VARIABLE_CLASSES = new ArrayList<>();
 
     static {
@@ -63,6 +74,7 @@ public class Param {
         }
         //参数类型
         this.classType = parameter.getType();
+        this.genericType = parameter.getParameterizedType();
         if (pathVariable != null) {
             this.name = pathVariable.value();
             this.paramType = ParamType.PATH_VARIABLE;
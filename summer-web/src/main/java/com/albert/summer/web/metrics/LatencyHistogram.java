@@ -0,0 +1,114 @@
+package com.albert.summer.web.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的延迟直方图（纳秒），桶按HDR Histogram的对数-线性方式划分：
+ * 每个2的幂区间再等分为8个子桶，相对误差不超过12.5%
+ * 小于8ns的值每个值一个桶，超过2^40ns（约18分钟）的值记入最后一个桶
+ * <p>
+ * 记录时只有一次数组下标计算和两次原子加法，不分配对象
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 3;
+
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    static final int MAX_EXPONENT = 40;
+
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    final LongAdder sum = new LongAdder();
+
+    public void record(long nanos) {
+        this.buckets.getAndIncrement(bucketIndex(nanos));
+        this.sum.add(nanos);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return value < 0 ? 0 : (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + sub;
+    }
+
+    /**
+     * 桶的上界（不包含）
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index + 1;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        int sub = index % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + sub + 1) << shift;
+    }
+
+    /**
+     * 复制各个桶的计数，导出时使用同一份快照计算累计值
+     */
+    public long[] snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = this.buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * 快照中上界不超过maxNanos的桶的累计计数
+     */
+    public static long countAtOrBelow(long[] snapshot, long maxNanos) {
+        long count = 0;
+        for (int i = 0; i < snapshot.length && bucketUpperBound(i) - 1 <= maxNanos; i++) {
+            count += snapshot[i];
+        }
+        return count;
+    }
+
+    /**
+     * 快照中第percentile（0~100）百分位所在桶的上界
+     */
+    public static long valueAtPercentile(long[] snapshot, double percentile) {
+        long total = 0;
+        for (long c : snapshot) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long count = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            count += snapshot[i];
+            if (count >= target) {
+                return bucketUpperBound(i) - 1;
+            }
+        }
+        return bucketUpperBound(snapshot.length - 1) - 1;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += this.buckets.get(i);
+        }
+        return count;
+    }
+
+    public long getSum() {
+        return this.sum.sum();
+    }
+}
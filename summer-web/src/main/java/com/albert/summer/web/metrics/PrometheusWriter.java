@@ -0,0 +1,92 @@
+package com.albert.summer.web.metrics;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 按Prometheus文本格式输出统计
+ * 直方图的le使用固定的秒数边界，按上界不超过le的桶累计，与le不对齐的桶计入下一个le
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    static final String REQUESTS = "http_server_requests_seconds";
+
+    static final double[] LE_SECONDS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    /**
+     * le标签值，避免输出5.0E-4这样的科学计数法
+     */
+    static final String[] LE_LABELS = Arrays.stream(LE_SECONDS).mapToObj(le -> BigDecimal.valueOf(le).stripTrailingZeros().toPlainString()).toArray(String[]::new);
+
+    final StringBuilder sb = new StringBuilder(4096);
+
+    /**
+     * 请求延迟直方图，标签为route、method、status
+     */
+    public PrometheusWriter writeRequests(Collection<RouteMetrics> routes) {
+        this.sb.append("# HELP ").append(REQUESTS).append(" HTTP server request latency.\n");
+        this.sb.append("# TYPE ").append(REQUESTS).append(" histogram\n");
+        for (RouteMetrics route : routes) {
+            route.forEach((series, histogram) -> {
+                int n = series.indexOf(' ');
+                String labels = "method=\"" + series.substring(0, n) + "\",route=\"" + escape(route.getRoute()) + "\",status=\"" + series.substring(n + 1) + "\"";
+                long[] snapshot = histogram.snapshot();
+                long total = 0;
+                for (long c : snapshot) {
+                    total += c;
+                }
+                for (int i = 0; i < LE_SECONDS.length; i++) {
+                    long count = LatencyHistogram.countAtOrBelow(snapshot, (long) (LE_SECONDS[i] * 1_000_000_000L));
+                    this.sb.append(REQUESTS).append("_bucket{").append(labels).append(",le=\"").append(LE_LABELS[i]).append("\"} ").append(count).append('\n');
+                }
+                this.sb.append(REQUESTS).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(total).append('\n');
+                this.sb.append(REQUESTS).append("_sum{").append(labels).append("} ").append(histogram.getSum() / 1e9).append('\n');
+                this.sb.append(REQUESTS).append("_count{").append(labels).append("} ").append(total).append('\n');
+            });
+        }
+        return this;
+    }
+
+    /**
+     * 计数器，标签名为labelName
+     */
+    public PrometheusWriter writeCounter(String name, String help, String labelName, Map<String, Long> values) {
+        this.sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        this.sb.append("# TYPE ").append(name).append(" counter\n");
+        values.forEach((label, value) -> this.sb.append(name).append('{').append(labelName).append("=\"").append(escape(label)).append("\"} ").append(value).append('\n'));
+        return this;
+    }
+
+    public PrometheusWriter writeGauge(String name, String help, long value) {
+        this.sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        this.sb.append("# TYPE ").append(name).append(" gauge\n");
+        this.sb.append(name).append(' ').append(value).append('\n');
+        return this;
+    }
+
+    /**
+     * 带一个标签的仪表，标签名为labelName
+     */
+    public PrometheusWriter writeGauge(String name, String help, String labelName, Map<String, Long> values) {
+        this.sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        this.sb.append("# TYPE ").append(name).append(" gauge\n");
+        values.forEach((label, value) -> this.sb.append(name).append('{').append(labelName).append("=\"").append(escape(label)).append("\"} ").append(value).append('\n'));
+        return this;
+    }
+
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    @Override
+    public String toString() {
+        return this.sb.toString();
+    }
+}
@@ -0,0 +1,109 @@
+package com.albert.summer.web.metrics;
+
+import com.albert.summer.annotation.RequestMethod;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * 单个路由的请求统计，按请求方法和状态码分为多个直方图
+ * 路由注册的请求方法返回200是最常见的情况，使用单独的字段；
+ * 其他组合按int key（ordinal << 10 | status）保存在写时复制的数组中，一个路由通常只有少数几种组合，记录时不创建对象
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class RouteMetrics {
+
+    private static final RequestMethod[] METHODS = RequestMethod.values();
+
+    private static final Series[] EMPTY = new Series[0];
+
+    final String route;
+
+    final RequestMethod method;
+
+    final LatencyHistogram ok = new LatencyHistogram();
+
+    /**
+     * 其他请求方法和状态码的直方图，只在新增组合时复制
+     */
+    volatile Series[] others = EMPTY;
+
+    final ReentrantLock lock = new ReentrantLock();
+
+    public RouteMetrics(String route, RequestMethod method) {
+        this.route = route;
+        this.method = method;
+    }
+
+    public void record(RequestMethod method, int status, long nanos) {
+        LatencyHistogram histogram;
+        if (status == 200 && this.method == method) {
+            histogram = this.ok;
+        } else {
+            histogram = getOrCreate(key(method, status));
+        }
+        histogram.record(nanos);
+    }
+
+    LatencyHistogram getOrCreate(int key) {
+        LatencyHistogram histogram = find(this.others, key);
+        if (histogram != null) {
+            return histogram;
+        }
+        this.lock.lock();
+        try {
+            Series[] current = this.others;
+            histogram = find(current, key);
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+                Series[] copy = Arrays.copyOf(current, current.length + 1);
+                copy[current.length] = new Series(key, histogram);
+                this.others = copy;
+            }
+            return histogram;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    static LatencyHistogram find(Series[] series, int key) {
+        for (Series s : series) {
+            if (s.key == key) {
+                return s.histogram;
+            }
+        }
+        return null;
+    }
+
+    static int key(RequestMethod method, int status) {
+        return method.ordinal() << 10 | (status & 0x3FF);
+    }
+
+    public String getRoute() {
+        return this.route;
+    }
+
+    /**
+     * 遍历有记录的直方图
+     *
+     * @param consumer 参数为"方法 状态码"和直方图
+     */
+    public void forEach(BiConsumer<String, LatencyHistogram> consumer) {
+        if (this.ok.getCount() > 0) {
+            consumer.accept(this.method + " 200", this.ok);
+        }
+        for (Series s : this.others) {
+            consumer.accept(METHODS[s.key >>> 10] + " " + (s.key & 0x3FF), s.histogram);
+        }
+    }
+
+    /**
+     * @param key       ordinal << 10 | status
+     * @param histogram 直方图
+     */
+    record Series(int key, LatencyHistogram histogram) {
+    }
+}
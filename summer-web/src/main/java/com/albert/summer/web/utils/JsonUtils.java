@@ -6,15 +6,25 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.lang.reflect.Type;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.albert.summer.property.PropertyResolver;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
 
 public class JsonUtils {
 
@@ -24,7 +34,11 @@ public class JsonUtils {
     public static final ObjectMapper OBJECT_MAPPER = createObjectMapper();
 
     private static ObjectMapper createObjectMapper() {
-        final ObjectMapper mapper = new ObjectMapper();
+        //生成器的字节/字符缓冲区使用全局共享的池，默认的ThreadLocal池在虚拟线程下每个请求都会重新分配
+        JsonFactory factory = JsonFactory.builder()
+                .recyclerPool(JsonRecyclerPools.sharedConcurrentDequePool())
+                .build();
+        final ObjectMapper mapper = new ObjectMapper(factory);
         mapper.setSerializationInclusion(JsonInclude.Include.ALWAYS);
         // disabled features:
         mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
@@ -57,6 +71,70 @@ public class JsonUtils {
         }
     }
 
+    /**
+     * 按配置创建ObjectMapper，只在启动时调用一次
+     * <p>
+     * summer.web.json.fail-on-unknown-properties: 反序列化遇到未知字段时报错，默认false
+     * summer.web.json.fail-on-empty-beans: 序列化没有属性的对象时报错，默认false
+     * summer.web.json.write-dates-as-timestamps: 日期序列化为时间戳，默认false
+     * summer.web.json.include-null: 序列化值为null的字段，默认true
+     * summer.web.json.indent-output: 格式化输出，默认false
+     * summer.web.json.blackbird: 使用LambdaMetafactory生成的访问器代替反射读写属性（Afterburner的JDK11+版本），默认false
+     */
+    public static ObjectMapper createObjectMapper(PropertyResolver propertyResolver) {
+        ObjectMapper mapper = createObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES,
+                propertyResolver.getProperty("${summer.web.json.fail-on-unknown-properties:false}", boolean.class));
+        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS,
+                propertyResolver.getProperty("${summer.web.json.fail-on-empty-beans:false}", boolean.class));
+        mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS,
+                propertyResolver.getProperty("${summer.web.json.write-dates-as-timestamps:false}", boolean.class));
+        mapper.configure(SerializationFeature.INDENT_OUTPUT,
+                propertyResolver.getProperty("${summer.web.json.indent-output:false}", boolean.class));
+        if (!propertyResolver.getProperty("${summer.web.json.include-null:true}", boolean.class)) {
+            mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        }
+        if (propertyResolver.getProperty("${summer.web.json.blackbird:false}", boolean.class)) {
+            mapper.registerModule(new BlackbirdModule());
+        }
+        return mapper;
+    }
+
+    public static ObjectWriter createWriter(Class<?> type) {
+        return createWriter(OBJECT_MAPPER, OBJECT_MAPPER.constructType(type));
+    }
+
+    /**
+     * 按类型创建ObjectWriter，写完不关闭输出流
+     * 只有final类型才能在启动时确定序列化器，其他类型运行时可能是子类，按实际类型序列化；
+     * 集合、Map、数组要求元素类型也是final，例如List&lt;String&gt;，否则按声明类型创建会丢失子类的属性
+     *
+     * @param mapper ObjectMapper
+     * @param type   返回值类型，可以是List&lt;User&gt;这样的泛型类型
+     */
+    public static ObjectWriter createWriter(ObjectMapper mapper, JavaType type) {
+        ObjectWriter writer = isStaticType(type) ? mapper.writerFor(type) : mapper.writer();
+        return writer.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    static boolean isStaticType(JavaType type) {
+        if (type.isContainerType()) {
+            JavaType keyType = type.getKeyType();
+            return isStaticType(type.getContentType()) && (keyType == null || isStaticType(keyType));
+        }
+        return type.isPrimitive() || (type.isFinal() && !type.isJavaLangObject());
+    }
+
+    /**
+     * 按参数类型创建ObjectReader，读完不关闭输入流
+     *
+     * @param mapper ObjectMapper
+     * @param type   参数类型，可以是List&lt;User&gt;这样的泛型类型
+     */
+    public static ObjectReader createReader(ObjectMapper mapper, Type type) {
+        return mapper.readerFor(mapper.constructType(type)).without(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+
     public static <T> T readJson(String str, Class<T> clazz) {
         try {
             return OBJECT_MAPPER.readValue(str, clazz);
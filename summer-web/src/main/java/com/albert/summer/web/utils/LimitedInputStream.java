@@ -0,0 +1,86 @@
+package com.albert.summer.web.utils;
+
+import com.albert.summer.exception.PayloadTooLargeException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 限制读取字节数的输入流，超过限制时抛出PayloadTooLargeException（413）
+ * 用于没有Content-Length（chunked）的请求体
+ * 按行限制时遇到换行符重新计数，用于NDJSON请求体只限制每条记录的大小
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class LimitedInputStream extends FilterInputStream {
+
+    final long limit;
+
+    /**
+     * 是否按行限制
+     */
+    final boolean perLine;
+
+    long count;
+
+    public LimitedInputStream(InputStream in, long limit) {
+        this(in, limit, false);
+    }
+
+    public LimitedInputStream(InputStream in, long limit, boolean perLine) {
+        super(in);
+        this.limit = limit;
+        this.perLine = perLine;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b == '\n' && this.perLine) {
+            this.count = 0;
+        } else if (b >= 0) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0 && this.perLine) {
+            int start = off;
+            for (int i = off; i < off + n; i++) {
+                if (b[i] == '\n') {
+                    count(i - start);
+                    this.count = 0;
+                    start = i + 1;
+                }
+            }
+            count(off + n - start);
+        } else if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    void count(long n) {
+        this.count += n;
+        if (this.count > this.limit) {
+            throw new PayloadTooLargeException((this.perLine ? "Request body line exceeds " : "Request body exceeds ") + this.limit + " bytes.");
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.albert.summer.web.utils;
+
+import jakarta.servlet.ServletException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预编译的URL模板
+ * 启动时把模板拆分为静态段、变量段和通配段，请求时只比较字符和记录变量的起止位置：
+ * 不创建Matcher，不拆分URL字符串，按下标而不是变量名取值。
+ * <p>
+ * 变量规则：{name}中name为字母开头的字母数字组合，匹配一个路径段内的任意字符（可以为空）。
+ * 一个路径段可以有多个变量，例如/{a}-{b}.json，相邻变量之间必须有分隔符；和正则一样前面的变量贪婪匹配。
+ *
+ * @author yangjunwei
+ * @date 2024/7/24
+ */
+public class PathTemplate {
+
+    final String pattern;
+
+    final Part[] parts;
+
+    final String[] variableNames;
+
+    PathTemplate(String pattern, Part[] parts, String[] variableNames) {
+        this.pattern = pattern;
+        this.parts = parts;
+        this.variableNames = variableNames;
+    }
+
+    /**
+     * 解析URL模板
+     *
+     * @param pattern URL模板，例如/users/{id}/posts
+     * @throws ServletException 模板不合法
+     */
+    public static PathTemplate parse(String pattern) throws ServletException {
+        List<Part> parts = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        String[] segments = pattern.split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (i > 0) {
+                text.append('/');
+            }
+            if (segment.equals("*") || segment.equals("**")) {
+                if (segment.equals("**") && i != segments.length - 1) {
+                    throw new ServletException("Invalid path: " + pattern);
+                }
+                addStatic(parts, text);
+                parts.add(new Part(segment.equals("*") ? PartType.WILDCARD : PartType.CATCH_ALL, "", null));
+                continue;
+            }
+            int start = segment.indexOf('{');
+            if (start < 0) {
+                if (segment.indexOf('}') >= 0) {
+                    throw new ServletException("Invalid path: " + pattern);
+                }
+                text.append(segment);
+                continue;
+            }
+            String prefix = segment.substring(0, start);
+            if (prefix.indexOf('}') >= 0) {
+                throw new ServletException("Invalid path: " + pattern);
+            }
+            text.append(prefix);
+            addStatic(parts, text);
+            //前缀{name}分隔符{name}...后缀
+            while (true) {
+                int end = segment.indexOf('}', start);
+                if (end < 0 || !isValidName(segment.substring(start + 1, end))) {
+                    throw new ServletException("Invalid path: " + pattern);
+                }
+                String name = segment.substring(start + 1, end);
+                if (names.contains(name)) {
+                    throw new ServletException("Duplicate path variable '" + name + "' in path: " + pattern);
+                }
+                names.add(name);
+                int next = segment.indexOf('{', end + 1);
+                String separator = next < 0 ? segment.substring(end + 1) : segment.substring(end + 1, next);
+                if (separator.indexOf('}') >= 0) {
+                    throw new ServletException("Invalid path: " + pattern);
+                }
+                if (next < 0) {
+                    parts.add(new Part(PartType.VARIABLE, separator, name));
+                    break;
+                }
+                if (separator.isEmpty()) {
+                    throw new ServletException("Path variables must be separated in path: " + pattern);
+                }
+                parts.add(new Part(PartType.INNER_VARIABLE, separator, name));
+                start = next;
+            }
+        }
+        addStatic(parts, text);
+        return new PathTemplate(pattern, parts.toArray(Part[]::new), names.toArray(String[]::new));
+    }
+
+    /**
+     * 匹配URL，并把第i个变量的起止位置写入captures[2i]和captures[2i+1]
+     *
+     * @param url      请求URL
+     * @param captures 长度至少为变量个数的2倍，没有变量时可以为null
+     * @return 是否匹配
+     */
+    public boolean match(String url, int[] captures) {
+        return match(0, url, 0, 0, captures);
+    }
+
+    boolean match(int index, String url, int pos, int variable, int[] captures) {
+        int length = url.length();
+        for (int i = index; i < this.parts.length; i++) {
+            Part part = this.parts[i];
+            switch (part.type) {
+                case STATIC -> {
+                    if (!url.startsWith(part.text, pos)) {
+                        return false;
+                    }
+                    pos += part.text.length();
+                }
+                case VARIABLE, WILDCARD -> {
+                    int end = url.indexOf('/', pos);
+                    if (end < 0) {
+                        end = length;
+                    }
+                    int valueEnd = end - part.text.length();
+                    if (valueEnd < pos || !url.startsWith(part.text, valueEnd)) {
+                        return false;
+                    }
+                    if (part.type == PartType.VARIABLE) {
+                        captures[variable * 2] = pos;
+                        captures[variable * 2 + 1] = valueEnd;
+                        variable++;
+                    }
+                    pos = end;
+                }
+                case INNER_VARIABLE -> {
+                    int end = url.indexOf('/', pos);
+                    if (end < 0) {
+                        end = length;
+                    }
+                    //从最后一个分隔符开始尝试，与正则的贪婪匹配一致
+                    int separator = part.text.length();
+                    for (int k = url.lastIndexOf(part.text, end - separator); k >= pos; k = url.lastIndexOf(part.text, k - 1)) {
+                        if (match(i + 1, url, k + separator, variable + 1, captures)) {
+                            captures[variable * 2] = pos;
+                            captures[variable * 2 + 1] = k;
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+                case CATCH_ALL -> {
+                    return true;
+                }
+            }
+        }
+        return pos == length;
+    }
+
+    /**
+     * 变量在模板中的下标，不存在返回-1
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < this.variableNames.length; i++) {
+            if (this.variableNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String getPattern() {
+        return this.pattern;
+    }
+
+    public Part[] getParts() {
+        return this.parts;
+    }
+
+    public String[] getVariableNames() {
+        return this.variableNames;
+    }
+
+    public int getVariableCount() {
+        return this.variableNames.length;
+    }
+
+    private static void addStatic(List<Part> parts, StringBuilder text) {
+        if (!text.isEmpty()) {
+            parts.add(new Part(PartType.STATIC, text.toString(), null));
+            text.setLength(0);
+        }
+    }
+
+    private static boolean isValidName(String name) {
+        if (name.isEmpty() || !isLetter(name.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!isLetter(c) && !(c >= '0' && c <= '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    @Override
+    public String toString() {
+        return this.pattern;
+    }
+
+    /**
+     * 模板片段
+     *
+     * @param type 片段类型
+     * @param text 静态段为路径文本，变量段为变量后缀，段内变量为到下一个变量之间的分隔符，通配段为空
+     * @param name 变量名
+     */
+    public record Part(PartType type, String text, String name) {
+    }
+
+    /**
+     * VARIABLE匹配到路径段末尾，INNER_VARIABLE后面同一路径段内还有变量
+     */
+    public enum PartType {
+        STATIC, VARIABLE, INNER_VARIABLE, WILDCARD, CATCH_ALL
+    }
+}
@@ -1,17 +1,36 @@
 package com.albert.summer.web.utils;
 
-import java.util.regex.Pattern;
+public class PathUtils {
 
-import jakarta.servlet.ServletException;
+    /**
+     * 路径模式是否匹配URL模板，*匹配一段，**匹配任意多段
+     * 例如：/api/** 匹配 /api/users/{id}，/api/users/* 匹配 /api/users/{id}
+     */
+    public static boolean matchTemplate(String pattern, String template) {
+        return matchSegments(split(pattern), 0, split(template), 0);
+    }
 
-public class PathUtils {
+    static String[] split(String path) {
+        return path.isEmpty() || path.equals("/") ? new String[0] : (path.startsWith("/") ? path.substring(1) : path).split("/");
+    }
 
-    public static Pattern compile(String path) throws ServletException {
-        String regPath = path.replaceAll("\\{([a-zA-Z][a-zA-Z0-9]*)\\}", "(?<$1>[^/]*)");
-        if (regPath.indexOf('{') >= 0 || regPath.indexOf('}') >= 0) {
-            throw new ServletException("Invalid path: " + path);
+    static boolean matchSegments(String[] pattern, int p, String[] template, int t) {
+        if (p == pattern.length) {
+            return t == template.length;
+        }
+        if (pattern[p].equals("**")) {
+            //匹配0段或多段
+            for (int i = t; i <= template.length; i++) {
+                if (matchSegments(pattern, p + 1, template, i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (t == template.length) {
+            return false;
         }
-        return Pattern.compile("^" + regPath + "$");
+        return (pattern[p].equals("*") || pattern[p].equals(template[t])) && matchSegments(pattern, p + 1, template, t + 1);
     }
 
 
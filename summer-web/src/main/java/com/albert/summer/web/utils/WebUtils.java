@@ -35,6 +35,8 @@ public class WebUtils {
         //根目录映射
         dispatcherReg.addMapping("/");
         dispatcherReg.setLoadOnStartup(0);
+        //支持Controller异步返回
+        dispatcherReg.setAsyncSupported(true);
     }
 
     /**
@@ -51,10 +53,35 @@ public class WebUtils {
             var filter = Objects.requireNonNull(filterRegBean.getFilter(), "FilterRegistrationBean.getFilter() must not return null.");
             log.info("register filter '{}' {} for URLs: {}", filterRegBean.getName(), filter.getClass().getName(), String.join(", ", urlPatterns));
             var filterReg = servletContext.addFilter(filterRegBean.getName(), filter);
+            //过滤器链中任意一个不支持异步，DispatcherServlet都无法startAsync()
+            filterReg.setAsyncSupported(true);
             filterReg.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, urlPatterns.toArray(String[]::new));
         }
     }
 
+    /**
+     * 解析字节大小，支持B、KB、MB、GB后缀（不区分大小写），-1表示不限制
+     * 例如：1024、512KB、10MB
+     */
+    public static long parseSize(String size) {
+        String s = size.trim().toUpperCase();
+        long unit = 1;
+        if (s.endsWith("KB")) {
+            unit = 1024;
+        } else if (s.endsWith("MB")) {
+            unit = 1024 * 1024;
+        } else if (s.endsWith("GB")) {
+            unit = 1024 * 1024 * 1024;
+        }
+        if (unit > 1) {
+            s = s.substring(0, s.length() - 2).trim();
+        } else if (s.endsWith("B")) {
+            s = s.substring(0, s.length() - 1).trim();
+        }
+        long value = Long.parseLong(s);
+        return value < 0 ? -1 : value * unit;
+    }
+
     /**
      * Try load property resolver from /application.yml or /application.properties.
      */
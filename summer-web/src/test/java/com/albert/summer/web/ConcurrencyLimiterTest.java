@@ -0,0 +1,77 @@
+package com.albert.summer.web;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrencyLimiterTest {
+
+    @Test
+    void rejectOverLimit() {
+        var limiter = new ConcurrencyLimiter("test", 2, 1, 10, 2);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.getRejected());
+        limiter.cancel();
+        assertEquals(1, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void increaseWhenBusy() {
+        var limiter = new ConcurrencyLimiter("test", 4, 1, 5, 2);
+        //并发数达到上限一半时加1，不超过最大值
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire();
+            limiter.tryAcquire();
+            limiter.release(1_000_000, false);
+            limiter.release(1_000_000, false);
+        }
+        assertEquals(5, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+
+        //负载低时不增长
+        limiter = new ConcurrencyLimiter("test", 4, 1, 10, 2);
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.release(1_000_000, false);
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void decreaseWhenSlow() {
+        var limiter = new ConcurrencyLimiter("test", 100, 10, 100, 2);
+        limiter.tryAcquire();
+        limiter.release(1_000_000, false);
+        //延迟超过平均值2倍
+        limiter.tryAcquire();
+        limiter.release(5_000_000, false);
+        assertEquals(90, limiter.getLimit());
+        //同一个延迟周期内不重复减小
+        limiter.lastDecrease = System.nanoTime();
+        limiter.tryAcquire();
+        limiter.release(5_000_000, true);
+        assertEquals(90, limiter.getLimit());
+
+        limiter.lastDecrease = 0;
+        limiter.tryAcquire();
+        limiter.release(1_000, true);
+        assertEquals(81, limiter.getLimit());
+        //不低于最小值
+        for (int i = 0; i < 100; i++) {
+            limiter.lastDecrease = 0;
+            limiter.tryAcquire();
+            limiter.release(1_000, true);
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void invalidConfig() {
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrencyLimiter("test", 0, 0, 10, 2));
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrencyLimiter("test", 20, 1, 10, 2));
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrencyLimiter("test", 5, 1, 10, 0));
+    }
+}
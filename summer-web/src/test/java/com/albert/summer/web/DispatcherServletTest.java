@@ -1,23 +1,38 @@
 package com.albert.summer.web;
 
+import com.albert.summer.annotation.ResponseCache;
 import com.albert.summer.context.AnnotationConfigApplicationContext;
 import com.albert.summer.property.PropertyResolver;
 import com.albert.summer.web.controller.ApiController;
 import com.albert.summer.web.controller.ControllerConfiguration;
+import com.albert.summer.web.controller.SecureInterceptor;
+import com.albert.summer.web.metrics.PrometheusWriter;
 import com.albert.summer.web.utils.JsonUtils;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockHttpSession;
 import org.springframework.mock.web.MockServletContext;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.annotation.Annotation;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -43,6 +58,8 @@ public class DispatcherServletTest {
         ps.put("app.title", "Scan App");
         ps.put("app.version", "v1.0");
         ps.put("summer.web.favicon-path", "/icon/favicon.ico");
+        ps.put("summer.web.max-body-size", "1KB");
+        ps.put("summer.web.metrics.enabled", "true");
         ps.put("summer.web.freemarker.template-path", "/WEB-INF/templates");
         ps.put("jdbc.username", "sa");
         ps.put("jdbc.password", "");
@@ -226,4 +243,762 @@ public class DispatcherServletTest {
     }
 
 
-}
\ No newline at end of file
+    @Test
+    void getApiErrorStatus() throws ServletException, IOException {
+        //Controller抛出的异常不会被吞掉，按状态码返回
+        var req = createMockRequest("GET", "/api/error/400", null, null);
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(400, resp.getStatus());
+    }
+
+    @Test
+    void getApiErrorPropagate() {
+        var req = createMockRequest("GET", "/api/error/500", null, null);
+        var resp = createMockResponse();
+        IOException e = assertThrows(IOException.class, () -> this.dispatcherServlet.service(req, resp));
+        assertEquals("Disk error.", e.getMessage());
+    }
+
+    @Test
+    void getApiPrivate() throws ServletException, IOException {
+        var req = createMockRequest("GET", "/api/private/42", null, null);
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(200, resp.getStatus());
+        assertEquals("private 42", resp.getContentAsString());
+    }
+
+
+    @Test
+    void getApiTyped() throws ServletException, IOException {
+        var req = createMockRequest("GET", "/api/typed/3f2504e0-4f89-11d3-9a0c-0305e82c3301", null, Map.of("day", "2024-07-25", "point", "3,4"));
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(200, resp.getStatus());
+        Map<?, ?> result = JsonUtils.readJson(resp.getContentAsString(), Map.class);
+        assertEquals("3f2504e0-4f89-11d3-9a0c-0305e82c3301", result.get("id"));
+        assertEquals(25, result.get("day"));
+        assertEquals("LOW", result.get("level"));
+        assertEquals(3, result.get("x"));
+        assertEquals(4, result.get("y"));
+    }
+
+
+    @Test
+    void getApiAsyncFuture() throws Exception {
+        var req = createMockRequest("GET", "/api/async/future/Bob", null, null);
+        req.setAsyncSupported(true);
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertTrue(req.isAsyncStarted());
+        awaitAsync(req);
+        assertEquals(200, resp.getStatus());
+        assertEquals("application/json", resp.getContentType());
+        assertEquals("{\"name\":\"Bob\"}", resp.getContentAsString());
+    }
+
+    @Test
+    void getApiAsyncCallable() throws Exception {
+        var req = createMockRequest("GET", "/api/async/callable/Bob", null, null);
+        req.setAsyncSupported(true);
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        awaitAsync(req);
+        assertEquals(200, resp.getStatus());
+        Map<?, ?> result = JsonUtils.readJson(resp.getContentAsString(), Map.class);
+        assertEquals("Bob", result.get("name"));
+        assertEquals(Boolean.TRUE, result.get("virtual"));
+    }
+
+    @Test
+    void getApiAsyncError() throws Exception {
+        var req = createMockRequest("GET", "/api/async/error", null, null);
+        req.setAsyncSupported(true);
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        awaitAsync(req);
+        assertEquals(400, resp.getStatus());
+    }
+
+    @Test
+    void getApiAsyncTimeout() throws Exception {
+        var req = createMockRequest("GET", "/api/async/deferred", null, null);
+        req.setAsyncSupported(true);
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        var asyncContext = (MockAsyncContext) req.getAsyncContext();
+        assertEquals(100, asyncContext.getTimeout());
+        //MockAsyncContext不会自动超时，模拟容器触发超时事件
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+        awaitAsync(req);
+        assertEquals(503, resp.getStatus());
+    }
+
+    @Test
+    void getApiAsyncWithoutAsyncSupport() throws Exception {
+        //不支持异步时阻塞等待结果
+        var req = createMockRequest("GET", "/api/async/future/Bob", null, null);
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertFalse(req.isAsyncStarted());
+        assertEquals(200, resp.getStatus());
+        assertEquals("{\"name\":\"Bob\"}", resp.getContentAsString());
+    }
+
+    void awaitAsync(MockHttpServletRequest req) throws InterruptedException {
+        for (int i = 0; i < 100 && req.isAsyncStarted(); i++) {
+            Thread.sleep(20);
+        }
+        assertFalse(req.isAsyncStarted());
+    }
+
+
+    @Test
+    void postApiBatch() throws ServletException, IOException {
+        var alice = new ApiController.SigninObj();
+        alice.name = "Alice";
+        var bob = new ApiController.SigninObj();
+        bob.name = "Bob";
+        var req = createMockRequest("POST", "/api/batch", List.of(alice, bob), null);
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(200, resp.getStatus());
+        assertEquals("[\"Alice\",\"Bob\"]", resp.getContentAsString());
+    }
+
+    @Test
+    void postApiBatchInvalidBody() throws ServletException, IOException {
+        var req = createMockRequest("POST", "/api/batch", null, null);
+        req.setContentType("application/json");
+        req.setContent("[{".getBytes(StandardCharsets.UTF_8));
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(400, resp.getStatus());
+    }
+
+
+    @Test
+    void postApiBodyTooLarge() throws ServletException, IOException {
+        var signin = new ApiController.SigninObj();
+        signin.name = "A".repeat(2048);
+        var req = createMockRequest("POST", "/api/batch", List.of(signin), null);
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(413, resp.getStatus());
+    }
+
+    @Test
+    void postApiBodyTooLargeWithoutContentLength() throws ServletException, IOException {
+        //chunked请求没有Content-Length，读取时计数
+        var req = new MockHttpServletRequest(this.ctx, "POST", "/api/batch") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        req.setContentType("application/json");
+        req.setContent(("[{\"name\":\"" + "A".repeat(2048) + "\"}]").getBytes(StandardCharsets.UTF_8));
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(413, resp.getStatus());
+    }
+
+    @Test
+    void postApiNdjson() throws ServletException, IOException {
+        //NDJSON的总大小不受max-body-size限制
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("{\"name\":\"n").append(i).append("\"}\n");
+        }
+        for (String path : List.of("/api/ndjson/stream", "/api/ndjson/iterator")) {
+            var req = createMockRequest("POST", path, null, null);
+            req.setContentType("application/x-ndjson");
+            req.setContent(sb.toString().getBytes(StandardCharsets.UTF_8));
+            var resp = createMockResponse();
+            this.dispatcherServlet.service(req, resp);
+            assertEquals(200, resp.getStatus());
+            Map<?, ?> result = JsonUtils.readJson(resp.getContentAsString(), Map.class);
+            if (path.endsWith("stream")) {
+                String names = (String) result.get("names");
+                assertTrue(names.startsWith("n0,n1,"));
+                assertTrue(names.endsWith(",n999"));
+            } else {
+                assertEquals(1000, result.get("count"));
+            }
+        }
+    }
+
+    @Test
+    void postApiNdjsonInvalid() throws ServletException, IOException {
+        for (String path : List.of("/api/ndjson/stream", "/api/ndjson/iterator")) {
+            //格式错误的记录返回400
+            var req = createMockRequest("POST", path, null, null);
+            req.setContentType("application/x-ndjson");
+            req.setContent("{\"name\":\"a\"}\n{\"name\":\n".getBytes(StandardCharsets.UTF_8));
+            var resp = createMockResponse();
+            this.dispatcherServlet.service(req, resp);
+            assertEquals(400, resp.getStatus());
+
+            //单行超过max-body-size返回413
+            req = createMockRequest("POST", path, null, null);
+            req.setContentType("application/x-ndjson");
+            req.setContent(("{\"name\":\"a\"}\n{\"name\":\"" + "x".repeat(2048) + "\"}\n").getBytes(StandardCharsets.UTF_8));
+            resp = createMockResponse();
+            this.dispatcherServlet.service(req, resp);
+            assertEquals(413, resp.getStatus());
+        }
+    }
+
+
+    @Test
+    void putPatchDeleteApiItem() throws ServletException, IOException {
+        var req = createMockRequest("PUT", "/api/items/7", null, null);
+        req.setContentType("application/json");
+        req.setContent("{\"name\":\"Bob\"}".getBytes(StandardCharsets.UTF_8));
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(200, resp.getStatus());
+        assertEquals(Map.of("id", 7, "name", "Bob", "method", "PUT"), JsonUtils.readJson(resp.getContentAsString(), Map.class));
+        for (String method : List.of("PATCH", "DELETE")) {
+            req = createMockRequest(method, "/api/items/7", null, null);
+            resp = createMockResponse();
+            this.dispatcherServlet.service(req, resp);
+            assertEquals(200, resp.getStatus());
+            assertEquals(Map.of("id", 7, "method", method), JsonUtils.readJson(resp.getContentAsString(), Map.class));
+        }
+    }
+
+    @Test
+    void requestMappingMethods() throws ServletException, IOException {
+        for (String method : List.of("GET", "DELETE")) {
+            var req = createMockRequest(method, "/api/any", null, null);
+            var resp = createMockResponse();
+            this.dispatcherServlet.service(req, resp);
+            assertEquals(200, resp.getStatus());
+            assertEquals("\"" + method + "\"", resp.getContentAsString());
+        }
+    }
+
+    @Test
+    void headUsesGetHandler() throws ServletException, IOException {
+        var req = createMockRequest("HEAD", "/api/hello/Bob", null, null);
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(200, resp.getStatus());
+        assertEquals("application/json", resp.getContentType());
+        assertEquals("", resp.getContentAsString());
+    }
+
+    @Test
+    void optionsAndMethodNotAllowed() throws ServletException, IOException {
+        var req = createMockRequest("OPTIONS", "/api/items/7", null, null);
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(200, resp.getStatus());
+        assertEquals("PUT, PATCH, DELETE, OPTIONS", resp.getHeader("Allow"));
+
+        req = createMockRequest("POST", "/api/items/7", null, null);
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(405, resp.getStatus());
+        assertEquals("PUT, PATCH, DELETE, OPTIONS", resp.getHeader("Allow"));
+
+        req = createMockRequest("OPTIONS", "/api/greeting", null, null);
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals("GET, HEAD, OPTIONS", resp.getHeader("Allow"));
+
+        req = createMockRequest("TRACE", "/api/greeting", null, null);
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(501, resp.getStatus());
+    }
+
+    @Test
+    void gzipResponse() throws Exception {
+        var req = createMockRequest("GET", "/api/numbers", null, Map.of("count", "200"));
+        req.addHeader("Accept-Encoding", "gzip, deflate, br");
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(200, resp.getStatus());
+        assertEquals("gzip", resp.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", resp.getHeader("Vary"));
+        String json = gunzip(resp.getContentAsByteArray());
+        assertEquals(200, JsonUtils.readJson(json, List.class).size());
+        assertTrue(resp.getContentAsByteArray().length < json.length() / 5);
+
+        //小于min-size时不压缩
+        req = createMockRequest("GET", "/api/numbers", null, Map.of("count", "2"));
+        req.addHeader("Accept-Encoding", "gzip");
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertNull(resp.getHeader("Content-Encoding"));
+        assertEquals(resp.getContentAsByteArray().length, resp.getContentLength());
+        assertEquals(2, JsonUtils.readJson(resp.getContentAsString(), List.class).size());
+
+        //q=0表示不接受
+        req = createMockRequest("GET", "/api/numbers", null, Map.of("count", "200"));
+        req.addHeader("Accept-Encoding", "gzip;q=0, identity");
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertNull(resp.getHeader("Content-Encoding"));
+
+        //错误响应不受影响
+        req = createMockRequest("GET", "/greeting", null, Map.of("action", "Morning"));
+        req.addHeader("Accept-Encoding", "gzip");
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(400, resp.getStatus());
+        assertNull(resp.getHeader("Content-Encoding"));
+    }
+
+    @Test
+    void gzipAsyncResponse() throws Exception {
+        var req = createMockRequest("GET", "/api/numbers/async", null, Map.of("count", "200"));
+        req.addHeader("Accept-Encoding", "gzip");
+        req.setAsyncSupported(true);
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        awaitAsync(req);
+        assertEquals(200, resp.getStatus());
+        assertEquals("gzip", resp.getHeader("Content-Encoding"));
+        assertEquals(200, JsonUtils.readJson(gunzip(resp.getContentAsByteArray()), List.class).size());
+    }
+
+    @Test
+    void gzipNonBlockingWrite() throws Exception {
+        var body = new ByteArrayOutputStream();
+        WriteListener[] listener = new WriteListener[1];
+        boolean[] ready = {true};
+        var resp = new MockHttpServletResponse() {
+            final ServletOutputStream output = new ServletOutputStream() {
+                @Override
+                public boolean isReady() {
+                    return ready[0];
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                    listener[0] = writeListener;
+                }
+
+                @Override
+                public void write(int b) {
+                    body.write(b);
+                }
+            };
+
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return output;
+            }
+        };
+        resp.setContentType("application/json");
+        var gzip = new GzipResponse(resp, this.dispatcherServlet.compression);
+        ServletOutputStream output = gzip.getOutputStream();
+        output.write("[1,".getBytes(StandardCharsets.UTF_8));
+        WriteListener writeListener = new WriteListener() {
+            @Override
+            public void onWritePossible() {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        };
+        //设置WriteListener时不压缩，已缓冲的内容原样写出，WriteListener交给底层的流
+        output.setWriteListener(writeListener);
+        assertSame(writeListener, listener[0]);
+        assertNull(resp.getHeader("Content-Encoding"));
+        assertEquals("[1,", body.toString(StandardCharsets.UTF_8));
+        ready[0] = false;
+        assertFalse(output.isReady());
+        ready[0] = true;
+        output.write("2]".repeat(2048).getBytes(StandardCharsets.UTF_8));
+        gzip.finish();
+        assertNull(resp.getHeader("Content-Encoding"));
+        assertTrue(body.toString(StandardCharsets.UTF_8).startsWith("[1,2]2]"));
+    }
+
+    @Test
+    void getStreamingReport() throws Exception {
+        var req = createMockRequest("GET", "/report", null, Map.of("count", "1000"));
+        req.addHeader("Accept-Encoding", "gzip");
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(200, resp.getStatus());
+        assertTrue(resp.isCommitted());
+        //流式输出时提前决定压缩
+        assertEquals("gzip", resp.getHeader("Content-Encoding"));
+        String html = gunzip(resp.getContentAsByteArray());
+        assertTrue(html.contains("<title>Report</title>"));
+        assertTrue(html.contains("<tr><td>999</td><td>row-999</td></tr>"));
+        assertTrue(html.trim().endsWith("</html>"));
+    }
+
+    @Test
+    void responseCacheGzipEtag() throws Exception {
+        String q = "x".repeat(4096);
+        var req = createMockRequest("GET", "/api/cached-url", null, Map.of("q", q));
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertNull(resp.getHeader("Content-Encoding"));
+        String etag = resp.getHeader("ETag");
+        assertFalse(etag.contains("-gzip"));
+
+        //压缩的响应使用带编码后缀的ETag
+        req = createMockRequest("GET", "/api/cached-url", null, Map.of("q", q));
+        req.addHeader("Accept-Encoding", "gzip");
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals("gzip", resp.getHeader("Content-Encoding"));
+        String gzipEtag = resp.getHeader("ETag");
+        assertEquals(etag.substring(0, etag.length() - 1) + "-gzip\"", gzipEtag);
+        assertTrue(gunzip(resp.getContentAsByteArray()).contains(q));
+
+        //ETag按编码区分
+        req = createMockRequest("GET", "/api/cached-url", null, Map.of("q", q));
+        req.addHeader("Accept-Encoding", "gzip");
+        req.addHeader("If-None-Match", gzipEtag);
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(304, resp.getStatus());
+
+        req = createMockRequest("GET", "/api/cached-url", null, Map.of("q", q));
+        req.addHeader("If-None-Match", gzipEtag);
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(200, resp.getStatus());
+        assertEquals(etag, resp.getHeader("ETag"));
+    }
+
+    @Test
+    void responseCache() throws Exception {
+        var req = createMockRequest("GET", "/api/cached/1", null, Map.of("lang", "zh", "trace", "a"));
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(200, resp.getStatus());
+        assertEquals("application/json", resp.getContentType());
+        String body = resp.getContentAsString();
+        String etag = resp.getHeader("ETag");
+        assertNotNull(etag);
+        assertEquals(1, JsonUtils.readJson(body, Map.class).get("calls"));
+
+        //trace不在key中，命中缓存，不执行方法
+        req = createMockRequest("GET", "/api/cached/1", null, Map.of("lang", "zh", "trace", "b"));
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(body, resp.getContentAsString());
+        assertEquals(etag, resp.getHeader("ETag"));
+        assertEquals(body.length(), resp.getContentLength());
+
+        //key不同
+        req = createMockRequest("GET", "/api/cached/1", null, Map.of("lang", "en"));
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(2, JsonUtils.readJson(resp.getContentAsString(), Map.class).get("calls"));
+        assertNotEquals(etag, resp.getHeader("ETag"));
+
+        //ETag相同时返回304
+        req = createMockRequest("GET", "/api/cached/1", null, Map.of("lang", "zh"));
+        req.addHeader("If-None-Match", etag);
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(304, resp.getStatus());
+        assertEquals(0, resp.getContentAsByteArray().length);
+
+        //未指定key时按URL和查询字符串缓存
+        req = createMockRequest("GET", "/api/cached-url", null, Map.of("q", "x"));
+        req.setQueryString("q=x");
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(3, JsonUtils.readJson(resp.getContentAsString(), Map.class).get("calls"));
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(3, JsonUtils.readJson(resp.getContentAsString(), Map.class).get("calls"));
+        assertEquals(3, this.dispatcherServlet.responseCache.cache.size());
+    }
+
+    @Test
+    void coalesce() throws Exception {
+        int threads = 8;
+        List<MockHttpServletResponse> responses = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            var req = createMockRequest("GET", "/api/coalesce/7", null, null);
+            var resp = createMockResponse();
+            responses.add(resp);
+            workers.add(Thread.ofVirtual().start(() -> {
+                try {
+                    this.dispatcherServlet.service(req, resp);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        //所有请求共享一次执行的结果
+        String body = responses.get(0).getContentAsString();
+        assertEquals(1, JsonUtils.readJson(body, Map.class).get("calls"));
+        for (MockHttpServletResponse resp : responses) {
+            assertEquals(200, resp.getStatus());
+            assertEquals(body, resp.getContentAsString());
+        }
+        RequestCoalescer.CoalesceStats stats = this.dispatcherServlet.coalescer.getStats().get("/api/coalesce/{id}");
+        assertEquals(1, stats.getInvocations());
+        assertEquals(threads - 1, stats.getMergedCalls());
+        assertTrue(this.dispatcherServlet.coalescer.inFlight.isEmpty());
+
+        //执行完成后不缓存
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(createMockRequest("GET", "/api/coalesce/7", null, null), resp);
+        assertEquals(2, JsonUtils.readJson(resp.getContentAsString(), Map.class).get("calls"));
+    }
+
+    @Test
+    void metrics() throws Exception {
+        this.dispatcherServlet.service(createMockRequest("GET", "/api/hello/Bob", null, null), createMockResponse());
+        this.dispatcherServlet.service(createMockRequest("GET", "/api/error/400", null, null), createMockResponse());
+        assertThrows(IOException.class, () -> this.dispatcherServlet.service(createMockRequest("GET", "/api/error/500", null, null), createMockResponse()));
+
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(createMockRequest("GET", "/metrics", null, null), resp);
+        assertEquals(200, resp.getStatus());
+        assertEquals(PrometheusWriter.CONTENT_TYPE, resp.getContentType().replace(";charset", "; charset"));
+        String text = resp.getContentAsString();
+        //按路由模板统计，不按实际URL
+        assertTrue(text.contains("http_server_requests_seconds_count{method=\"GET\",route=\"/api/hello/{name}\",status=\"200\"} 1\n"));
+        assertTrue(text.contains("http_server_requests_seconds_bucket{method=\"GET\",route=\"/api/hello/{name}\",status=\"200\",le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("le=\"0.0005\""));
+        assertTrue(text.contains("http_server_requests_seconds_count{method=\"GET\",route=\"/api/error/{status}\",status=\"400\"} 1\n"));
+        assertTrue(text.contains("http_server_requests_seconds_count{method=\"GET\",route=\"/api/error/{status}\",status=\"500\"} 1\n"));
+        assertTrue(text.contains("summer_web_response_cache_bytes 0\n"));
+        //未访问的路由不输出
+        assertFalse(text.contains("route=\"/api/cached/{id}\""));
+    }
+
+    @Test
+    void metricsPathConflict() throws Exception {
+        //默认关闭，/metrics按普通路由处理
+        var ps = new Properties();
+        var propertyResolver = new PropertyResolver(ps);
+        var servlet = new DispatcherServlet(new AnnotationConfigApplicationContext(ControllerConfiguration.class, propertyResolver), propertyResolver);
+        servlet.init();
+        assertFalse(servlet.metricsEnabled);
+        var resp = createMockResponse();
+        servlet.service(createMockRequest("GET", "/metrics", null, null), resp);
+        assertEquals(404, resp.getStatus());
+
+        //开启后与Controller的路由冲突时启动失败
+        ps.put("summer.web.metrics.enabled", "true");
+        ps.put("summer.web.metrics.path", "/api/hello/metrics");
+        var conflictResolver = new PropertyResolver(ps);
+        var conflict = new DispatcherServlet(new AnnotationConfigApplicationContext(ControllerConfiguration.class, conflictResolver), conflictResolver);
+        assertThrows(ServletException.class, conflict::init);
+    }
+
+    @Test
+    void concurrencyLimit() throws Exception {
+        Dispatcher dispatcher = this.dispatcherServlet.dispatchers.stream().filter(d -> d.urlPattern.equals("/api/limited")).findFirst().orElseThrow();
+        var first = createMockResponse();
+        Thread worker = Thread.ofVirtual().start(() -> {
+            try {
+                this.dispatcherServlet.service(createMockRequest("GET", "/api/limited", null, null), first);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        while (dispatcher.limiter.getInFlight() == 0) {
+            Thread.sleep(5);
+        }
+        //上限为1，第二个请求立即拒绝
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(createMockRequest("GET", "/api/limited", null, null), resp);
+        assertEquals(503, resp.getStatus());
+        assertEquals("1", resp.getHeader("Retry-After"));
+        worker.join();
+        assertEquals(200, first.getStatus());
+        assertEquals(0, dispatcher.limiter.getInFlight());
+        assertEquals(1, dispatcher.limiter.getRejected());
+
+        resp = createMockResponse();
+        this.dispatcherServlet.service(createMockRequest("GET", "/metrics", null, null), resp);
+        assertTrue(resp.getContentAsString().contains("summer_web_concurrency_rejected_total{limiter=\"GET /api/limited\"} 1\n"));
+    }
+
+    @Test
+    void concurrencyLimitAsyncWriteFailure() throws Exception {
+        Dispatcher dispatcher = this.dispatcherServlet.dispatchers.stream().filter(d -> d.urlPattern.equals("/api/limited/async")).findFirst().orElseThrow();
+        var req = createMockRequest("GET", "/api/limited/async", null, null);
+        req.addHeader("Accept-Encoding", "gzip");
+        req.setAsyncSupported(true);
+        //模拟客户端断开，写出响应时抛出IOException
+        var resp = new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return new ServletOutputStream() {
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                    }
+
+                    @Override
+                    public void write(int b) throws IOException {
+                        throw new IOException("Broken pipe");
+                    }
+                };
+            }
+        };
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(1, dispatcher.limiter.getInFlight());
+        awaitAsync(req);
+        assertEquals(0, dispatcher.limiter.getInFlight());
+
+        //并发数已归还，后续请求不会被拒绝
+        req = createMockRequest("GET", "/api/limited/async", null, null);
+        req.setAsyncSupported(true);
+        var ok = createMockResponse();
+        this.dispatcherServlet.service(req, ok);
+        awaitAsync(req);
+        assertEquals(200, ok.getStatus());
+        assertEquals(0, dispatcher.limiter.getInFlight());
+    }
+
+    @Test
+    void interceptor() throws Exception {
+        SecureInterceptor interceptor = this.dispatcherServlet.applicationContext.getBean(SecureInterceptor.class);
+        //preHandle返回false时不执行方法，也不调用自己的afterCompletion
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(createMockRequest("GET", "/api/secure/1", null, null), resp);
+        assertEquals(401, resp.getStatus());
+        assertEquals(List.of("pre /api/secure/{id}"), interceptor.events);
+
+        interceptor.events.clear();
+        var req = createMockRequest("GET", "/api/secure/1", null, null);
+        req.addHeader("X-Token", "secret");
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(200, resp.getStatus());
+        assertEquals(List.of("pre /api/secure/{id}", "post {id=1}", "after 200"), interceptor.events);
+
+        interceptor.events.clear();
+        req = createMockRequest("GET", "/api/secure/-1", null, null);
+        req.addHeader("X-Token", "secret");
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(400, resp.getStatus());
+        assertEquals(List.of("pre /api/secure/{id}", "after ServerWebInputException"), interceptor.events);
+
+        //其他路由没有该拦截器
+        interceptor.events.clear();
+        this.dispatcherServlet.service(createMockRequest("GET", "/api/hello/Bob", null, null), createMockResponse());
+        assertTrue(interceptor.events.isEmpty());
+    }
+
+    @Test
+    void interceptorOnCachedRoute() throws Exception {
+        SecureInterceptor interceptor = this.dispatcherServlet.applicationContext.getBean(SecureInterceptor.class);
+        var req = createMockRequest("GET", "/api/secure/cached/1", null, null);
+        req.addHeader("X-Token", "secret");
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(200, resp.getStatus());
+        assertEquals(List.of("pre /api/secure/cached/{id}", "post {id=1}", "after 200"), interceptor.events);
+
+        //命中缓存时没有执行方法，postHandle的result为null
+        interceptor.events.clear();
+        req = createMockRequest("GET", "/api/secure/cached/1", null, null);
+        req.addHeader("X-Token", "secret");
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        assertEquals(200, resp.getStatus());
+        assertEquals("{\"id\":1}", resp.getContentAsString());
+        assertEquals(List.of("pre /api/secure/cached/{id}", "post null", "after 200"), interceptor.events);
+    }
+
+    @Test
+    void selectInterceptors() {
+        HandlerInterceptor all = new HandlerInterceptor() {
+        };
+        HandlerInterceptor cached = new HandlerInterceptor() {
+            @Override
+            public List<String> getExcludePathPatterns() {
+                return List.of("/api/cached-url");
+            }
+
+            @Override
+            public List<Class<? extends Annotation>> getHandlerAnnotations() {
+                return List.of(ResponseCache.class);
+            }
+        };
+        for (Dispatcher dispatcher : this.dispatcherServlet.dispatchers) {
+            HandlerInterceptor[] selected = DispatcherServlet.selectInterceptors(List.of(all, cached), dispatcher);
+            if (dispatcher.urlPattern.equals("/api/cached/{id}") || dispatcher.urlPattern.equals("/api/secure/cached/{id}")) {
+                assertArrayEquals(new HandlerInterceptor[]{all, cached}, selected);
+            } else {
+                assertArrayEquals(new HandlerInterceptor[]{all}, selected);
+            }
+        }
+    }
+
+    @Test
+    void streamJsonArray() throws Exception {
+        //不支持异步时在当前线程写完
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(createMockRequest("GET", "/api/stream/numbers", null, Map.of("count", "3")), resp);
+        assertEquals(200, resp.getStatus());
+        assertEquals("application/json;charset=UTF-8", resp.getContentType());
+        assertEquals("[{\"n\":0},{\"n\":1},{\"n\":2}]", resp.getContentAsString());
+
+        var req = createMockRequest("GET", "/api/stream/publisher", null, null);
+        req.setAsyncSupported(true);
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        awaitAsync(req);
+        assertEquals("[\"a\",\"b\",\"c\"]", resp.getContentAsString());
+    }
+
+    @Test
+    void streamSse() throws Exception {
+        var req = createMockRequest("GET", "/api/stream/numbers", null, Map.of("count", "2"));
+        req.addHeader("Accept", "text/event-stream");
+        req.setAsyncSupported(true);
+        var resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        awaitAsync(req);
+        assertEquals("text/event-stream;charset=UTF-8", resp.getContentType());
+        assertEquals("no-cache", resp.getHeader("Cache-Control"));
+        assertEquals("data: {\"n\":0}\n\ndata: {\"n\":1}\n\n", resp.getContentAsString());
+
+        req = createMockRequest("GET", "/api/stream/sse", null, null);
+        req.setAsyncSupported(true);
+        resp = createMockResponse();
+        this.dispatcherServlet.service(req, resp);
+        awaitAsync(req);
+        assertEquals("text/event-stream;charset=UTF-8", resp.getContentType());
+        assertEquals("event: start\ndata: begin\n\n"
+                + "id: 0\nevent: tick\ndata: {\"n\":0}\n\n"
+                + "id: 1\nevent: tick\ndata: {\"n\":1}\n\n"
+                + "id: 2\nevent: tick\ndata: {\"n\":2}\n\n", resp.getContentAsString());
+        //响应结束时才记录
+        Map<String, Long> counts = new HashMap<>();
+        this.dispatcherServlet.dispatchers.stream().filter(d -> d.urlPattern.equals("/api/stream/sse")).findFirst().orElseThrow()
+                .metrics.forEach((series, histogram) -> counts.put(series, histogram.getCount()));
+        assertEquals(Map.of("GET 200", 1L), counts);
+    }
+
+    String gunzip(byte[] data) throws IOException {
+        try (var input = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
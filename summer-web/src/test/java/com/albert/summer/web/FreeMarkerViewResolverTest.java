@@ -0,0 +1,158 @@
+package com.albert.summer.web;
+
+import com.albert.summer.exception.NestedRuntimeException;
+import com.albert.summer.exception.ServerErrorException;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FreeMarkerViewResolverTest {
+
+    @TempDir
+    Path root;
+
+    MockServletContext ctx;
+
+    @BeforeEach
+    void init() throws Exception {
+        Files.createDirectories(this.root.resolve("templates/mail"));
+        Files.writeString(this.root.resolve("templates/hello.html"), "<h1>Hello, ${name}</h1>");
+        Files.writeString(this.root.resolve("templates/mail/welcome.html"), "<p>Welcome, ${name}</p>");
+        this.ctx = new MockServletContext("file://" + this.root.toString());
+    }
+
+    FreeMarkerViewResolver createResolver(boolean production) {
+        var resolver = new FreeMarkerViewResolver(this.ctx, "/templates", "UTF-8", production);
+        resolver.init();
+        return resolver;
+    }
+
+    String render(FreeMarkerViewResolver resolver, String view, Map<String, Object> model) throws Exception {
+        var req = new MockHttpServletRequest(this.ctx, "GET", "/");
+        var resp = new MockHttpServletResponse();
+        resp.setCharacterEncoding("UTF-8");
+        resolver.render(view, model, req, resp);
+        return resp.getContentAsString();
+    }
+
+    /**
+     * 修改模板内容，同时推后修改时间避免文件系统时间精度问题
+     */
+    void modify(String name, String content) throws Exception {
+        Path path = this.root.resolve("templates").resolve(name);
+        Files.writeString(path, content);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+    }
+
+    @Test
+    void productionPrecompile() throws Exception {
+        var resolver = createResolver(true);
+        //启动时已解析所有模板
+        assertEquals(2, resolver.getTemplateStats().size());
+        assertTrue(resolver.getTemplateStats().containsKey("mail/welcome.html"));
+        assertEquals("<h1>Hello, Bob</h1>", render(resolver, "hello.html", Map.of("name", "Bob")));
+        //生产模式不检查模板修改
+        modify("hello.html", "<h1>Hi, ${name}</h1>");
+        assertEquals("<h1>Hello, Bob</h1>", render(resolver, "hello.html", Map.of("name", "Bob")));
+
+        FreeMarkerViewResolver.TemplateStats stats = resolver.getTemplateStats().get("hello.html");
+        assertEquals(2, stats.getCount());
+        assertTrue(stats.getMaxTime() > 0);
+        assertTrue(stats.getTotalTime() >= stats.getMaxTime());
+        assertEquals(0, resolver.getTemplateStats().get("mail/welcome.html").getCount());
+    }
+
+    @Test
+    void productionInvalidTemplate() throws Exception {
+        Files.writeString(this.root.resolve("templates/broken.html"), "<#if>");
+        assertThrows(NestedRuntimeException.class, () -> createResolver(true));
+    }
+
+    @Test
+    void devHotReload() throws Exception {
+        var resolver = createResolver(false);
+        assertTrue(resolver.getTemplateStats().isEmpty());
+        assertEquals("<p>Welcome, Bob</p>", render(resolver, "mail/welcome.html", Map.of("name", "Bob")));
+        modify("mail/welcome.html", "<p>Hi, ${name}</p>");
+        assertEquals("<p>Hi, Bob</p>", render(resolver, "mail/welcome.html", Map.of("name", "Bob")));
+        assertEquals(2, resolver.getTemplateStats().get("mail/welcome.html").getCount());
+    }
+
+    @Test
+    void renderErrorWritesNothing() throws Exception {
+        var resolver = createResolver(true);
+        var req = new MockHttpServletRequest(this.ctx, "GET", "/");
+        var resp = new MockHttpServletResponse();
+        //缺少name变量
+        assertThrows(ServerErrorException.class, () -> resolver.render("hello.html", Map.of(), req, resp));
+        assertEquals("", resp.getContentAsString());
+        assertEquals(1, resolver.getTemplateStats().get("hello.html").getErrorCount());
+        //缓冲区已放回池中
+        assertEquals(1, resolver.buffers.size());
+    }
+
+    @Test
+    void streamingRender() throws Exception {
+        Files.writeString(this.root.resolve("templates/report.html"),
+                "<html><head><title>Report</title></head><body><#list rows as row><p>${row}</p></#list></body></html>");
+        var resolver = new FreeMarkerViewResolver(this.ctx, "/templates", "UTF-8", false, 256);
+        resolver.init();
+        var resp = new MockHttpServletResponse();
+        //记录每次flush时已发送的字节数
+        List<Integer> flushes = new ArrayList<>();
+        var wrapper = new HttpServletResponseWrapper(resp) {
+            @Override
+            public void flushBuffer() throws IOException {
+                flushes.add(resp.getContentAsByteArray().length);
+                super.flushBuffer();
+            }
+        };
+        AtomicInteger flushesBeforeFirstRow = new AtomicInteger(-1);
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<Integer> rows = IntStream.range(0, 200).boxed().peek(i -> {
+            if (i == 0) {
+                flushesBeforeFirstRow.set(flushes.size());
+            }
+        }).onClose(() -> closed.set(true));
+        Map<String, Object> model = new HashMap<>();
+        model.put("rows", rows);
+        resolver.renderStreaming("report.html", model, new MockHttpServletRequest(this.ctx, "GET", "/"), wrapper);
+
+        //</head>之后立即flush，Stream在模板迭代时才开始消费
+        assertEquals(1, flushesBeforeFirstRow.get());
+        assertTrue(flushes.get(0) > 0 && flushes.get(0) < 60);
+        assertTrue(flushes.size() > 5);
+        assertTrue(closed.get());
+        String html = resp.getContentAsString();
+        assertTrue(html.contains("<p>199</p>"));
+        assertTrue(html.endsWith("</html>"));
+        assertEquals(1, resolver.getTemplateStats().get("report.html").getCount());
+    }
+
+    @Test
+    void lazyIterable() throws Exception {
+        Files.writeString(this.root.resolve("templates/list.html"), "<#list names as name>${name};</#list>");
+        var resolver = createResolver(false);
+        Iterable<String> names = () -> List.of("a", "b", "c").iterator();
+        assertEquals("a;b;c;", render(resolver, "list.html", Map.of("names", names)));
+    }
+}
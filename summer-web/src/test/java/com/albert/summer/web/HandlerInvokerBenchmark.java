@@ -0,0 +1,61 @@
+package com.albert.summer.web;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比反射调用和生成的HandlerInvoker调用Controller方法
+ * <p>
+ * 运行：在IDE中直接执行main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerInvokerBenchmark {
+
+    BenchmarkController controller;
+
+    Method method;
+
+    HandlerInvoker invoker;
+
+    Object[] arguments;
+
+    @Setup
+    public void setup() throws Exception {
+        this.controller = new BenchmarkController();
+        this.method = BenchmarkController.class.getDeclaredMethod("handle", long.class, String.class);
+        this.method.setAccessible(true);
+        this.invoker = HandlerInvokerFactory.create(this.method);
+        this.arguments = new Object[]{12345L, "name"};
+    }
+
+    @Benchmark
+    public Object reflect() throws Exception {
+        return this.method.invoke(this.controller, this.arguments);
+    }
+
+    @Benchmark
+    public Object invoker() throws Exception {
+        return this.invoker.invoke(this.controller, this.arguments);
+    }
+
+    static class BenchmarkController {
+
+        long handle(long id, String name) {
+            return id + name.length();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HandlerInvokerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
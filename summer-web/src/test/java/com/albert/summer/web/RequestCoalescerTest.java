@@ -0,0 +1,83 @@
+package com.albert.summer.web;
+
+import com.albert.summer.exception.ServerWebInputException;
+import com.albert.summer.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestCoalescerTest {
+
+    @Test
+    void shareException() throws Exception {
+        var coalescer = new RequestCoalescer();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var error = new ServerWebInputException("Bad input.");
+        Thread leader = Thread.ofVirtual().start(() -> {
+            assertThrows(ServerWebInputException.class, () -> coalescer.execute("/r", "k", () -> {
+                started.countDown();
+                release.await();
+                throw error;
+            }));
+        });
+        started.await();
+        AtomicReference<Exception> follower = new AtomicReference<>();
+        Thread waiter = Thread.ofVirtual().start(() -> {
+            try {
+                coalescer.execute("/r", "k", () -> fail("should not invoke"));
+            } catch (Exception e) {
+                follower.set(e);
+            }
+        });
+        //等待follower加入
+        while (coalescer.getStats().get("/r").getMergedCalls() == 0) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        leader.join();
+        waiter.join();
+        assertSame(error, follower.get());
+        assertTrue(coalescer.inFlight.isEmpty());
+    }
+
+    @Test
+    void followerTimeout() throws Exception {
+        var coalescer = new RequestCoalescer();
+        coalescer.timeout = 50;
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        Thread leader = Thread.ofVirtual().start(() -> {
+            try {
+                coalescer.execute("/r", "k", () -> {
+                    started.countDown();
+                    release.await();
+                    return new ResponseCacheStore.CachedResponse("k", new byte[]{1}, "application/json", Long.MAX_VALUE);
+                });
+            } catch (Exception e) {
+                fail(e);
+            }
+        });
+        started.await();
+        //方法一直不返回时，等待的请求超时返回503
+        var e = assertThrows(ServiceUnavailableException.class, () -> coalescer.execute("/r", "k", () -> fail("should not invoke")));
+        assertEquals(503, e.statusCode);
+        assertEquals(1, coalescer.getStats().get("/r").getTimeouts());
+        release.countDown();
+        leader.join();
+        assertTrue(coalescer.inFlight.isEmpty());
+    }
+
+    @Test
+    void differentKeys() throws Exception {
+        var coalescer = new RequestCoalescer();
+        var a = coalescer.execute("/r", "a", () -> new ResponseCacheStore.CachedResponse("a", new byte[]{1}, "application/json", Long.MAX_VALUE));
+        var b = coalescer.execute("/r", "b", () -> new ResponseCacheStore.CachedResponse("b", new byte[]{2}, "application/json", Long.MAX_VALUE));
+        assertNotSame(a, b);
+        assertEquals(2, coalescer.getStats().get("/r").getInvocations());
+        assertEquals(0, coalescer.getStats().get("/r").getMergedCalls());
+    }
+}
@@ -0,0 +1,71 @@
+package com.albert.summer.web;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheStoreTest {
+
+    @Test
+    void expire() throws Exception {
+        var store = new ResponseCacheStore();
+        store.put("a", new byte[10], "application/json", 50);
+        assertNotNull(store.get("a"));
+        Thread.sleep(60);
+        assertNull(store.get("a"));
+        assertEquals(0, store.size.get());
+        assertTrue(store.cache.isEmpty());
+    }
+
+    @Test
+    void replace() {
+        var store = new ResponseCacheStore();
+        store.put("a", new byte[10], "application/json", 60_000);
+        var cached = store.put("a", new byte[20], "application/json", 60_000);
+        assertSame(cached, store.get("a"));
+        assertEquals(cached.size, store.size.get());
+    }
+
+    @Test
+    void evictLeastFrequentlyUsed() {
+        var store = new ResponseCacheStore();
+        store.maxSize = 10 * 1024;
+        for (int i = 0; i < 4; i++) {
+            store.put("hot" + i, new byte[1024], "application/json", 60_000);
+            for (int n = 0; n < 5; n++) {
+                store.get("hot" + i);
+            }
+        }
+        for (int i = 0; i < 10; i++) {
+            store.put("cold" + i, new byte[1024], "application/json", 60_000);
+        }
+        assertTrue(store.size.get() <= store.maxSize);
+        //访问次数多的条目保留
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(store.cache.get("hot" + i));
+        }
+        assertTrue(store.cache.size() < 14);
+        long size = store.cache.values().stream().mapToLong(cached -> cached.size).sum();
+        assertEquals(size, store.size.get());
+    }
+
+    @Test
+    void tooLarge() {
+        var store = new ResponseCacheStore();
+        store.maxSize = 1024;
+        var cached = store.put("a", new byte[2048], "application/json", 60_000);
+        assertNotNull(cached);
+        assertNull(store.get("a"));
+        assertEquals(0, store.size.get());
+    }
+
+    @Test
+    void etag() {
+        var store = new ResponseCacheStore();
+        var a = store.put("a", "{\"id\":1}".getBytes(), "application/json", 60_000);
+        var b = store.put("b", "{\"id\":1}".getBytes(), "application/json", 60_000);
+        var c = store.put("c", "{\"id\":2}".getBytes(), "application/json", 60_000);
+        assertEquals(a.etag, b.etag);
+        assertNotEquals(a.etag, c.etag);
+    }
+}
@@ -0,0 +1,101 @@
+package com.albert.summer.web;
+
+import com.albert.summer.annotation.PathVariable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 对比原来的List逐个正则匹配和路由树匹配
+ * <p>
+ * 运行：在IDE中直接执行main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int routes;
+
+    List<Pattern> patterns;
+
+    Router router;
+
+    /**
+     * 最后注册的路由，List扫描的最坏情况
+     */
+    String lastUrl;
+
+    /**
+     * 中间位置的路由
+     */
+    String middleUrl;
+
+    @Setup
+    public void setup() throws Exception {
+        this.patterns = new ArrayList<>(routes);
+        this.router = new Router();
+        var controller = new BenchmarkController();
+        var method = BenchmarkController.class.getDeclaredMethod("handle", long.class);
+        for (int i = 0; i < routes; i++) {
+            String urlPattern = "/api/v1/resource" + i + "/{id}/items";
+            //原来按变量名转换的正则
+            this.patterns.add(Pattern.compile("^" + urlPattern.replaceAll("\\{([a-zA-Z][a-zA-Z0-9]*)\\}", "(?<$1>[^/]*)") + "$"));
+            this.router.add(new Dispatcher("GET", true, controller, method, urlPattern));
+        }
+        this.lastUrl = "/api/v1/resource" + (routes - 1) + "/12345/items";
+        this.middleUrl = "/api/v1/resource" + (routes / 2) + "/12345/items";
+    }
+
+    @Benchmark
+    public String listScanLast() {
+        return listScan(this.lastUrl);
+    }
+
+    @Benchmark
+    public String listScanMiddle() {
+        return listScan(this.middleUrl);
+    }
+
+    @Benchmark
+    public String routerLast() {
+        return this.router.match(this.lastUrl).getVariable(0);
+    }
+
+    @Benchmark
+    public String routerMiddle() {
+        return this.router.match(this.middleUrl).getVariable(0);
+    }
+
+    String listScan(String url) {
+        for (Pattern pattern : this.patterns) {
+            Matcher matcher = pattern.matcher(url);
+            if (matcher.matches()) {
+                return matcher.group("id");
+            }
+        }
+        return null;
+    }
+
+    static class BenchmarkController {
+
+        String handle(@PathVariable("id") long id) {
+            return String.valueOf(id);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RouterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,153 @@
+package com.albert.summer.web;
+
+import com.albert.summer.annotation.RequestMethod;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouterTest {
+
+    Dispatcher dispatcher(String urlPattern) throws Exception {
+        return new Dispatcher("GET", true, new RouteController(), RouteController.class.getDeclaredMethod("handle"), urlPattern);
+    }
+
+    @Test
+    void staticRoute() throws Exception {
+        Router router = new Router();
+        Dispatcher hello = dispatcher("/hello");
+        Dispatcher helloWorld = dispatcher("/hello/world");
+        Dispatcher help = dispatcher("/help");
+        router.add(hello);
+        router.add(helloWorld);
+        router.add(help);
+        assertSame(hello, router.match("/hello").dispatcher());
+        assertSame(helloWorld, router.match("/hello/world").dispatcher());
+        assertSame(help, router.match("/help").dispatcher());
+        assertNull(router.match("/hel"));
+        assertNull(router.match("/hello/"));
+        assertNull(router.match("/hello/world/1"));
+    }
+
+    @Test
+    void variableRoute() throws Exception {
+        Router router = new Router();
+        router.add(dispatcher("/test/{userId}/{postId}"));
+        Router.Match match = router.match("/test/12345/a123");
+        assertNotNull(match);
+        assertEquals("12345", match.getVariable(0));
+        assertEquals("a123", match.getVariable(1));
+        assertNull(router.match("/test/12345/a/123"));
+
+        //与正则[^/]*一致，允许空值
+        match = router.match("/test//a123");
+        assertNotNull(match);
+        assertEquals("", match.getVariable(0));
+    }
+
+    @Test
+    void variableWithPrefixAndSuffix() throws Exception {
+        Router router = new Router();
+        Dispatcher json = dispatcher("/files/file-{name}.json");
+        Dispatcher any = dispatcher("/files/{name}");
+        router.add(json);
+        router.add(any);
+        Router.Match match = router.match("/files/file-report.json");
+        assertSame(json, match.dispatcher());
+        assertEquals("report", match.getVariable(0));
+        match = router.match("/files/report.xml");
+        assertSame(any, match.dispatcher());
+        assertEquals("report.xml", match.getVariable(0));
+    }
+
+    @Test
+    void multipleVariablesInSegment() throws Exception {
+        Router router = new Router();
+        Dispatcher versioned = dispatcher("/files/{name}-{version}.json");
+        Dispatcher range = dispatcher("/range/{from}-{to}/{id}");
+        router.add(versioned);
+        router.add(range);
+        //与正则一样前面的变量贪婪匹配
+        Router.Match match = router.match("/files/my-report-2.json");
+        assertSame(versioned, match.dispatcher());
+        assertEquals("my-report", match.getVariable(0));
+        assertEquals("2", match.getVariable(1));
+        match = router.match("/range/1-9/7");
+        assertSame(range, match.dispatcher());
+        assertEquals("1", match.getVariable(0));
+        assertEquals("9", match.getVariable(1));
+        assertEquals("7", match.getVariable(2));
+        assertNull(router.match("/files/report.json"));
+        assertNull(router.match("/range/1/9-7"));
+    }
+
+    @Test
+    void staticBeforeVariable() throws Exception {
+        Router router = new Router();
+        Dispatcher me = dispatcher("/users/me/profile");
+        Dispatcher user = dispatcher("/users/{id}/posts");
+        router.add(me);
+        router.add(user);
+        assertSame(me, router.match("/users/me/profile").dispatcher());
+        //静态段匹配失败后回溯到变量段
+        Router.Match match = router.match("/users/me/posts");
+        assertSame(user, match.dispatcher());
+        assertEquals("me", match.getVariable(0));
+    }
+
+    @Test
+    void wildcardRoute() throws Exception {
+        Router router = new Router();
+        Dispatcher one = dispatcher("/assets/*/index");
+        Dispatcher all = dispatcher("/assets/**");
+        router.add(one);
+        router.add(all);
+        assertSame(one, router.match("/assets/js/index").dispatcher());
+        assertSame(all, router.match("/assets/js/app.js").dispatcher());
+        assertSame(all, router.match("/assets/").dispatcher());
+        assertNull(router.match("/assets"));
+    }
+
+    @Test
+    void duplicateRoute() throws Exception {
+        Router router = new Router();
+        router.add(dispatcher("/dup/{id}"));
+        assertThrows(ServletException.class, () -> router.add(dispatcher("/dup/{id}")));
+    }
+
+    @Test
+    void methodRoute() throws Exception {
+        Router router = new Router();
+        Dispatcher get = new Dispatcher("GET", true, new RouteController(), RouteController.class.getDeclaredMethod("handle"), "/items/{id}");
+        Dispatcher delete = new Dispatcher("DELETE", true, new RouteController(), RouteController.class.getDeclaredMethod("handle"), "/items/{id}");
+        Dispatcher post = new Dispatcher("POST", true, new RouteController(), RouteController.class.getDeclaredMethod("handle"), "/items/new");
+        router.add(get);
+        router.add(delete);
+        router.add(post);
+        assertSame(get, router.match(RequestMethod.GET, "/items/1").dispatcher());
+        assertSame(get, router.match(RequestMethod.HEAD, "/items/1").dispatcher());
+        assertSame(delete, router.match(RequestMethod.DELETE, "/items/1").dispatcher());
+        assertNull(router.match(RequestMethod.PUT, "/items/1"));
+        //静态段没有GET处理器时回溯到变量段
+        Router.Match match = router.match(RequestMethod.GET, "/items/new");
+        assertSame(get, match.dispatcher());
+        assertEquals("new", match.getVariable(0));
+        assertSame(post, router.match(RequestMethod.POST, "/items/new").dispatcher());
+        assertEquals(EnumSet.of(RequestMethod.GET, RequestMethod.HEAD, RequestMethod.DELETE, RequestMethod.OPTIONS), router.allowedMethods("/items/1"));
+        assertTrue(router.allowedMethods("/other").isEmpty());
+        //显式注册的HEAD覆盖GET
+        Dispatcher head = new Dispatcher("HEAD", true, new RouteController(), RouteController.class.getDeclaredMethod("handle"), "/items/{id}");
+        router.add(head);
+        assertSame(head, router.match(RequestMethod.HEAD, "/items/1").dispatcher());
+        assertThrows(ServletException.class, () -> router.add(head));
+    }
+
+    static class RouteController {
+
+        String handle() {
+            return "ok";
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.albert.summer.web;
+
+import com.albert.summer.property.PropertyResolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StaticResourceHandlerTest {
+
+    static final String HELLO = "Hello, Summer static resource!\n";
+
+    MockServletContext ctx;
+
+    StaticResourceHandler handler;
+
+    @BeforeEach
+    void init() {
+        Path path = Path.of("./src/test/resources").toAbsolutePath().normalize();
+        this.ctx = new MockServletContext("file://" + path.toString());
+        this.handler = new StaticResourceHandler();
+    }
+
+    MockHttpServletResponse get(String url, String... headers) throws Exception {
+        var req = new MockHttpServletRequest(this.ctx, "GET", url);
+        for (int i = 0; i < headers.length; i += 2) {
+            req.addHeader(headers[i], headers[i + 1]);
+        }
+        var resp = new MockHttpServletResponse();
+        this.handler.handle(url, req, resp);
+        return resp;
+    }
+
+    @Test
+    void getResource() throws Exception {
+        var resp = get("/static/hello.txt");
+        assertEquals(200, resp.getStatus());
+        assertEquals(HELLO, resp.getContentAsString());
+        assertEquals("text/plain", resp.getContentType());
+        assertEquals(HELLO.length(), resp.getContentLength());
+        assertNotNull(resp.getHeader("ETag"));
+        assertNotNull(resp.getHeader("Last-Modified"));
+        assertEquals("bytes", resp.getHeader("Accept-Ranges"));
+        assertEquals("no-cache", resp.getHeader("Cache-Control"));
+        //小文件进入缓存
+        assertNotNull(this.handler.cache.get("/static/hello.txt").content);
+        assertEquals(HELLO.length(), this.handler.cacheSize.get());
+        assertEquals("text/plain", this.handler.mimeTypes.get("txt"));
+    }
+
+    @Test
+    void notFound() throws Exception {
+        assertEquals(404, get("/static/missing.txt").getStatus());
+        assertEquals(404, get("/static").getStatus());
+    }
+
+    @Test
+    void notModified() throws Exception {
+        var resp = get("/static/hello.txt");
+        String etag = resp.getHeader("ETag");
+        resp = get("/static/hello.txt", "If-None-Match", etag);
+        assertEquals(304, resp.getStatus());
+        assertEquals(0, resp.getContentAsByteArray().length);
+        assertEquals(304, get("/static/hello.txt", "If-None-Match", "\"other\", " + etag.substring(2)).getStatus());
+        assertEquals(200, get("/static/hello.txt", "If-None-Match", "\"other\"").getStatus());
+
+        long lastModified = Files.getLastModifiedTime(Path.of("./src/test/resources/static/hello.txt")).toMillis();
+        var req = new MockHttpServletRequest(this.ctx, "GET", "/static/hello.txt");
+        req.addHeader("If-Modified-Since", lastModified);
+        resp = new MockHttpServletResponse();
+        this.handler.handle("/static/hello.txt", req, resp);
+        assertEquals(304, resp.getStatus());
+    }
+
+    @Test
+    void range() throws Exception {
+        var resp = get("/static/hello.txt", "Range", "bytes=0-4");
+        assertEquals(206, resp.getStatus());
+        assertEquals("Hello", resp.getContentAsString());
+        assertEquals("bytes 0-4/" + HELLO.length(), resp.getHeader("Content-Range"));
+
+        resp = get("/static/hello.txt", "Range", "bytes=-7");
+        assertEquals(206, resp.getStatus());
+        assertEquals("ource!\n", resp.getContentAsString());
+
+        resp = get("/static/hello.txt", "Range", "bytes=7-");
+        assertEquals(206, resp.getStatus());
+        assertEquals(HELLO.substring(7), resp.getContentAsString());
+
+        resp = get("/static/hello.txt", "Range", "bytes=100-200");
+        assertEquals(416, resp.getStatus());
+        assertEquals("bytes */" + HELLO.length(), resp.getHeader("Content-Range"));
+
+        //If-Range不匹配时返回整个文件
+        resp = get("/static/hello.txt", "Range", "bytes=0-4", "If-Range", "\"other\"");
+        assertEquals(200, resp.getStatus());
+        assertEquals(HELLO, resp.getContentAsString());
+
+        //弱ETag不满足If-Range
+        String etag = get("/static/hello.txt").getHeader("ETag");
+        assertTrue(etag.startsWith("W/"));
+        resp = get("/static/hello.txt", "Range", "bytes=0-4", "If-Range", etag);
+        assertEquals(200, resp.getStatus());
+        assertEquals(HELLO, resp.getContentAsString());
+    }
+
+    @Test
+    void rangeWithoutCache() throws Exception {
+        //不缓存时从文件流中读取区间
+        this.handler.cacheFileMaxSize = 0;
+        var resp = get("/static/app.js", "Range", "bytes=12-20");
+        assertEquals(206, resp.getStatus());
+        assertEquals("\"line 0\")", resp.getContentAsString());
+        assertTrue(this.handler.cache.isEmpty());
+    }
+
+    @Test
+    void head() throws Exception {
+        var req = new MockHttpServletRequest(this.ctx, "HEAD", "/static/hello.txt");
+        var resp = new MockHttpServletResponse();
+        this.handler.handle("/static/hello.txt", req, resp);
+        assertEquals(200, resp.getStatus());
+        assertEquals(HELLO.length(), resp.getContentLength());
+        assertEquals(0, resp.getContentAsByteArray().length);
+    }
+
+    @Test
+    void sendfile() throws Exception {
+        var ps = new Properties();
+        ps.put("summer.web.static.cache-file-max-size", "1KB");
+        ps.put("summer.web.static.sendfile-min-size", "2KB");
+        this.handler = new StaticResourceHandler(new PropertyResolver(ps));
+        var req = new MockHttpServletRequest(this.ctx, "GET", "/static/app.js");
+        req.setAttribute(StaticResourceHandler.SENDFILE_SUPPORT, Boolean.TRUE);
+        var resp = new MockHttpServletResponse();
+        this.handler.handle("/static/app.js", req, resp);
+        long length = Files.size(Path.of("./src/test/resources/static/app.js"));
+        assertEquals(200, resp.getStatus());
+        assertEquals(length, resp.getContentLengthLong());
+        //由容器发送文件内容
+        assertEquals(0, resp.getContentAsByteArray().length);
+        assertTrue(req.getAttribute(StaticResourceHandler.SENDFILE_FILENAME).toString().endsWith("app.js"));
+        assertEquals(0L, req.getAttribute(StaticResourceHandler.SENDFILE_START));
+        assertEquals(length, req.getAttribute(StaticResourceHandler.SENDFILE_END));
+        assertTrue(this.handler.cache.isEmpty());
+
+        //不支持sendfile时直接写出
+        resp = get("/static/app.js");
+        assertEquals(length, resp.getContentAsByteArray().length);
+    }
+
+    @Test
+    void evictLeastRecentlyUsed() throws Exception {
+        this.handler.cacheMaxSize = 4900;
+        get("/static/hello.txt");
+        get("/static/app.js");
+        //总大小超过上限，淘汰最久未访问的hello.txt
+        assertNull(this.handler.cache.get("/static/hello.txt"));
+        assertNotNull(this.handler.cache.get("/static/app.js"));
+        assertEquals(Files.size(Path.of("./src/test/resources/static/app.js")), this.handler.cacheSize.get());
+    }
+
+    @Test
+    void gzipFile() throws Exception {
+        //同名的.gz文件
+        var resp = get("/static/data.json", "Accept-Encoding", "gzip");
+        assertEquals(200, resp.getStatus());
+        assertEquals("gzip", resp.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", resp.getHeader("Vary"));
+        assertEquals("application/json", resp.getContentType());
+        byte[] gzip = Files.readAllBytes(Path.of("./src/test/resources/static/data.json.gz"));
+        assertArrayEquals(gzip, resp.getContentAsByteArray());
+        String etag = resp.getHeader("ETag");
+        assertEquals(304, get("/static/data.json", "Accept-Encoding", "gzip", "If-None-Match", etag).getStatus());
+
+        //不接受gzip时返回原文件，ETag不同
+        resp = get("/static/data.json");
+        assertNull(resp.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", resp.getHeader("Vary"));
+        assertEquals(Files.size(Path.of("./src/test/resources/static/data.json")), resp.getContentAsByteArray().length);
+        assertNotEquals(etag, resp.getHeader("ETag"));
+
+        //没有.gz文件且未开启预压缩
+        resp = get("/static/app.js", "Accept-Encoding", "gzip");
+        assertNull(resp.getHeader("Content-Encoding"));
+        //已压缩的类型不需要Vary
+        resp = get("/static/data.json.gz", "Accept-Encoding", "gzip");
+        assertNull(resp.getHeader("Content-Encoding"));
+        assertNull(resp.getHeader("Vary"));
+    }
+
+    @Test
+    void precompress() throws Exception {
+        var ps = new Properties();
+        ps.put("summer.web.static.precompress", "true");
+        this.handler = new StaticResourceHandler(new PropertyResolver(ps));
+        this.handler.precompress(this.ctx, "/static/");
+        StaticResourceHandler.Resource resource = this.handler.cache.get("/static/app.js");
+        assertNotNull(resource.gzip);
+        //小于min-size的文件不压缩
+        assertNull(this.handler.cache.get("/static/hello.txt").gzip);
+        long size = this.handler.cacheSize.get();
+
+        var resp = get("/static/app.js", "Accept-Encoding", "gzip");
+        assertEquals("gzip", resp.getHeader("Content-Encoding"));
+        assertArrayEquals(resource.gzip.content, resp.getContentAsByteArray());
+        try (var input = new GZIPInputStream(new ByteArrayInputStream(resp.getContentAsByteArray()))) {
+            assertArrayEquals(Files.readAllBytes(Path.of("./src/test/resources/static/app.js")), input.readAllBytes());
+        }
+        assertEquals(size, this.handler.cacheSize.get());
+
+        //淘汰时一起释放
+        this.handler.evict("/static/app.js", resource);
+        assertEquals(size - resource.length - resource.gzip.length, this.handler.cacheSize.get());
+    }
+}
@@ -0,0 +1,96 @@
+package com.albert.summer.web;
+
+import com.albert.summer.web.utils.JsonUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingResponseWriterTest {
+
+    MockHttpServletResponse resp = new MockHttpServletResponse();
+
+    StreamingResponseWriter createWriter(boolean sse) throws IOException {
+        var writer = new StreamingResponseWriter(this.resp, JsonUtils.createWriter(Object.class), sse);
+        writer.open();
+        return writer;
+    }
+
+    @Test
+    void sseFrames() throws Exception {
+        var writer = createWriter(true);
+        assertTrue(this.resp.isCommitted());
+        writer.writeEvent("1", "message", "line1\nline2");
+        writer.write(List.of(1, 2));
+        writer.heartbeat(0);
+        writer.close(null);
+        assertEquals("id: 1\nevent: message\ndata: line1\ndata: line2\n\ndata: [1,2]\n\n:\n\n", this.resp.getContentAsString());
+        assertTrue(writer.done.isDone());
+        assertThrows(IllegalStateException.class, () -> writer.write("late"));
+    }
+
+    @Test
+    void jsonArray() throws Exception {
+        var writer = createWriter(false);
+        //空闲时间未超过间隔，不发送心跳
+        writer.heartbeat(Long.MAX_VALUE);
+        writer.writeAll(Stream.of("a", "b"));
+        assertEquals("[\"a\",\"b\"]", this.resp.getContentAsString());
+
+        //异常结束时不补]
+        this.resp = new MockHttpServletResponse();
+        var failed = createWriter(false);
+        failed.write(1);
+        failed.heartbeat(0);
+        failed.close(new IOException("Broken pipe"));
+        assertEquals("[1\n", this.resp.getContentAsString());
+        assertTrue(failed.done.isCompletedExceptionally());
+    }
+
+    @Test
+    void publisherBackpressure() throws Exception {
+        var writer = createWriter(false);
+        List<Long> requests = new ArrayList<>();
+        Flow.Subscriber<Object> subscriber = writer.subscriber();
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                requests.add(n);
+            }
+
+            @Override
+            public void cancel() {
+                requests.add(-1L);
+            }
+        });
+        //每写出一条才请求下一条
+        assertEquals(List.of(1L), requests);
+        subscriber.onNext("x");
+        subscriber.onNext("y");
+        assertEquals(List.of(1L, 1L, 1L), requests);
+        subscriber.onComplete();
+        assertEquals("[\"x\",\"y\"]", this.resp.getContentAsString());
+        //响应结束后取消订阅
+        assertEquals(-1L, requests.get(requests.size() - 1));
+    }
+
+    @Test
+    void emitterBeforeBind() throws Exception {
+        var emitter = new SseEmitter();
+        List<String> callbacks = new ArrayList<>();
+        emitter.onCompletion(() -> callbacks.add("done"));
+        emitter.send("early");
+        emitter.complete();
+        assertThrows(IllegalStateException.class, () -> emitter.send("late"));
+        emitter.bind(createWriter(true));
+        assertEquals("data: early\n\n", this.resp.getContentAsString());
+        assertTrue(emitter.isComplete());
+        assertEquals(List.of("done"), callbacks);
+    }
+}
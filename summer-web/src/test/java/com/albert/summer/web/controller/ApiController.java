@@ -3,14 +3,31 @@ package com.albert.summer.web.controller;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import com.albert.summer.annotation.*;
+import com.albert.summer.exception.ServerWebInputException;
+import com.albert.summer.web.DeferredResult;
+import com.albert.summer.web.SseEmitter;
 import com.albert.summer.web.utils.JsonUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 @RestController
@@ -64,6 +81,197 @@ public class ApiController {
         pw.flush();
     }
 
+    @GetMapping("/api/error/{status}")
+    String error(@PathVariable("status") int status) throws IOException {
+        if (status == 400) {
+            throw new ServerWebInputException("Bad input.");
+        }
+        throw new IOException("Disk error.");
+    }
+
+    @GetMapping("/api/private/{id}")
+    @ResponseBody
+    private String privateHello(@PathVariable("id") long id) {
+        return "private " + id;
+    }
+
+    @GetMapping("/api/typed/{id}")
+    Map<String, Object> typed(@PathVariable("id") UUID id, @RequestParam("day") LocalDate day,
+                              @RequestParam(value = "level", defaultValue = "LOW") Level level, @RequestParam("point") PointParamConverter.Point point) {
+        return Map.of("id", id.toString(), "day", day.getDayOfMonth(), "level", level.name(), "x", point.x(), "y", point.y());
+    }
+
+    @GetMapping("/api/async/future/{name}")
+    CompletableFuture<Map<String, Object>> asyncFuture(@PathVariable("name") String name) {
+        return CompletableFuture.supplyAsync(() -> Map.of("name", name), CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS));
+    }
+
+    @GetMapping("/api/async/callable/{name}")
+    Callable<Map<String, Object>> asyncCallable(@PathVariable("name") String name) {
+        return () -> Map.of("name", name, "virtual", Thread.currentThread().isVirtual());
+    }
+
+    @GetMapping("/api/async/error")
+    CompletableFuture<String> asyncError() {
+        return CompletableFuture.supplyAsync(() -> {
+            throw new ServerWebInputException("Bad async input.");
+        }, CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS));
+    }
+
+    @GetMapping("/api/async/deferred")
+    @AsyncTimeout(100)
+    DeferredResult<String> asyncDeferred() {
+        //不设置结果，等待超时
+        return new DeferredResult<>();
+    }
+
+    @PostMapping("/api/batch")
+    List<String> batch(@RequestBody List<SigninObj> signins) {
+        //按List<SigninObj>反序列化，元素不是LinkedHashMap
+        return signins.stream().map(signin -> signin.name).toList();
+    }
+
+    @PostMapping("/api/ndjson/stream")
+    Map<String, Object> ndjsonStream(@RequestBody Stream<SigninObj> signins) {
+        try (signins) {
+            return Map.of("names", signins.map(signin -> signin.name).collect(Collectors.joining(",")));
+        }
+    }
+
+    @PostMapping("/api/ndjson/iterator")
+    Map<String, Object> ndjsonIterator(@RequestBody Iterator<SigninObj> signins) {
+        int count = 0;
+        while (signins.hasNext()) {
+            signins.next();
+            count++;
+        }
+        return Map.of("count", count);
+    }
+
+    @PutMapping("/api/items/{id}")
+    Map<String, Object> putItem(@PathVariable("id") long id, @RequestBody SigninObj item) {
+        return Map.of("id", id, "name", item.name, "method", "PUT");
+    }
+
+    @PatchMapping("/api/items/{id}")
+    Map<String, Object> patchItem(@PathVariable("id") long id) {
+        return Map.of("id", id, "method", "PATCH");
+    }
+
+    @DeleteMapping("/api/items/{id}")
+    Map<String, Object> deleteItem(@PathVariable("id") long id) {
+        return Map.of("id", id, "method", "DELETE");
+    }
+
+    @RequestMapping(value = "/api/any", method = {RequestMethod.GET, RequestMethod.DELETE})
+    String any(HttpServletRequest request) {
+        return request.getMethod();
+    }
+
+    @GetMapping("/api/numbers")
+    List<Map<String, Object>> numbers(@RequestParam("count") int count) {
+        return IntStream.range(0, count).mapToObj(i -> Map.<String, Object>of("index", i, "name", "item-" + i)).toList();
+    }
+
+    @GetMapping("/api/numbers/async")
+    CompletableFuture<List<Map<String, Object>>> asyncNumbers(@RequestParam("count") int count) {
+        return CompletableFuture.supplyAsync(() -> numbers(count), CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS));
+    }
+
+    final AtomicInteger cachedCalls = new AtomicInteger();
+
+    @GetMapping("/api/cached/{id}")
+    @ResponseCache(ttl = 60_000, key = {"id", "lang"})
+    Map<String, Object> cached(@PathVariable("id") long id, @RequestParam(value = "lang", defaultValue = "en") String lang,
+                               @RequestParam(value = "trace", defaultValue = "") String trace) {
+        return Map.of("id", id, "lang", lang, "calls", cachedCalls.incrementAndGet());
+    }
+
+    @GetMapping("/api/cached-url")
+    @ResponseCache(ttl = 60_000)
+    Map<String, Object> cachedUrl(@RequestParam(value = "q", defaultValue = "") String q) {
+        return Map.of("q", q, "calls", cachedCalls.incrementAndGet());
+    }
+
+    @GetMapping("/api/coalesce/{id}")
+    @Coalesce
+    Map<String, Object> coalesce(@PathVariable("id") long id) throws InterruptedException {
+        int calls = cachedCalls.incrementAndGet();
+        //模拟耗时查询
+        Thread.sleep(500);
+        return Map.of("id", id, "calls", calls);
+    }
+
+    @GetMapping("/api/limited")
+    @ConcurrencyLimit(initial = 1, min = 1, max = 1)
+    Map<String, Object> limited() throws InterruptedException {
+        Thread.sleep(300);
+        return Map.of("ok", true);
+    }
+
+    @GetMapping("/api/limited/async")
+    @ConcurrencyLimit(initial = 1, min = 1, max = 1)
+    CompletableFuture<Map<String, Object>> limitedAsync() {
+        return CompletableFuture.supplyAsync(() -> Map.of("ok", true), CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS));
+    }
+
+    @GetMapping("/api/secure/{id}")
+    Map<String, Object> secure(@PathVariable("id") long id) {
+        if (id < 0) {
+            throw new ServerWebInputException("Invalid id.");
+        }
+        return Map.of("id", id);
+    }
+
+    @GetMapping("/api/secure/cached/{id}")
+    @ResponseCache(ttl = 60_000)
+    Map<String, Object> secureCached(@PathVariable("id") long id) {
+        return Map.of("id", id);
+    }
+
+    @GetMapping("/api/stream/numbers")
+    Stream<Map<String, Object>> streamNumbers(@RequestParam("count") int count) {
+        return IntStream.range(0, count).mapToObj(i -> Map.of("n", i));
+    }
+
+    @GetMapping("/api/stream/publisher")
+    Flow.Publisher<String> streamPublisher() {
+        SubmissionPublisher<String> publisher = new SubmissionPublisher<>();
+        Thread.ofVirtual().start(() -> {
+            //等待订阅后再发布
+            while (publisher.getNumberOfSubscribers() == 0) {
+                Thread.onSpinWait();
+            }
+            for (String s : List.of("a", "b", "c")) {
+                publisher.submit(s);
+            }
+            publisher.close();
+        });
+        return publisher;
+    }
+
+    @GetMapping("/api/stream/sse")
+    SseEmitter streamSse() throws IOException {
+        SseEmitter emitter = new SseEmitter();
+        //绑定响应之前发送的事件
+        emitter.send("start", "begin");
+        Thread.ofVirtual().start(() -> {
+            try {
+                for (int i = 0; i < 3; i++) {
+                    emitter.send(String.valueOf(i), "tick", Map.of("n", i));
+                }
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    public enum Level {
+        LOW, HIGH
+    }
+
     public static class FileObj {
         public String file;
         public int length;
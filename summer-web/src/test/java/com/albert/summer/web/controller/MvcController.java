@@ -3,6 +3,8 @@ package com.albert.summer.web.controller;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import com.albert.summer.annotation.*;
 import com.albert.summer.web.bean.ModelAndView;
@@ -58,6 +60,15 @@ public class MvcController {
         return new ModelAndView("/product.html", Map.of("name", name, "product", Map.of("id", id, "name", "Summer Software")));
     }
 
+    @GetMapping("/report")
+    ModelAndView report(@RequestParam("count") int count) {
+        //按需生成数据，模板迭代时才取出
+        Stream<Map<String, Object>> rows = IntStream.range(0, count).mapToObj(i -> Map.of("index", i, "name", "row-" + i));
+        ModelAndView mv = new ModelAndView("/report.html", Map.of("title", "Report", "rows", rows));
+        mv.setStreaming(true);
+        return mv;
+    }
+
     @PostMapping("/signin")
     ModelAndView signin(@RequestParam("name") String name, @RequestParam("password") String password) {
         return new ModelAndView("redirect:/home?name=" + name);
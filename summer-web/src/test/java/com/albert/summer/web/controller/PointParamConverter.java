@@ -0,0 +1,22 @@
+package com.albert.summer.web.controller;
+
+import com.albert.summer.annotation.Component;
+import com.albert.summer.web.ParamConverter;
+
+@Component
+public class PointParamConverter implements ParamConverter<PointParamConverter.Point> {
+
+    @Override
+    public Class<Point> getType() {
+        return Point.class;
+    }
+
+    @Override
+    public Point convert(String value) {
+        String[] ss = value.split(",");
+        return new Point(Integer.parseInt(ss[0]), Integer.parseInt(ss[1]));
+    }
+
+    public record Point(int x, int y) {
+    }
+}
@@ -0,0 +1,46 @@
+package com.albert.summer.web.controller;
+
+import com.albert.summer.annotation.Component;
+import com.albert.summer.annotation.Order;
+import com.albert.summer.web.Dispatcher;
+import com.albert.summer.web.HandlerInterceptor;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 检查/api/secure/下接口的X-Token请求头，记录调用顺序
+ */
+@Component
+@Order(1)
+public class SecureInterceptor implements HandlerInterceptor {
+
+    public final List<String> events = new CopyOnWriteArrayList<>();
+
+    @Override
+    public List<String> getPathPatterns() {
+        return List.of("/api/secure/**");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest req, HttpServletResponse resp, Dispatcher handler) throws Exception {
+        this.events.add("pre " + handler.getUrlPattern());
+        if (!"secret".equals(req.getHeader("X-Token"))) {
+            resp.sendError(401);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest req, HttpServletResponse resp, Dispatcher handler, Object result) {
+        this.events.add("post " + result);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest req, HttpServletResponse resp, Dispatcher handler, Exception ex) {
+        this.events.add("after " + (ex == null ? resp.getStatus() : ex.getClass().getSimpleName()));
+    }
+}
@@ -0,0 +1,73 @@
+package com.albert.summer.web.metrics;
+
+import com.albert.summer.annotation.RequestMethod;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对比多线程下记录延迟的开销：无锁直方图、synchronized数组、按"路由 方法 状态码"拼接key查Map
+ * <p>
+ * 运行：在IDE中直接执行main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class LatencyHistogramBenchmark {
+
+    RouteMetrics metrics;
+
+    long[] lockedBuckets;
+
+    long lockedSum;
+
+    Map<String, LongAdder> counters;
+
+    @Setup
+    public void setup() {
+        this.metrics = new RouteMetrics("/api/users/{id}", RequestMethod.GET);
+        this.lockedBuckets = new long[LatencyHistogram.BUCKET_COUNT];
+        this.counters = new ConcurrentHashMap<>();
+    }
+
+    static long latency() {
+        return ThreadLocalRandom.current().nextLong(100_000, 50_000_000);
+    }
+
+    @Benchmark
+    public void routeMetrics() {
+        this.metrics.record(RequestMethod.GET, 200, latency());
+    }
+
+    @Benchmark
+    public void synchronizedArray() {
+        long nanos = latency();
+        int index = LatencyHistogram.bucketIndex(nanos);
+        synchronized (this) {
+            this.lockedBuckets[index]++;
+            this.lockedSum += nanos;
+        }
+    }
+
+    @Benchmark
+    public void concurrentMap() {
+        long nanos = latency();
+        String key = "/api/users/{id} GET 200 " + LatencyHistogram.bucketIndex(nanos);
+        this.counters.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LatencyHistogramBenchmark.class.getSimpleName()).build()).run();
+    }
+}
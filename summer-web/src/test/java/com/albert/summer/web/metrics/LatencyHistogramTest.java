@@ -0,0 +1,70 @@
+package com.albert.summer.web.metrics;
+
+import com.albert.summer.annotation.RequestMethod;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    void bucketBounds() {
+        //每个值都落在所属桶的上界以内，且大于上一个桶的上界
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 100, 1023, 1024, 999_999, 1_000_000, 123_456_789, 1L << 40};
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(value < LatencyHistogram.bucketUpperBound(index), "value " + value);
+            if (index > 0) {
+                assertTrue(value >= LatencyHistogram.bucketUpperBound(index - 1), "value " + value);
+            }
+        }
+        //相对误差不超过1/8
+        int index = LatencyHistogram.bucketIndex(1_000_000);
+        assertTrue(LatencyHistogram.bucketUpperBound(index) - 1 <= 1_000_000 * 1.125);
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+        assertEquals(0, LatencyHistogram.bucketIndex(-5));
+    }
+
+    @Test
+    void record() {
+        var histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000_000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050 * 1_000_000L, histogram.getSum());
+
+        long[] snapshot = histogram.snapshot();
+        //上界超过10ms的桶不计入
+        long count = LatencyHistogram.countAtOrBelow(snapshot, 10_000_000);
+        assertTrue(count >= 8 && count <= 10, "count " + count);
+        assertEquals(100, LatencyHistogram.countAtOrBelow(snapshot, Long.MAX_VALUE));
+
+        long p50 = LatencyHistogram.valueAtPercentile(snapshot, 50);
+        assertTrue(p50 >= 50_000_000 && p50 <= 50_000_000 * 1.125, "p50 " + p50);
+        long p100 = LatencyHistogram.valueAtPercentile(snapshot, 100);
+        assertTrue(p100 >= 100_000_000 && p100 <= 100_000_000 * 1.125, "p100 " + p100);
+        assertEquals(0, LatencyHistogram.valueAtPercentile(new LatencyHistogram().snapshot(), 99));
+    }
+
+    @Test
+    void routeMetrics() {
+        var metrics = new RouteMetrics("/api/{id}", RequestMethod.GET);
+        metrics.record(RequestMethod.GET, 200, 1000);
+        metrics.record(RequestMethod.GET, 200, 2000);
+        metrics.record(RequestMethod.GET, 404, 1000);
+        metrics.record(RequestMethod.GET, 404, 3000);
+        metrics.record(RequestMethod.HEAD, 200, 1000);
+        assertEquals(2, metrics.ok.getCount());
+        assertEquals(2, metrics.others.length);
+        assertEquals(2, RouteMetrics.find(metrics.others, RouteMetrics.key(RequestMethod.GET, 404)).getCount());
+
+        String text = new PrometheusWriter().writeRequests(List.of(metrics)).toString();
+        assertTrue(text.contains("http_server_requests_seconds_count{method=\"HEAD\",route=\"/api/{id}\",status=\"200\"} 1\n"));
+        assertTrue(text.contains("http_server_requests_seconds_count{method=\"GET\",route=\"/api/{id}\",status=\"404\"} 2\n"));
+        assertTrue(text.contains("http_server_requests_seconds_bucket{method=\"GET\",route=\"/api/{id}\",status=\"200\",le=\"0.0005\"} 2\n"));
+        assertTrue(text.contains("http_server_requests_seconds_sum{method=\"GET\",route=\"/api/{id}\",status=\"200\"} 3.0E-6\n"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.albert.summer.web.utils;
+
+import com.albert.summer.property.PropertyResolver;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonUtilsTest {
+
+    @Test
+    void writerKeepsRuntimeType() throws Exception {
+        //声明类型不是final，按实际类型序列化
+        String json = JsonUtils.createWriter(Animal.class).writeValueAsString(new Dog("Max", true));
+        assertEquals("{\"name\":\"Max\",\"goodBoy\":true}", json);
+    }
+
+    @Test
+    void writerForGenericType() throws Exception {
+        ObjectMapper mapper = JsonUtils.OBJECT_MAPPER;
+        Method method = JsonUtilsTest.class.getDeclaredMethod("animals");
+        String json = JsonUtils.createWriter(mapper, mapper.constructType(method.getGenericReturnType())).writeValueAsString(animals());
+        assertEquals("[{\"name\":\"Tom\"},{\"name\":\"Max\",\"goodBoy\":true}]", json);
+    }
+
+    @Test
+    void staticType() throws Exception {
+        ObjectMapper mapper = JsonUtils.OBJECT_MAPPER;
+        assertTrue(JsonUtils.isStaticType(mapper.constructType(JsonUtilsTest.class.getDeclaredMethod("tags").getGenericReturnType())));
+        assertFalse(JsonUtils.isStaticType(mapper.constructType(JsonUtilsTest.class.getDeclaredMethod("animals").getGenericReturnType())));
+        assertFalse(JsonUtils.isStaticType(mapper.constructType(Object.class)));
+        assertTrue(JsonUtils.isStaticType(mapper.constructType(long.class)));
+    }
+
+    @Test
+    void readerForGenericType() throws Exception {
+        Method method = JsonUtilsTest.class.getDeclaredMethod("names", List.class);
+        List<Animal> list = JsonUtils.createReader(JsonUtils.OBJECT_MAPPER, method.getGenericParameterTypes()[0])
+                .readValue("[{\"name\":\"Tom\"}]");
+        assertEquals("Tom", list.get(0).name);
+    }
+
+    @Test
+    void createObjectMapperFromProperties() throws Exception {
+        var ps = new Properties();
+        ps.put("summer.web.json.include-null", "false");
+        ps.put("summer.web.json.blackbird", "true");
+        ObjectMapper mapper = JsonUtils.createObjectMapper(new PropertyResolver(ps));
+        assertEquals("{}", mapper.writeValueAsString(new Animal(null)));
+        assertEquals("{\"name\":\"Tom\"}", mapper.writeValueAsString(new Animal("Tom")));
+        //默认配置输出null
+        assertEquals("{\"name\":null}", JsonUtils.createObjectMapper(new PropertyResolver(new Properties())).writeValueAsString(new Animal(null)));
+    }
+
+    List<Animal> animals() {
+        return List.of(new Animal("Tom"), new Dog("Max", true));
+    }
+
+    List<String> tags() {
+        return List.of("a", "b");
+    }
+
+    void names(List<Animal> animals) {
+    }
+
+    public static class Animal {
+        public String name;
+
+        public Animal() {
+        }
+
+        public Animal(String name) {
+            this.name = name;
+        }
+    }
+
+    public static class Dog extends Animal {
+        public boolean goodBoy;
+
+        public Dog(String name, boolean goodBoy) {
+            super(name);
+            this.goodBoy = goodBoy;
+        }
+    }
+}
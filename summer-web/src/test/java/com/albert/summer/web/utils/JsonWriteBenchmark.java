@@ -0,0 +1,76 @@
+package com.albert.summer.web.utils;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比通过PrintWriter写JSON和通过ObjectWriter直接写UTF-8字节到OutputStream
+ * <p>
+ * 运行：在IDE中直接执行main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonWriteBenchmark {
+
+    /**
+     * 序列化后的大约字节数
+     */
+    @Param({"1024", "102400", "10485760"})
+    int size;
+
+    List<Item> payload;
+
+    ObjectWriter writer;
+
+    /**
+     * 模拟ServletOutputStream，丢弃写入的数据
+     */
+    OutputStream output = OutputStream.nullOutputStream();
+
+    @Setup
+    public void setup() {
+        //每个Item序列化后约100字节
+        int count = Math.max(1, this.size / 100);
+        this.payload = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            this.payload.add(new Item(i, "item-" + i, "描述description-" + i, i * 1.5));
+        }
+        this.writer = JsonUtils.createWriter(List.class);
+    }
+
+    @Benchmark
+    public void printWriter() throws IOException {
+        PrintWriter pw = new PrintWriter(new OutputStreamWriter(this.output, StandardCharsets.UTF_8));
+        JsonUtils.writeJson(pw, this.payload);
+        pw.flush();
+    }
+
+    @Benchmark
+    public void outputStream() throws IOException {
+        this.writer.writeValue(this.output, this.payload);
+        this.output.flush();
+    }
+
+    public record Item(long id, String name, String description, double price) {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JsonWriteBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,80 @@
+package com.albert.summer.web.utils;
+
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PathTemplateTest {
+
+    @Test
+    void validPath() throws Exception {
+        PathTemplate t = PathTemplate.parse("/test/{userId}/{postId}");
+        int[] captures = new int[t.getVariableCount() * 2];
+        String url = "/test/12345/a123";
+        assertTrue(t.match(url, captures));
+        assertEquals(0, t.indexOf("userId"));
+        assertEquals(1, t.indexOf("postId"));
+        assertEquals(-1, t.indexOf("other"));
+        assertEquals("12345", url.substring(captures[0], captures[1]));
+        assertEquals("a123", url.substring(captures[2], captures[3]));
+
+        assertFalse(t.match("/test/12345/a/123", captures));
+        assertFalse(t.match("/test/12345", captures));
+    }
+
+    @Test
+    void validPath2() throws Exception {
+        PathTemplate t = PathTemplate.parse("/test/{a123}");
+        int[] captures = new int[2];
+        assertTrue(t.match("/test/12345", captures));
+        assertEquals(6, captures[0]);
+        assertEquals(11, captures[1]);
+    }
+
+    @Test
+    void sameAsRegex() throws Exception {
+        String[] patterns = {"/test/{id}", "/files/file-{name}.json", "/a/{x}/b", "/static", "/{a}-{b}", "/v/{a}.{b}.{c}/x"};
+        String[] urls = {"/test/1", "/test/", "/test/1/", "/files/file-a.json", "/files/file-.json", "/files/a.json",
+                "/a/1/b", "/a//b", "/a/1/c", "/static", "/static/", "/1-2", "/1-2-3", "/-", "/12", "/v/1.2.3/x", "/v/1.2/x", "/v/../x"};
+        for (String pattern : patterns) {
+            PathTemplate t = PathTemplate.parse(pattern);
+            //按变量名转换为正则，作为参照
+            Pattern regex = Pattern.compile("^" + pattern.replaceAll("\\{([a-zA-Z][a-zA-Z0-9]*)\\}", "(?<$1>[^/]*)").replace(".", "\\.") + "$");
+            int[] captures = new int[t.getVariableCount() * 2];
+            for (String url : urls) {
+                Matcher matcher = regex.matcher(url);
+                boolean matches = matcher.matches();
+                assertEquals(matches, t.match(url, captures), pattern + " -> " + url);
+                for (int i = 0; matches && i < t.getVariableCount(); i++) {
+                    assertEquals(matcher.group(t.getVariableNames()[i]), url.substring(captures[i * 2], captures[i * 2 + 1]), pattern + " -> " + url);
+                }
+            }
+        }
+    }
+
+    @Test
+    void wildcardPath() throws Exception {
+        assertTrue(PathTemplate.parse("/assets/*/index").match("/assets/js/index", null));
+        assertFalse(PathTemplate.parse("/assets/*/index").match("/assets/js/css/index", null));
+        assertTrue(PathTemplate.parse("/assets/**").match("/assets/js/css/app.css", null));
+        assertFalse(PathTemplate.parse("/assets/**").match("/asset", null));
+    }
+
+    @Test
+    void invalidPath() throws Exception {
+        assertThrows(ServletException.class, () -> PathTemplate.parse("/no-name/{}"));
+        assertThrows(ServletException.class, () -> PathTemplate.parse("/starts-with-digit/{123}"));
+        assertThrows(ServletException.class, () -> PathTemplate.parse("/invalid-name/{user-id}"));
+        assertThrows(ServletException.class, () -> PathTemplate.parse("/invalid-name/{user_id}"));
+        assertThrows(ServletException.class, () -> PathTemplate.parse("/missing-right/{user/"));
+        assertThrows(ServletException.class, () -> PathTemplate.parse("/missing-left/user}/"));
+        assertThrows(ServletException.class, () -> PathTemplate.parse("/adjacent-vars/{a}{b}"));
+        assertThrows(ServletException.class, () -> PathTemplate.parse("/missing-right/{a}-{b"));
+        assertThrows(ServletException.class, () -> PathTemplate.parse("/duplicate/{a}/{a}"));
+        assertThrows(ServletException.class, () -> PathTemplate.parse("/catch-all/**/not-last"));
+    }
+}
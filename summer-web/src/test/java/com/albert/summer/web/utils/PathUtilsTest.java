@@ -1,10 +1,5 @@
 package com.albert.summer.web.utils;
 
-
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import jakarta.servlet.ServletException;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -12,44 +7,16 @@ import static org.junit.jupiter.api.Assertions.*;
 public class PathUtilsTest {
 
     @Test
-    void validPath() throws Exception {
-        Pattern p = PathUtils.compile("/test/{userId}/{postId}");
-        Matcher m1 = p.matcher("/test/12345/a123");
-        assertTrue(m1.matches());
-        assertEquals("12345", m1.group("userId"));
-        assertEquals("a123", m1.group("postId"));
-
-        Matcher m2 = p.matcher("/test/12345/a/123");
-        assertFalse(m2.matches());
-    }
-
-    @Test
-    void validPath2() throws Exception {
-        Pattern p = PathUtils.compile("/test/{a123}");
-        Matcher m1 = p.matcher("/test/12345");
-        assertTrue(m1.matches());
-        assertEquals("12345", m1.group("a123"));
-    }
-
-    @Test
-    void invalidPath() throws Exception {
-        assertThrows(ServletException.class, () -> {
-            PathUtils.compile("/no-name/{}");
-        });
-        assertThrows(ServletException.class, () -> {
-            PathUtils.compile("/starts-with-digit/{123}");
-        });
-        assertThrows(ServletException.class, () -> {
-            PathUtils.compile("/invalid-name/{user-id}");
-        });
-        assertThrows(ServletException.class, () -> {
-            PathUtils.compile("/invalid-name/{user_id}");
-        });
-        assertThrows(ServletException.class, () -> {
-            PathUtils.compile("/missing-right/{user/");
-        });
-        assertThrows(ServletException.class, () -> {
-            PathUtils.compile("/missing-left/user}/");
-        });
+    void matchTemplate() {
+        assertTrue(PathUtils.matchTemplate("/**", "/"));
+        assertTrue(PathUtils.matchTemplate("/**", "/api/users/{id}"));
+        assertTrue(PathUtils.matchTemplate("/api/**", "/api"));
+        assertTrue(PathUtils.matchTemplate("/api/**", "/api/users/{id}"));
+        assertTrue(PathUtils.matchTemplate("/api/users/*", "/api/users/{id}"));
+        assertTrue(PathUtils.matchTemplate("/api/**/orders", "/api/users/{id}/orders"));
+        assertTrue(PathUtils.matchTemplate("/api/users/{id}", "/api/users/{id}"));
+        assertFalse(PathUtils.matchTemplate("/api/users/*", "/api/users/{id}/orders"));
+        assertFalse(PathUtils.matchTemplate("/api/users/42", "/api/users/{id}"));
+        assertFalse(PathUtils.matchTemplate("/admin/**", "/api/users"));
     }
 }
@@ -0,0 +1,76 @@
+package com.albert.summer.web.utils;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 对比正则命名分组和PathTemplate按下标提取路径变量
+ * <p>
+ * 使用gc profiler对比每次请求的内存分配（gc.alloc.rate.norm）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathVariableBenchmark {
+
+    final String url = "/api/users/1234567/posts/hello-world";
+
+    Pattern pattern;
+
+    PathTemplate template;
+
+    @Setup
+    public void setup() throws Exception {
+        this.pattern = Pattern.compile("^/api/users/(?<userId>[^/]*)/posts/(?<slug>[^/]*)$");
+        this.template = PathTemplate.parse("/api/users/{userId}/posts/{slug}");
+    }
+
+    @Benchmark
+    public long regexLong() {
+        Matcher matcher = this.pattern.matcher(this.url);
+        if (!matcher.matches()) {
+            throw new IllegalStateException();
+        }
+        return Long.valueOf(matcher.group("userId"));
+    }
+
+    @Benchmark
+    public long templateLong() {
+        int[] captures = new int[this.template.getVariableCount() * 2];
+        if (!this.template.match(this.url, captures)) {
+            throw new IllegalStateException();
+        }
+        return Long.parseLong(this.url, captures[0], captures[1], 10);
+    }
+
+    @Benchmark
+    public String regexString() {
+        Matcher matcher = this.pattern.matcher(this.url);
+        if (!matcher.matches()) {
+            throw new IllegalStateException();
+        }
+        return matcher.group("slug");
+    }
+
+    @Benchmark
+    public String templateString() {
+        int[] captures = new int[this.template.getVariableCount() * 2];
+        if (!this.template.match(this.url, captures)) {
+            throw new IllegalStateException();
+        }
+        return this.url.substring(captures[2], captures[3]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PathVariableBenchmark.class.getSimpleName()).addProfiler("gc").build()).run();
+    }
+}
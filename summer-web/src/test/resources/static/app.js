@@ -0,0 +1,200 @@
+console.log("line 0");
+console.log("line 1");
+console.log("line 2");
+console.log("line 3");
+console.log("line 4");
+console.log("line 5");
+console.log("line 6");
+console.log("line 7");
+console.log("line 8");
+console.log("line 9");
+console.log("line 10");
+console.log("line 11");
+console.log("line 12");
+console.log("line 13");
+console.log("line 14");
+console.log("line 15");
+console.log("line 16");
+console.log("line 17");
+console.log("line 18");
+console.log("line 19");
+console.log("line 20");
+console.log("line 21");
+console.log("line 22");
+console.log("line 23");
+console.log("line 24");
+console.log("line 25");
+console.log("line 26");
+console.log("line 27");
+console.log("line 28");
+console.log("line 29");
+console.log("line 30");
+console.log("line 31");
+console.log("line 32");
+console.log("line 33");
+console.log("line 34");
+console.log("line 35");
+console.log("line 36");
+console.log("line 37");
+console.log("line 38");
+console.log("line 39");
+console.log("line 40");
+console.log("line 41");
+console.log("line 42");
+console.log("line 43");
+console.log("line 44");
+console.log("line 45");
+console.log("line 46");
+console.log("line 47");
+console.log("line 48");
+console.log("line 49");
+console.log("line 50");
+console.log("line 51");
+console.log("line 52");
+console.log("line 53");
+console.log("line 54");
+console.log("line 55");
+console.log("line 56");
+console.log("line 57");
+console.log("line 58");
+console.log("line 59");
+console.log("line 60");
+console.log("line 61");
+console.log("line 62");
+console.log("line 63");
+console.log("line 64");
+console.log("line 65");
+console.log("line 66");
+console.log("line 67");
+console.log("line 68");
+console.log("line 69");
+console.log("line 70");
+console.log("line 71");
+console.log("line 72");
+console.log("line 73");
+console.log("line 74");
+console.log("line 75");
+console.log("line 76");
+console.log("line 77");
+console.log("line 78");
+console.log("line 79");
+console.log("line 80");
+console.log("line 81");
+console.log("line 82");
+console.log("line 83");
+console.log("line 84");
+console.log("line 85");
+console.log("line 86");
+console.log("line 87");
+console.log("line 88");
+console.log("line 89");
+console.log("line 90");
+console.log("line 91");
+console.log("line 92");
+console.log("line 93");
+console.log("line 94");
+console.log("line 95");
+console.log("line 96");
+console.log("line 97");
+console.log("line 98");
+console.log("line 99");
+console.log("line 100");
+console.log("line 101");
+console.log("line 102");
+console.log("line 103");
+console.log("line 104");
+console.log("line 105");
+console.log("line 106");
+console.log("line 107");
+console.log("line 108");
+console.log("line 109");
+console.log("line 110");
+console.log("line 111");
+console.log("line 112");
+console.log("line 113");
+console.log("line 114");
+console.log("line 115");
+console.log("line 116");
+console.log("line 117");
+console.log("line 118");
+console.log("line 119");
+console.log("line 120");
+console.log("line 121");
+console.log("line 122");
+console.log("line 123");
+console.log("line 124");
+console.log("line 125");
+console.log("line 126");
+console.log("line 127");
+console.log("line 128");
+console.log("line 129");
+console.log("line 130");
+console.log("line 131");
+console.log("line 132");
+console.log("line 133");
+console.log("line 134");
+console.log("line 135");
+console.log("line 136");
+console.log("line 137");
+console.log("line 138");
+console.log("line 139");
+console.log("line 140");
+console.log("line 141");
+console.log("line 142");
+console.log("line 143");
+console.log("line 144");
+console.log("line 145");
+console.log("line 146");
+console.log("line 147");
+console.log("line 148");
+console.log("line 149");
+console.log("line 150");
+console.log("line 151");
+console.log("line 152");
+console.log("line 153");
+console.log("line 154");
+console.log("line 155");
+console.log("line 156");
+console.log("line 157");
+console.log("line 158");
+console.log("line 159");
+console.log("line 160");
+console.log("line 161");
+console.log("line 162");
+console.log("line 163");
+console.log("line 164");
+console.log("line 165");
+console.log("line 166");
+console.log("line 167");
+console.log("line 168");
+console.log("line 169");
+console.log("line 170");
+console.log("line 171");
+console.log("line 172");
+console.log("line 173");
+console.log("line 174");
+console.log("line 175");
+console.log("line 176");
+console.log("line 177");
+console.log("line 178");
+console.log("line 179");
+console.log("line 180");
+console.log("line 181");
+console.log("line 182");
+console.log("line 183");
+console.log("line 184");
+console.log("line 185");
+console.log("line 186");
+console.log("line 187");
+console.log("line 188");
+console.log("line 189");
+console.log("line 190");
+console.log("line 191");
+console.log("line 192");
+console.log("line 193");
+console.log("line 194");
+console.log("line 195");
+console.log("line 196");
+console.log("line 197");
+console.log("line 198");
+console.log("line 199");